@@ -78,8 +78,20 @@ public interface CodeSystem extends Serializable {
     }
 
     /**
-     * Returns true if this and the target are equal.  Two code systems are considered equal if their URNs match, or they
-     * share a common OID.
+     * Returns the canonical key of this code system, which is shared by all equivalent code systems.
+     *
+     * @return The canonical key.
+     * @see CodeSystemRegistry#getCanonicalKey(CodeSystem)
+     */
+    @Transient
+    default String getCanonicalKey() {
+        return CodeSystemRegistry.getCanonicalKey(this);
+    }
+
+    /**
+     * Returns true if this and the target are equal.  Two code systems are considered equal if they have the same
+     * canonical key: that is, their URNs match, they share an OID with the same registered code system, or they
+     * normalize to the same code system.  Implementations of {@link Object#hashCode} should hash the canonical key.
      * <p></p>
      * <i>Note: </i>Each interface implementation's {@link Object#equals} method should delegate to this.  Note that the
      * {@link Object#equals} method of enums implementing this interface is set to final, so calling this method should
@@ -94,15 +106,7 @@ public interface CodeSystem extends Serializable {
             return true;
         }
 
-        if (!(target instanceof CodeSystem cs)) {
-            return false;
-        }
-
-        if (Objects.equals(getUrn(), cs.getUrn())) {
-            return true;
-        }
-
-        return getOids().stream().anyMatch(oid -> cs.getOids().contains(oid));
+        return target instanceof CodeSystem cs && Objects.equals(getCanonicalKey(), cs.getCanonicalKey());
     }
 
     /**
@@ -1,18 +1,184 @@
 package org.clinicalontology.terminology.api.model;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
 /**
- * A centralized registry of code systems.  Each code system must register itself.
+ * A centralized registry of code systems.  Each code system must register itself.  Registered code systems are
+ * indexed by URN and OID, so lookups do not depend on the number of registered code systems.  Where more than one
+ * registered code system matches, the first to be registered is returned.
+ * <p>
+ * The registry is safe for concurrent use.  Its state is held in an immutable snapshot: readers never lock and
+ * always see a consistent view, while each registration builds a new snapshot and publishes it atomically.
+ * <p>
+ * Results of {@link #getNormalizedCodeSystem(String)}, including those for unrecognized code systems, are memoized in
+ * a bounded cache belonging to the current snapshot, so any registration discards them.
  */
 public class CodeSystemRegistry {
 
-    private static final Map<String, CodeSystem> normalizedCodeSystemMap = new HashMap<>();
+    /**
+     * The default maximum number of memoized normalization results.
+     */
+    public static final int DEFAULT_NORMALIZATION_CACHE_SIZE = 10_000;
+
+    /**
+     * Normalization cache statistics.
+     *
+     * @param hits   The number of lookups answered from the cache.
+     * @param misses The number of lookups that were not.
+     * @param size   The current number of cached results.
+     */
+    public record NormalizationCacheStats(
+        long hits,
+        long misses,
+        int size
+    ) {
+    }
+
+    /**
+     * An immutable view of the registry.  The maps are never modified after the snapshot is published.
+     *
+     * @param normalizations          Normalized code systems indexed by the URN or OID to be normalized.
+     * @param urnIndex                Registered code systems indexed by URN.
+     * @param caseInsensitiveUrnIndex Registered code systems indexed by URN in lower case.
+     * @param oidIndex                Registered code systems indexed by OID without the URN prefix.
+     * @param normalizationCache      Memoized normalization results.  Unlike the other maps, this one is populated
+     *                                after publication, but only with results derived from this snapshot.
+     */
+    private record Snapshot(
+        Map<String, CodeSystem> normalizations,
+        Map<URI, CodeSystem> urnIndex,
+        Map<String, CodeSystem> caseInsensitiveUrnIndex,
+        Map<String, CodeSystem> oidIndex,
+        Map<String, String> normalizationCache
+    ) {
+
+        Snapshot(
+            Map<String, CodeSystem> normalizations,
+            Map<URI, CodeSystem> urnIndex,
+            Map<String, CodeSystem> caseInsensitiveUrnIndex,
+            Map<String, CodeSystem> oidIndex
+        ) {
+            this(normalizations, urnIndex, caseInsensitiveUrnIndex, oidIndex, new ConcurrentHashMap<>());
+        }
+
+        /**
+         * Returns a new snapshot with the specified code systems added to copies of the URN and OID indexes.  An
+         * existing index entry is never replaced.
+         *
+         * @param codeSystems The code systems to index.
+         * @return The new snapshot.
+         */
+        Snapshot withCodeSystems(Collection<? extends CodeSystem> codeSystems) {
+            Snapshot next = new Snapshot(normalizations, new HashMap<>(urnIndex),
+                new HashMap<>(caseInsensitiveUrnIndex), new HashMap<>(oidIndex));
+
+            for (CodeSystem codeSystem : codeSystems) {
+                if (codeSystem.getUrn() != null) {
+                    next.urnIndex.putIfAbsent(codeSystem.getUrn(), codeSystem);
+                    next.caseInsensitiveUrnIndex.putIfAbsent(toLowerCase(codeSystem.getUrnAsString()), codeSystem);
+                }
+
+                codeSystem.getOids().forEach(oid -> next.oidIndex.putIfAbsent(oid.toString(), codeSystem));
+            }
+
+            return next;
+        }
+
+        /**
+         * Returns a new snapshot with the specified normalizations added to a copy of the normalization map.
+         *
+         * @param fromSystems The URNs or OIDs to be normalized.
+         * @param toSystem    The normalized code system.
+         * @return The new snapshot.
+         */
+        Snapshot withNormalizations(
+            Collection<String> fromSystems,
+            CodeSystem toSystem
+        ) {
+            Snapshot next = new Snapshot(new HashMap<>(normalizations), urnIndex, caseInsensitiveUrnIndex, oidIndex);
+            fromSystems.forEach(fromSystem -> next.normalizations.put(fromSystem, toSystem));
+            return next;
+        }
 
-    private static final List<CodeSystem> codeSystems = new ArrayList<>();
+        CodeSystem byUrn(String urn) {
+            return urn == null ? null : caseInsensitiveUrnIndex.get(toLowerCase(urn));
+        }
+
+        CodeSystem byOid(String oid) {
+            return oid == null ? null : oidIndex.get(Oid.stripPrefix(oid));
+        }
+
+        CodeSystem findCodeSystem(String value) {
+            CodeSystem system = byUrn(value);
+            return system != null ? system : byOid(value);
+        }
+
+        CodeSystem resolve(String codeSystem) {
+            CodeSystem normalized = normalizations.get(Oid.stripPrefix(codeSystem));
+
+            if (normalized == null) {
+                CodeSystem cs = findCodeSystem(codeSystem);
+                normalized = cs == null ? null : getNormalizedCodeSystem(cs);
+            }
+
+            return normalized;
+        }
+
+        String normalize(String codeSystem) {
+            CodeSystem normalized = resolve(codeSystem);
+            return normalized != null ? normalized.getUrnAsString() : codeSystem;
+        }
+
+        String getCanonicalKey(CodeSystem codeSystem) {
+            String urn = codeSystem.getUrnAsString();
+            CodeSystem normalized = resolve(urn);
+
+            if (normalized == null) {
+                for (Oid oid : codeSystem.getOids()) {
+                    if ((normalized = resolve(oid.toString())) != null) {
+                        break;
+                    }
+                }
+            }
+
+            return normalized != null ? normalized.getUrnAsString() : urn;
+        }
+
+        CodeSystem getNormalizedCodeSystem(CodeSystem codeSystem) {
+            CodeSystem normalized = codeSystem == null || codeSystem.getUrn() == null ? null
+                : normalizations.get(codeSystem.getUrnAsString());
+            return normalized != null ? normalized : codeSystem;
+        }
+
+    }
+
+    /**
+     * The current snapshot.  Replaced, never modified, by writers.
+     */
+    private static volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of(), Map.of());
+
+    /**
+     * Serializes writers.
+     */
+    private static final Object writeLock = new Object();
+
+    private static final LongAdder normalizationCacheHits = new LongAdder();
+
+    private static final LongAdder normalizationCacheMisses = new LongAdder();
+
+    private static volatile int normalizationCacheSize = DEFAULT_NORMALIZATION_CACHE_SIZE;
+
+    /**
+     * Incremented after each new snapshot is published.
+     */
+    private static volatile int version;
 
     /**
      * Returns true if the normalized forms of the two code systems are equivalent.
@@ -36,7 +202,7 @@ public class CodeSystemRegistry {
      * @param codeSystems A list of code systems.
      */
     public static void registerCodeSystems(CodeSystem... codeSystems) {
-        Collections.addAll(CodeSystemRegistry.codeSystems, codeSystems);
+        registerCodeSystems(Arrays.asList(codeSystems));
     }
 
     /**
@@ -45,7 +211,33 @@ public class CodeSystemRegistry {
      * @param codeSystems A list of code systems.
      */
     public static void registerCodeSystems(Collection<? extends CodeSystem> codeSystems) {
-        CodeSystemRegistry.codeSystems.addAll(codeSystems);
+        update(current -> current.withCodeSystems(codeSystems));
+    }
+
+    /**
+     * Derives a new snapshot from the current one and publishes it.
+     *
+     * @param change Derives the new snapshot from the current one.
+     */
+    private static void update(UnaryOperator<Snapshot> change) {
+        synchronized (writeLock) {
+            snapshot = change.apply(snapshot);
+            version++;
+        }
+    }
+
+    /**
+     * Returns the registry version.  The version changes whenever a registration changes the registry, so a value
+     * derived from registry lookups remains current for as long as the version it was derived under.
+     *
+     * @return The registry version.
+     */
+    public static int getVersion() {
+        return version;
+    }
+
+    private static String toLowerCase(String value) {
+        return value.toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -55,18 +247,63 @@ public class CodeSystemRegistry {
      * @return The URN of the normalized code system.
      */
     public static String getNormalizedCodeSystem(String codeSystem) {
-        CodeSystem normalized = Optional.ofNullable(codeSystem)
-            .filter(StringUtils::isNotBlank)
-            .map(Oid::stripPrefix)
-            .map(normalizedCodeSystemMap::get)
-            .orElse(null);
-
-        if (normalized == null) {
-            CodeSystem cs = findCodeSystem(codeSystem);
-            normalized = cs == null ? null : getNormalizedCodeSystem(cs);
+        if (StringUtils.isBlank(codeSystem)) {
+            return codeSystem;
         }
 
-        return normalized != null ? normalized.getUrnAsString() : codeSystem;
+        Snapshot current = snapshot;
+        Map<String, String> cache = current.normalizationCache;
+        String normalized = cache.get(codeSystem);
+
+        if (normalized != null) {
+            normalizationCacheHits.increment();
+            return normalized;
+        }
+
+        normalizationCacheMisses.increment();
+        normalized = current.normalize(codeSystem);
+
+        if (cache.size() >= normalizationCacheSize) {
+            cache.clear();
+        }
+
+        cache.put(codeSystem, normalized);
+        return normalized;
+    }
+
+    /**
+     * Returns the normalization cache statistics.  The hit and miss counts are cumulative.
+     *
+     * @return The normalization cache statistics.
+     */
+    public static NormalizationCacheStats getNormalizationCacheStats() {
+        return new NormalizationCacheStats(normalizationCacheHits.sum(), normalizationCacheMisses.sum(),
+            snapshot.normalizationCache.size());
+    }
+
+    /**
+     * Sets the maximum number of memoized normalization results.  The cache is emptied when it reaches this size.
+     *
+     * @param size The maximum number of memoized normalization results.
+     */
+    public static void setNormalizationCacheSize(int size) {
+        Validate.isTrue(size > 0, "The cache size must be greater than zero.");
+        normalizationCacheSize = size;
+    }
+
+    /**
+     * Returns the canonical key of a code system.  Code systems that match by URN, share an OID with a registered code
+     * system, or normalize to the same code system have the same key, so the key may be used for both equality and
+     * hashing.  The key is the URN of the normalized form of the registered code system matching by URN or, failing
+     * that, by OID.  The URN of an unregistered code system is its own key.
+     * <p>
+     * A key is only valid for the registry version under which it was obtained (see {@link #getVersion()}).
+     *
+     * @param codeSystem The code system.
+     * @return The canonical key, or null if the code system or its URN is null.
+     */
+    public static String getCanonicalKey(CodeSystem codeSystem) {
+        return codeSystem == null || codeSystem.getUrn() == null ? null : snapshot.getCanonicalKey(codeSystem);
     }
 
     /**
@@ -76,10 +313,7 @@ public class CodeSystemRegistry {
      * @return The normalized code system.
      */
     public static CodeSystem getNormalizedCodeSystem(CodeSystem codeSystem) {
-        return Optional.ofNullable(codeSystem)
-            .map(CodeSystem::getUrnAsString)
-            .map(normalizedCodeSystemMap::get)
-            .orElse(codeSystem);
+        return snapshot.getNormalizedCodeSystem(codeSystem);
     }
 
     /**
@@ -93,8 +327,10 @@ public class CodeSystemRegistry {
         CodeSystem fromSystem,
         CodeSystem toSystem
     ) {
-        registerCodeSystemNormalization(fromSystem.getUrnAsString(), toSystem);
-        fromSystem.getOids().forEach(oid -> registerCodeSystemNormalization(oid.toString(), toSystem));
+        List<String> fromSystems = new ArrayList<>();
+        fromSystems.add(fromSystem.getUrnAsString());
+        fromSystem.getOids().forEach(oid -> fromSystems.add(oid.toString()));
+        update(current -> current.withNormalizations(fromSystems, toSystem));
     }
 
     /**
@@ -108,7 +344,7 @@ public class CodeSystemRegistry {
         String fromSystem,
         CodeSystem toSystem
     ) {
-        normalizedCodeSystemMap.put(fromSystem, toSystem);
+        update(current -> current.withNormalizations(Collections.singletonList(fromSystem), toSystem));
     }
 
     /**
@@ -118,11 +354,7 @@ public class CodeSystemRegistry {
      * @return The matching code system, or null if not found.
      */
     public static CodeSystem byUrn(String urn) {
-        return codeSystems.stream()
-            .filter(cs -> cs.getUrn() != null
-                && StringUtils.equalsIgnoreCase(urn, cs.getUrnAsString()))
-            .findAny()
-            .orElse(null);
+        return snapshot.byUrn(urn);
     }
 
     /**
@@ -132,12 +364,7 @@ public class CodeSystemRegistry {
      * @return The matching code system, or null if not found.
      */
     public static CodeSystem byUrn(URI urn) {
-        return Optional.ofNullable(urn)
-            .map(URI::toString)
-            .flatMap(u -> codeSystems.stream()
-                .filter(cs -> urn.equals(cs.getUrn()))
-                .findAny())
-            .orElse(null);
+        return urn == null ? null : snapshot.urnIndex.get(urn);
     }
 
     /**
@@ -147,11 +374,7 @@ public class CodeSystemRegistry {
      * @return The matching code system, or null if not found.
      */
     public static CodeSystem byOid(String oid) {
-        return codeSystems.stream()
-            .filter(cs -> cs.getOids().stream()
-                .anyMatch(value -> value.isEquivalent(oid)))
-            .findAny()
-            .orElse(null);
+        return snapshot.byOid(oid);
     }
 
     /**
@@ -161,10 +384,8 @@ public class CodeSystemRegistry {
      * @return The matching code system, or null if not found.
      */
     public static CodeSystem byOid(Oid oid) {
-        return codeSystems.stream()
-            .filter(cs -> cs.getOids().contains(oid))
-            .findAny()
-            .orElse(null);
+        CodeSystem codeSystem = oid == null ? null : snapshot.oidIndex.get(oid.toString());
+        return codeSystem != null && codeSystem.getOids().contains(oid) ? codeSystem : null;
     }
 
     /**
@@ -175,8 +396,7 @@ public class CodeSystemRegistry {
      * @return The corresponding code system, or null if not found.
      */
     public static CodeSystem findCodeSystem(String value) {
-        CodeSystem system = byUrn(value);
-        return system != null ? system : byOid(value);
+        return snapshot.findCodeSystem(value);
     }
 
     private CodeSystemRegistry() {
@@ -4,6 +4,9 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.beans.Transient;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -143,9 +146,90 @@ public interface Concept extends Serializable {
      * @return The matching concept descriptions (never null).
      */
     default Set<ConceptDescription> getConceptDescriptions(DescriptionType type) {
+        return getConceptDescriptions(null, type);
+    }
+
+    /**
+     * Returns all concept descriptions matching the specified language and type.  Implementations may return a shared,
+     * pre-built set, so the result must not be modified.
+     *
+     * @param language The language, or null for any language.
+     * @param type     The description type, or null for any type.
+     * @return The matching concept descriptions, in the order they were added (never null).
+     */
+    default Set<ConceptDescription> getConceptDescriptions(
+        Language language,
+        DescriptionType type
+    ) {
         return getConceptDescriptions().stream()
-            .filter(cd -> cd.getDescriptionType() == type)
-            .collect(Collectors.toSet());
+            .filter(cd -> language == null || language.equals(cd.getLanguage()))
+            .filter(cd -> type == null || cd.getDescriptionType() == type)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Returns the text of all concept descriptions matching the specified language and type.  Implementations may
+     * return a shared, pre-built list, so the result must not be modified.
+     *
+     * @param language The language, or null for any language.
+     * @param type     The description type, or null for any type.
+     * @return The text of the matching concept descriptions, in the order they were added (never null).
+     */
+    default List<String> getConceptDescriptionTexts(
+        Language language,
+        DescriptionType type
+    ) {
+        return getConceptDescriptions(language, type).stream()
+            .map(ConceptDescription::getDescription)
+            .toList();
+    }
+
+    /**
+     * Returns the concept descriptions matching the specified type in the first language of a language context for
+     * which any exist.
+     *
+     * @param context The language context.
+     * @param type    The description type, or null for any type.
+     * @return The matching concept descriptions, in the order they were added (never null).  The result may be shared
+     * and must not be modified.
+     */
+    default Set<ConceptDescription> getLocalizedDescriptions(
+        LanguageContext context,
+        DescriptionType type
+    ) {
+        for (Language language : context.getLanguages()) {
+            Set<ConceptDescription> descriptions = getConceptDescriptions(language, type);
+
+            if (!descriptions.isEmpty()) {
+                return descriptions;
+            }
+        }
+
+        return Collections.emptySet();
+    }
+
+    /**
+     * Returns the text of the concept descriptions matching the specified type in the first language of a language
+     * context for which any exist.
+     *
+     * @param context The language context.
+     * @param type    The description type, or null for any type.
+     * @return The text of the matching concept descriptions, in the order they were added (never null).  The result
+     * may be shared and must not be modified.
+     */
+    default List<String> getLocalizedDescriptionTexts(
+        LanguageContext context,
+        DescriptionType type
+    ) {
+        for (Language language : context.getLanguages()) {
+            List<String> texts = getConceptDescriptionTexts(language, type);
+
+            if (!texts.isEmpty()) {
+                return texts;
+            }
+        }
+
+        return Collections.emptyList();
     }
 
     /**
@@ -155,10 +239,8 @@ public interface Concept extends Serializable {
      * @return The matching concept description (possibly null).
      */
     default ConceptDescription getConceptDescription(DescriptionType type) {
-        return getConceptDescriptions().stream()
-            .filter(cd -> cd.getDescriptionType() == type)
-            .findFirst()
-            .orElse(null);
+        Set<ConceptDescription> descriptions = getConceptDescriptions(null, type);
+        return descriptions.isEmpty() ? null : descriptions.iterator().next();
     }
 
     /**
@@ -270,8 +352,10 @@ public interface Concept extends Serializable {
         if (!(target instanceof Concept rhs)) {
             return false;
         }
-        boolean sameCodeSystem = (!hasCodeSystem() && !rhs.hasCodeSystem()) || (hasCodeSystem() && getCodeSystem().isEqual(rhs.getCodeSystem()));
-        return sameCodeSystem && Objects.equals(getCode(), rhs.getCode());
+        if (!Objects.equals(getCode(), rhs.getCode())) {
+            return false;
+        }
+        return hasCodeSystem() ? getCodeSystem().isEqual(rhs.getCodeSystem()) : !rhs.hasCodeSystem();
     }
 
     /**
@@ -1,6 +1,8 @@
 package org.clinicalontology.terminology.api.model;
 
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * ISO 2 Language Codes.
@@ -143,6 +145,39 @@ public enum Language {
     ZH("Chinese"),
     ZU("Zulu");
 
+    /**
+     * The languages keyed by lower-case code, including the current ISO 639 codes of the languages listed under their
+     * legacy codes.
+     */
+    private static final Map<String, Language> BY_CODE = new HashMap<>();
+
+    static {
+        for (Language language : values()) {
+            BY_CODE.put(language.getCode(), language);
+        }
+
+        BY_CODE.put("he", IW);
+        BY_CODE.put("yi", JI);
+        BY_CODE.put("id", IN);
+    }
+
+    /**
+     * The language resolved for a locale.
+     *
+     * @param locale   The locale.
+     * @param language The language for the locale, possibly null.
+     */
+    private record Resolved(
+        Locale locale,
+        Language language
+    ) {
+    }
+
+    /**
+     * The language resolved for the most recent default locale.
+     */
+    private static volatile Resolved resolvedDefault;
+
     private final String text;
 
     Language(String text) {
@@ -167,11 +202,20 @@ public enum Language {
     }
 
     /**
-     * Returns the language for the default locale.
-     * @return The language for the default locale.
+     * Returns the language for the default locale.  The language is resolved again only when the default locale
+     * changes.
+     *
+     * @return The language for the default locale (possibly null).
      */
     public static Language getDefault() {
-        return fromLocale(Locale.getDefault());
+        Locale locale = Locale.getDefault();
+        Resolved resolved = resolvedDefault;
+
+        if (resolved == null || resolved.locale() != locale) {
+            resolvedDefault = resolved = new Resolved(locale, fromLocale(locale));
+        }
+
+        return resolved.language();
     }
 
     /**
@@ -181,10 +225,22 @@ public enum Language {
      * @return The language for the locale (possibly null).
      */
     public static Language fromLocale(Locale locale) {
-        try {
-            return Language.valueOf(locale.getLanguage().toUpperCase());
-        } catch (Exception e) {
+        return locale == null ? null : fromCode(locale.getLanguage());
+    }
+
+    /**
+     * Returns the language for an ISO 639 code.  Both the current and legacy codes for Hebrew, Yiddish and Indonesian
+     * are recognized.
+     *
+     * @param code The language code, in any case.
+     * @return The language for the code (possibly null).
+     */
+    public static Language fromCode(String code) {
+        if (code == null) {
             return null;
         }
+
+        Language language = BY_CODE.get(code);
+        return language != null ? language : BY_CODE.get(code.toLowerCase(Locale.ROOT));
     }
 }
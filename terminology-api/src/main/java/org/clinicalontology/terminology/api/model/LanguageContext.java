@@ -0,0 +1,154 @@
+package org.clinicalontology.terminology.api.model;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An ordered chain of languages used to select concept descriptions, such as Spanish falling back to English.
+ * Description lookups use the first language in the chain for which a matching description exists.  A null entry
+ * stands for any language, and is typically the last entry if present.
+ * <p>
+ * Instances are immutable and may be shared by a service or created for a single request.
+ */
+public final class LanguageContext implements Serializable {
+
+    /**
+     * A context that matches descriptions in any language.
+     */
+    public static final LanguageContext ANY = new LanguageContext(Collections.singletonList(null));
+
+    /**
+     * The context resolved for the most recent default locale.
+     */
+    private static volatile LanguageContext resolvedDefault;
+
+    private final List<Language> languages;
+
+    /**
+     * The locale from which this context was resolved, or null if it was not resolved from a locale.
+     */
+    private final transient Locale locale;
+
+    private LanguageContext(List<Language> languages) {
+        this(languages, null);
+    }
+
+    private LanguageContext(
+        List<Language> languages,
+        Locale locale
+    ) {
+        this.languages = languages;
+        this.locale = locale;
+    }
+
+    /**
+     * Returns a context for an ordered chain of languages.  Duplicates are ignored.
+     *
+     * @param languages The languages, in order of preference.  A null entry stands for any language.
+     * @return The language context.
+     */
+    public static LanguageContext of(Language... languages) {
+        Validate.isTrue(languages.length > 0, "At least one language is required.");
+        return new LanguageContext(toChain(Arrays.asList(languages)));
+    }
+
+    /**
+     * Returns a context for the language of a locale followed by fallback languages.  If the locale's language is not
+     * recognized, only the fallback languages are used, or any language if there are none.
+     *
+     * @param locale    The locale.
+     * @param fallbacks The fallback languages, in order of preference.
+     * @return The language context.
+     */
+    public static LanguageContext fromLocale(
+        Locale locale,
+        Language... fallbacks
+    ) {
+        List<Language> languages = new ArrayList<>(fallbacks.length + 1);
+        Language language = Language.fromLocale(locale);
+
+        if (language != null) {
+            languages.add(language);
+        }
+
+        Collections.addAll(languages, fallbacks);
+        return languages.isEmpty() ? ANY : new LanguageContext(toChain(languages), locale);
+    }
+
+    /**
+     * Returns the context for the default locale, which contains only its language or, if that is not recognized, any
+     * language.  The context is resolved again only when the default locale changes.
+     *
+     * @return The language context for the default locale.
+     */
+    public static LanguageContext getDefault() {
+        Locale locale = Locale.getDefault();
+        LanguageContext context = resolvedDefault;
+
+        if (context == null || context.locale != locale) {
+            Language language = Language.fromLocale(locale);
+            resolvedDefault = context = new LanguageContext(Collections.singletonList(language), locale);
+        }
+
+        return context;
+    }
+
+    private static List<Language> toChain(List<Language> languages) {
+        Set<Language> chain = new LinkedHashSet<>(languages);
+        return Collections.unmodifiableList(new ArrayList<>(chain));
+    }
+
+    /**
+     * Returns a context that tries this context's languages and then the fallback languages.
+     *
+     * @param fallbacks The fallback languages, in order of preference.
+     * @return The language context.
+     */
+    public LanguageContext withFallback(Language... fallbacks) {
+        List<Language> chain = new ArrayList<>(languages);
+        Collections.addAll(chain, fallbacks);
+        return new LanguageContext(toChain(chain));
+    }
+
+    /**
+     * Returns the preferred language.
+     *
+     * @return The preferred language, or null for any language.
+     */
+    public Language getLanguage() {
+        return languages.getFirst();
+    }
+
+    /**
+     * Returns the languages in order of preference.
+     *
+     * @return An immutable list of the languages, in which a null entry stands for any language.
+     */
+    public List<Language> getLanguages() {
+        return languages;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof LanguageContext other && languages.equals(other.languages);
+    }
+
+    @Override
+    public int hashCode() {
+        return languages.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return languages.toString();
+    }
+
+}
@@ -13,6 +13,33 @@ import java.util.List;
  */
 public interface TerminologyMappings extends Serializable, Iterable<TerminologyMapping> {
 
+    /**
+     * An immutable, empty collection of mappings.
+     */
+    TerminologyMappings EMPTY = new TerminologyMappings() {
+
+        @Override
+        public void add(TerminologyMapping... mapping) {
+            throw new UnsupportedOperationException("These mappings cannot be modified.");
+        }
+
+        @Override
+        public List<TerminologyMapping> getMappings() {
+            return List.of();
+        }
+
+        @Override
+        public TerminologyMapping findFirstMatch(CodeSystem targetCodeSystem) {
+            return null;
+        }
+
+        @Override
+        public List<TerminologyMapping> findMatches(CodeSystem targetCodeSystem) {
+            return List.of();
+        }
+
+    };
+
     /**
      * Adds a concept mapping to the collection.
      *
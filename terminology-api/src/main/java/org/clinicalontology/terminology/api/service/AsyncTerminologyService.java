@@ -0,0 +1,152 @@
+package org.clinicalontology.terminology.api.service;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link TerminologyService}.  Each method returns immediately with a future that is
+ * completed with the result of the corresponding {@link TerminologyService} method, or completed exceptionally with
+ * the exception it threw.
+ */
+public interface AsyncTerminologyService {
+
+    //--------------- Terminology Mappings ---------------
+
+    /**
+     * See {@link TerminologyService#getMappingsForConcept(Concept)}.
+     *
+     * @param source The concept that is at the source of the mapping (RHS).
+     * @return A future for the set of mappings having the concept at the source of the mapping.
+     */
+    CompletableFuture<TerminologyMappings> getMappingsForConcept(Concept source);
+
+    /**
+     * See {@link TerminologyService#getMappingsForConcept(Concept, Concept)}.
+     *
+     * @param source   The concept that is at the source of the mapping (RHS).
+     * @param category The category whose mappings are sought.
+     * @return A future for the set of mappings having the concept at the source of the mapping.
+     */
+    CompletableFuture<TerminologyMappings> getMappingsForConcept(
+        Concept source,
+        Concept category
+    );
+
+    /**
+     * See {@link TerminologyService#getMappingsForConcept(Concept, String)}.
+     *
+     * @param source           The concept that is at the source of the mapping (RHS).
+     * @param targetCodeSystem The code system of the target concepts.
+     * @return A future for the set of mappings having the concept at the source of the mapping.
+     */
+    CompletableFuture<TerminologyMappings> getMappingsForConcept(
+        Concept source,
+        String targetCodeSystem
+    );
+
+    /**
+     * See {@link TerminologyService#getMappingsForTarget(Concept, TerminologyMappingType, String)}.
+     *
+     * @param target           The concept that is at the target of the mapping (LHS).
+     * @param type             The mapping type, or null for all types.
+     * @param sourceCodeSystem The code system of the source concepts, or null for all code systems.
+     * @return A future for the set of mappings having the concept at the target of the mapping.
+     */
+    CompletableFuture<TerminologyMappings> getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    );
+
+    //--------------- Value Sets ---------------
+
+    /**
+     * See {@link TerminologyService#isValidValueSet(ValueSetIdentifier)}.
+     *
+     * @param valueSetIdentifier The value set whose existence in the terminology repository we are determining.
+     * @return A future for true if the value set exists in the given terminology repository.
+     */
+    CompletableFuture<Boolean> isValidValueSet(ValueSetIdentifier valueSetIdentifier);
+
+    /**
+     * See {@link TerminologyService#isMemberOfValueSet(ValueSetIdentifier, Concept)}.
+     *
+     * @param valueSetIdentifier A value set identifier.
+     * @param concept            The concept whose inclusion in a value set we are verifying.
+     * @return A future for true if the concept is part of the value set.
+     */
+    CompletableFuture<Boolean> isMemberOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    );
+
+    /**
+     * See {@link TerminologyService#findMembersOfValueSet(ValueSetIdentifier, List)}.
+     *
+     * @param valueSetIdentifier A value set identifier.
+     * @param concepts           The concepts whose inclusion in the value set we are verifying.
+     * @return A future for a bitmap in which bit <i>i</i> is set if the <i>i</i>th concept is part of the value set.
+     */
+    CompletableFuture<BitSet> findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    );
+
+    /**
+     * See {@link TerminologyService#findMembersOfValueSets(List, List)}.
+     *
+     * @param valueSetIdentifiers The value set identifiers.
+     * @param concepts            The concepts whose inclusion in the value sets we are verifying.
+     * @return A future for one bitmap per value set, in the order of <code>valueSetIdentifiers</code>.
+     */
+    CompletableFuture<List<BitSet>> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    );
+
+    /**
+     * See {@link TerminologyService#getValueSetExpansion(ValueSetIdentifier)}.
+     *
+     * @param valueSetIdentifier The identifier of the value set whose expansion we are requesting.
+     * @return A future for the expansion for the given value set.
+     */
+    CompletableFuture<ValueSetExpansion> getValueSetExpansion(ValueSetIdentifier valueSetIdentifier);
+
+    //--------------- Concepts ---------------
+
+    /**
+     * See {@link TerminologyService#isValidConcept(Concept)}.
+     *
+     * @param concept The concept whose existence in the terminology repository we are determining.
+     * @return A future for true if the concept exists in the given terminology repository.
+     */
+    CompletableFuture<Boolean> isValidConcept(Concept concept);
+
+    /**
+     * See {@link TerminologyService#getConcept(String, String)}.
+     *
+     * @param codeSystem The code system.
+     * @param code       The concept code.
+     * @return A future for the concept.
+     */
+    CompletableFuture<Concept> getConcept(
+        String codeSystem,
+        String code
+    );
+
+    /**
+     * See {@link TerminologyService#getConcept(Concept)}.
+     *
+     * @param concept The concept.
+     * @return A future for the concept.
+     */
+    CompletableFuture<Concept> getConcept(Concept concept);
+
+}
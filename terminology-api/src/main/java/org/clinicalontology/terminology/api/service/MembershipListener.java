@@ -0,0 +1,101 @@
+package org.clinicalontology.terminology.api.service;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+
+/**
+ * Receives notification of value set membership checks, for example to export metrics to a monitoring system.
+ * Listeners may be called concurrently from many threads and should return quickly.
+ */
+public interface MembershipListener {
+
+    /**
+     * A listener that ignores all notifications.
+     */
+    MembershipListener NONE = new MembershipListener() {
+    };
+
+    /**
+     * Called when a membership check completes.
+     *
+     * @param valueSetIdentifier The value set.
+     * @param concept            The concept that was checked.
+     * @param member             True if the concept is a member of the value set.
+     * @param elapsedNanos       The time taken by the check, in nanoseconds.
+     */
+    default void onMembershipCheck(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept,
+        boolean member,
+        long elapsedNanos
+    ) {
+    }
+
+    /**
+     * Called when a batch membership check against a single value set completes.
+     *
+     * @param valueSetIdentifier The value set.
+     * @param conceptCount       The number of concepts that were checked.
+     * @param memberCount        The number of concepts that are members of the value set.
+     * @param elapsedNanos       The time taken by the batch, in nanoseconds.
+     */
+    default void onBatchMembershipCheck(
+        ValueSetIdentifier valueSetIdentifier,
+        int conceptCount,
+        int memberCount,
+        long elapsedNanos
+    ) {
+    }
+
+    /**
+     * Called when a membership check fails.
+     *
+     * @param valueSetIdentifier The value set.
+     * @param concept            The concept that was checked, or null if a batch check failed or the semantic key
+     *                           of the item being checked could not be obtained.
+     * @param error              The cause of the failure.
+     * @param elapsedNanos       The time taken before the failure, in nanoseconds.
+     */
+    default void onMembershipError(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept,
+        Throwable error,
+        long elapsedNanos
+    ) {
+    }
+
+    /**
+     * Called when a membership result is sought in a cache.
+     *
+     * @param valueSetIdentifier The value set.
+     * @param hit                True if the result was found in the cache.
+     */
+    default void onCacheLookup(
+        ValueSetIdentifier valueSetIdentifier,
+        boolean hit
+    ) {
+    }
+
+    /**
+     * Called when many membership results are sought in a cache at once.  The default implementation calls
+     * {@link #onCacheLookup} once per lookup, so listeners that count lookups should override it.
+     *
+     * @param valueSetIdentifier The value set.
+     * @param hits               The number of lookups that found a result.
+     * @param misses             The number of lookups that did not.
+     */
+    default void onCacheLookups(
+        ValueSetIdentifier valueSetIdentifier,
+        long hits,
+        long misses
+    ) {
+        for (long i = 0; i < hits; i++) {
+            onCacheLookup(valueSetIdentifier, true);
+        }
+
+        for (long i = 0; i < misses; i++) {
+            onCacheLookup(valueSetIdentifier, false);
+        }
+    }
+
+}
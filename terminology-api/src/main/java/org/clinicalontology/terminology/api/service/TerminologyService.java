@@ -2,10 +2,10 @@ package org.clinicalontology.terminology.api.service;
 
 import org.clinicalontology.terminology.api.model.*;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Logical interface exposed by a terminology service.
@@ -48,6 +48,34 @@ public interface TerminologyService {
         String targetCodeSystem
     );
 
+    /**
+     * Returns all concept mappings that involve this concept as the target of the mapping.
+     *
+     * @param target The concept that is at the target of the mapping (LHS).
+     * @return The set of mappings having the concept at the target of the mapping.
+     */
+    default TerminologyMappings getMappingsForTarget(Concept target) {
+        return getMappingsForTarget(target, null, null);
+    }
+
+    /**
+     * Returns all concept mappings of the specified type from source concepts within the specified code system that
+     * involve this concept as the target of the mapping.  The default implementation, for services that do not index
+     * mappings by target, returns {@link TerminologyMappings#EMPTY no mappings}.
+     *
+     * @param target           The concept that is at the target of the mapping (LHS).
+     * @param type             The mapping type, or null for all types.
+     * @param sourceCodeSystem The code system of the source concepts, or null for all code systems.
+     * @return The set of mappings having the concept at the target of the mapping.
+     */
+    default TerminologyMappings getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+        return TerminologyMappings.EMPTY;
+    }
+
     //--------------- Value Sets ---------------
 
     /**
@@ -70,6 +98,52 @@ public interface TerminologyService {
         Concept concept
     );
 
+    /**
+     * Tests which of a list of concepts are elements of a value set.  The default implementation calls
+     * {@link #isMemberOfValueSet} for each concept.  Implementations should override this to answer the whole batch
+     * at once, for example in a single round trip.
+     *
+     * @param valueSetIdentifier A value set identifier.
+     * @param concepts           The concepts whose inclusion in the value set we are verifying.
+     * @return A bitmap in which bit <i>i</i> is set if the <i>i</i>th concept is part of the value set.
+     */
+    default BitSet findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    ) {
+        BitSet members = new BitSet(concepts.size());
+
+        for (int i = 0; i < concepts.size(); i++) {
+            if (isMemberOfValueSet(valueSetIdentifier, concepts.get(i))) {
+                members.set(i);
+            }
+        }
+
+        return members;
+    }
+
+    /**
+     * Tests which of a list of concepts are elements of each of a list of value sets.  The default implementation
+     * calls {@link #findMembersOfValueSet} for each value set.
+     *
+     * @param valueSetIdentifiers The value set identifiers.
+     * @param concepts            The concepts whose inclusion in the value sets we are verifying.
+     * @return One bitmap per value set, in the order of <code>valueSetIdentifiers</code>, in which bit <i>i</i> is
+     *     set if the <i>i</i>th concept is part of the value set.
+     */
+    default List<BitSet> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    ) {
+        List<BitSet> members = new ArrayList<>(valueSetIdentifiers.size());
+
+        for (ValueSetIdentifier valueSetIdentifier : valueSetIdentifiers) {
+            members.add(findMembersOfValueSet(valueSetIdentifier, concepts));
+        }
+
+        return members;
+    }
+
     /**
      * Returns the expansion of the given value set.
      *
@@ -120,13 +194,23 @@ public interface TerminologyService {
     }
 
     /**
-     * Returns the set of descriptions associated with the concept in the default language.
+     * Returns the language context used by description lookups that do not specify a language.
+     *
+     * @return The language context, which by default is that of the default locale.
+     */
+    default LanguageContext getLanguageContext() {
+        return LanguageContext.getDefault();
+    }
+
+    /**
+     * Returns the set of descriptions associated with the concept in the first language of the service's language
+     * context for which any exist.
      *
      * @param concept The concept whose descriptions are sought.
-     * @return The set of descriptions associated with the concept in the default language.
+     * @return The set of descriptions associated with the concept in the language context.
      */
     default Set<ConceptDescription> getConceptDescriptions(Concept concept) {
-        return getConceptDescriptions(concept, Language.getDefault());
+        return getLocalizedDescriptions(concept, null, getLanguageContext());
     }
 
     /**
@@ -134,29 +218,30 @@ public interface TerminologyService {
      *
      * @param concept  The concept whose descriptions are sought.
      * @param language The desired language.
-     * @return The set of descriptions associated with the concept in the specified language.
+     * @return The set of descriptions associated with the concept in the specified language.  The default
+     * implementation returns the shared set from {@link Concept#getConceptDescriptions(Language, DescriptionType)},
+     * which must not be modified.
      */
     default Set<ConceptDescription> getConceptDescriptions(
         Concept concept,
         Language language
     ) {
-        return getConcept(concept).getConceptDescriptions().stream()
-            .filter(dx -> language == null || language.equals(dx.getLanguage()))
-            .collect(Collectors.toSet());
+        return getConcept(concept).getConceptDescriptions(language, null);
     }
 
     /**
-     * Returns the set of descriptions associated with the concept in the specified language.
+     * Returns the set of descriptions of the given type associated with the concept in the first language of the
+     * service's language context for which any exist.
      *
      * @param concept         The concept whose descriptions are sought.
      * @param descriptionType The description type.
-     * @return The set of descriptions associated with the concept in the specified language.
+     * @return The set of descriptions associated with the concept in the language context.
      */
     default Set<ConceptDescription> getConceptDescriptions(
         Concept concept,
         DescriptionType descriptionType
     ) {
-        return getConceptDescriptions(concept, descriptionType, Language.getDefault());
+        return getLocalizedDescriptions(concept, descriptionType, getLanguageContext());
     }
 
     /**
@@ -172,13 +257,12 @@ public interface TerminologyService {
         DescriptionType descriptionType,
         Language language
     ) {
-        return getConceptDescriptions(concept, language).stream()
-            .filter(dx -> descriptionType == null || dx.getDescriptionType() == descriptionType)
-            .collect(Collectors.toSet());
+        return getConcept(concept).getConceptDescriptions(language, descriptionType);
     }
 
     /**
-     * Returns all descriptions of the given type.
+     * Returns all descriptions of the given type in the first language of the service's language context for which
+     * any exist.
      *
      * @param concept         The concept.
      * @param descriptionType The description type.
@@ -188,7 +272,7 @@ public interface TerminologyService {
         Concept concept,
         DescriptionType descriptionType
     ) {
-        return getConceptDescriptionText(concept, descriptionType, Language.getDefault());
+        return getLocalizedDescriptionText(concept, descriptionType, getLanguageContext());
     }
 
     /**
@@ -204,7 +288,42 @@ public interface TerminologyService {
         DescriptionType descriptionType,
         Language language
     ) {
-        return descriptionsAsText(getConceptDescriptions(concept, descriptionType, language));
+        return getConcept(concept).getConceptDescriptionTexts(language, descriptionType);
+    }
+
+    /**
+     * Returns the set of descriptions of the given type associated with the concept in the first language of a
+     * language context for which any exist.
+     *
+     * @param concept         The concept whose descriptions are sought.
+     * @param descriptionType The description type, or null for any type.
+     * @param context         The language context.
+     * @return The set of descriptions associated with the concept in the language context.  The default implementation
+     * returns the shared set from {@link Concept#getLocalizedDescriptions(LanguageContext, DescriptionType)}, which
+     * must not be modified.
+     */
+    default Set<ConceptDescription> getLocalizedDescriptions(
+        Concept concept,
+        DescriptionType descriptionType,
+        LanguageContext context
+    ) {
+        return getConcept(concept).getLocalizedDescriptions(context, descriptionType);
+    }
+
+    /**
+     * Returns all descriptions of the given type in the first language of a language context for which any exist.
+     *
+     * @param concept         The concept.
+     * @param descriptionType The description type, or null for any type.
+     * @param context         The language context.
+     * @return All descriptions of the given type.
+     */
+    default List<String> getLocalizedDescriptionText(
+        Concept concept,
+        DescriptionType descriptionType,
+        LanguageContext context
+    ) {
+        return getConcept(concept).getLocalizedDescriptionTexts(context, descriptionType);
     }
 
     /**
@@ -224,7 +343,7 @@ public interface TerminologyService {
      * @return The synonyms for the concept.
      */
     default List<String> getConceptSynonyms(Concept concept) {
-        return getConceptSynonyms(concept, Language.getDefault());
+        return getConceptDescriptionText(concept, DescriptionType.SYNONYM);
     }
 
     /**
@@ -248,7 +367,7 @@ public interface TerminologyService {
      * @return The definition for the concept.
      */
     default String getConceptDefinition(Concept concept) {
-        return getConceptDefinition(concept, Language.getDefault());
+        return getFirst(getConceptDescriptionText(concept, DescriptionType.DEFINITION));
     }
 
     /**
@@ -279,18 +398,6 @@ public interface TerminologyService {
     default void refresh() {
     }
 
-    /**
-     * Returns a list of descriptions as text.
-     *
-     * @param descriptions The descriptions.
-     * @return A list of descriptions as text.
-     */
-    private static List<String> descriptionsAsText(Collection<ConceptDescription> descriptions) {
-        return descriptions.stream()
-            .map(ConceptDescription::getDescription)
-            .toList();
-    }
-
     /**
      * Returns the first element of a list or null if the list is empty or null.
      *
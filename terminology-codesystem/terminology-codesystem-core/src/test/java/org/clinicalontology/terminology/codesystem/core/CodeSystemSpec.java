@@ -38,12 +38,20 @@ public class CodeSystemSpec {
         assertEquals(CodeSystems.LOINC, CodeSystemRegistry.byOid(LOINC_OIDSTR));
         assertEquals(CodeSystems.ICD9_CM, CodeSystemRegistry.byOid(ICD9_OID));
         assertEquals(CodeSystems.ICD9_CM, CodeSystemRegistry.byOid(ICD9_OIDSTR));
+        assertEquals(CodeSystems.LOINC, CodeSystemRegistry.byUrn(LOINC_URISTR.toUpperCase()));
+        assertEquals(CodeSystems.LOINC, CodeSystemRegistry.byOid(LOINC_OID.toURNString()));
+        assertNull(CodeSystemRegistry.byUrn((String) null));
+        assertNull(CodeSystemRegistry.byOid((String) null));
 
         assertNull(CodeSystemRegistry.findCodeSystem(UNKNOWN_URISTR));
 
         assertEquals(CodeSystems.LOINC, CodeSystemRegistry.findCodeSystem(LOINC_OIDSTR));
         assertEquals(CodeSystems.ICD9_CM, CodeSystemRegistry.findCodeSystem(ICD9_OIDSTR));
         assertEquals(CodeSystems.LOINC, CodeSystemRegistry.findCodeSystem(LOINC_OIDSTR));
+        assertEquals(CodeSystems.LOINC, CodeSystemRegistry.findCodeSystem(LOINC_URISTR));
+        assertEquals(LOINC_URISTR, CodeSystemRegistry.getNormalizedCodeSystem(LOINC_OID.toURNString()));
+        assertEquals(CodeSystems.ICD10_CM.getUrnAsString(),
+            CodeSystemRegistry.getNormalizedCodeSystem(CodeSystems.ICD10_CM_DIAGNOSIS.getUrnAsString()));
 
         assertEquals(LOINC_OID, CodeSystems.LOINC.getFirstOid());
         assertNotEquals(ICD9_OIDSTR, CodeSystems.ICD9_CM.getFirstOid().toURNString());
@@ -0,0 +1,402 @@
+package org.clinicalontology.terminology.impl.cache;
+
+import org.apache.commons.lang3.Validate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe, read-through cache with a bounded size and optional expiration.  Entries are spread across
+ * independently locked segments, each holding its share of the maximum size in least-recently-used order and
+ * applying the configured {@link EvictionPolicy} when full.
+ * <p>
+ * A lookup that misses loads the value while other callers missing on the same key wait for, and share, that single
+ * load.  Null values are cached only if {@link CacheConfig#isNegativeCachingEnabled() negative caching} is enabled.
+ * Loads that fail are not cached; the exception is thrown to every waiting caller.  A load that is in progress when
+ * its key is {@link #invalidate invalidated}, or the whole cache is {@link #invalidateAll() invalidated}, returns its
+ * value to its callers but does not store it.  Loads of other keys are unaffected by the invalidation of a key.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * The maximum number of segments.
+     */
+    public static final int MAX_SEGMENTS = 16;
+
+    /**
+     * The minimum number of entries per segment, so that small caches evict in near-global order.
+     */
+    private static final long MIN_SEGMENT_CAPACITY = 64;
+
+    /**
+     * A cached value.
+     *
+     * @param value     The value, possibly null.
+     * @param expiresAt The value of the ticker at which the entry expires, or {@link Long#MAX_VALUE}.
+     */
+    private record Entry<V>(
+        V value,
+        long expiresAt
+    ) {
+    }
+
+    private class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final FrequencySketch sketch;
+
+        private final long capacity;
+
+        private Segment(long capacity) {
+            this.capacity = capacity;
+            this.sketch = config.evictionPolicy() == EvictionPolicy.TINY_LFU ? new FrequencySketch(capacity) : null;
+        }
+
+        /**
+         * Returns the live entry for a key, or null if there is none.
+         */
+        private Entry<V> get(
+            K key,
+            int hash
+        ) {
+            lock.lock();
+
+            try {
+                if (sketch != null) {
+                    sketch.increment(hash);
+                }
+
+                Entry<V> entry = entries.get(key);
+
+                if (entry != null && isExpired(entry)) {
+                    entries.remove(key);
+                    expirations.increment();
+                    return null;
+                }
+
+                return entry;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Stores an entry if its load is still registered for the key, meaning that neither the key nor the cache has
+         * been invalidated since the load began, and the eviction policy admits it.  Invalidation deregisters the load
+         * before removing the entry under this segment's lock, so an entry stored here is never left behind.
+         */
+        private void put(
+            K key,
+            int hash,
+            Entry<V> entry,
+            CompletableFuture<V> load
+        ) {
+            lock.lock();
+
+            try {
+                if (loading.get(key) != load) {
+                    return;
+                }
+
+                if (entries.size() >= capacity && !entries.containsKey(key) && !makeRoom(hash)) {
+                    rejections.increment();
+                    return;
+                }
+
+                entries.put(key, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Evicts the least recently used entry, unless the eviction policy prefers it to the candidate.
+         */
+        private boolean makeRoom(int candidateHash) {
+            Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+            Map.Entry<K, Entry<V>> victim = iterator.next();
+
+            if (isExpired(victim.getValue())) {
+                expirations.increment();
+            } else if (sketch == null || sketch.frequency(candidateHash) > sketch.frequency(hash(victim.getKey()))) {
+                evictions.increment();
+            } else {
+                return false;
+            }
+
+            iterator.remove();
+            return true;
+        }
+
+        private void remove(K key) {
+            lock.lock();
+
+            try {
+                entries.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+    private final CacheConfig config;
+
+    private final LongSupplier ticker;
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * Loads in progress.  Invalidation removes a key's load, so that its value is not stored.
+     */
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Creates a cache that measures expiration with {@link System#nanoTime()}.
+     *
+     * @param config The cache configuration.
+     */
+    public BoundedCache(CacheConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param config The cache configuration.
+     * @param ticker Returns the current time in nanoseconds, for expiration.
+     */
+    public BoundedCache(
+        CacheConfig config,
+        LongSupplier ticker
+    ) {
+        Validate.notNull(config, "A cache configuration is required.");
+        Validate.notNull(ticker, "A ticker is required.");
+        this.config = config;
+        this.ticker = ticker;
+        int segmentCount = (int) Math.min(MAX_SEGMENTS, Long.highestOneBit(
+            Math.max(config.maximumSize() / MIN_SEGMENT_CAPACITY, 1)));
+        long segmentCapacity = (config.maximumSize() + segmentCount - 1) / segmentCount;
+
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(new Segment(segmentCapacity));
+        }
+    }
+
+    /**
+     * Returns the cache configuration.
+     *
+     * @return The cache configuration.
+     */
+    public CacheConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the cached value for a key, loading it if it is not present.
+     *
+     * @param key    The key, which must not be null.
+     * @param loader Loads the value for a key.  Exceptions thrown by the loader are rethrown unchanged.
+     * @return The value, possibly null.
+     */
+    public V get(
+        K key,
+        Function<? super K, ? extends V> loader
+    ) {
+        Validate.notNull(key, "A key is required.");
+
+        if (!config.isEnabled()) {
+            misses.increment();
+            loads.increment();
+            return loader.apply(key);
+        }
+
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        Entry<V> entry = segment.get(key, hash);
+
+        if (entry != null) {
+            hits.increment();
+            return entry.value();
+        }
+
+        misses.increment();
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+
+        if (existing != null) {
+            return await(existing);
+        }
+
+        V value;
+
+        try {
+            loads.increment();
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+
+        long ttl = expirationNanos(value);
+
+        if (ttl > 0) {
+            long now = ticker.getAsLong();
+            long expiresAt = ttl == Long.MAX_VALUE || now + ttl < now ? Long.MAX_VALUE : now + ttl;
+            segment.put(key, hash, new Entry<>(value, expiresAt), future);
+        }
+
+        loading.remove(key, future);
+        future.complete(value);
+        return value;
+    }
+
+    /**
+     * Discards the entry for a key.  A load of the key that is in progress is not stored.
+     *
+     * @param key The key.
+     */
+    public void invalidate(K key) {
+        if (config.isEnabled()) {
+            loading.remove(key);
+            segmentFor(hash(key)).remove(key);
+        }
+    }
+
+    /**
+     * Discards all entries.
+     */
+    public void invalidateAll() {
+        loading.clear();
+
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the number of entries, including any that have expired but not yet been discarded.
+     *
+     * @return The number of entries.
+     */
+    public long size() {
+        long size = 0;
+
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns statistics for the cache since it was created.
+     *
+     * @return The statistics.
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), expirations.sum(),
+            rejections.sum(), size());
+    }
+
+    /**
+     * Returns how long a value should be kept, in nanoseconds, or 0 if it should not be stored.
+     */
+    private long expirationNanos(V value) {
+        if (value == null && !config.isNegativeCachingEnabled()) {
+            return 0;
+        }
+
+        Duration ttl = value == null ? config.negativeExpireAfterWrite() : config.expireAfterWrite();
+
+        if (ttl == null) {
+            return Long.MAX_VALUE;
+        }
+
+        try {
+            return ttl.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return entry.expiresAt() != Long.MAX_VALUE && ticker.getAsLong() - entry.expiresAt() >= 0;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.get((hash >>> 16) & (segments.size() - 1));
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.clinicalontology.terminology.impl.cache;
+
+import org.apache.commons.lang3.Validate;
+
+import java.time.Duration;
+
+/**
+ * The configuration of a {@link BoundedCache}.
+ *
+ * @param maximumSize              The maximum number of entries.  A cache of size zero stores nothing.
+ * @param expireAfterWrite         How long an entry is kept after it is loaded, or null to keep it until evicted.
+ * @param negativeExpireAfterWrite How long a null result is kept after it is loaded, or null or zero to not keep null
+ *                                 results at all.
+ * @param evictionPolicy           How entries are chosen for eviction.
+ */
+public record CacheConfig(
+    long maximumSize,
+    Duration expireAfterWrite,
+    Duration negativeExpireAfterWrite,
+    EvictionPolicy evictionPolicy
+) {
+
+    /**
+     * A configuration that disables caching.
+     */
+    public static final CacheConfig DISABLED = new CacheConfig(0, null, null, EvictionPolicy.LRU);
+
+    public CacheConfig {
+        Validate.isTrue(maximumSize >= 0, "The maximum size must not be negative.");
+        Validate.isTrue(expireAfterWrite == null || expireAfterWrite.isPositive(),
+            "The expiration time must be positive.");
+        Validate.isTrue(negativeExpireAfterWrite == null || !negativeExpireAfterWrite.isNegative(),
+            "The negative expiration time must not be negative.");
+        Validate.notNull(evictionPolicy, "An eviction policy is required.");
+    }
+
+    /**
+     * Returns a configuration using TinyLFU admission in which null results expire at the same time as others.
+     *
+     * @param maximumSize      The maximum number of entries.
+     * @param expireAfterWrite How long an entry is kept after it is loaded, or null to keep it until evicted.
+     * @return The configuration.
+     */
+    public static CacheConfig of(
+        long maximumSize,
+        Duration expireAfterWrite
+    ) {
+        return new CacheConfig(maximumSize, expireAfterWrite, expireAfterWrite, EvictionPolicy.TINY_LFU);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different expiration time for null results.
+     *
+     * @param negativeExpireAfterWrite How long a null result is kept, or null or zero to not keep null results.
+     * @return The new configuration.
+     */
+    public CacheConfig withNegativeExpireAfterWrite(Duration negativeExpireAfterWrite) {
+        return new CacheConfig(maximumSize, expireAfterWrite, negativeExpireAfterWrite, evictionPolicy);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different eviction policy.
+     *
+     * @param evictionPolicy How entries are chosen for eviction.
+     * @return The new configuration.
+     */
+    public CacheConfig withEvictionPolicy(EvictionPolicy evictionPolicy) {
+        return new CacheConfig(maximumSize, expireAfterWrite, negativeExpireAfterWrite, evictionPolicy);
+    }
+
+    /**
+     * Returns true if this configuration stores anything.
+     *
+     * @return True if this configuration stores anything.
+     */
+    public boolean isEnabled() {
+        return maximumSize > 0;
+    }
+
+    /**
+     * Returns true if null results are stored.
+     *
+     * @return True if null results are stored.
+     */
+    public boolean isNegativeCachingEnabled() {
+        return negativeExpireAfterWrite != null && negativeExpireAfterWrite.isPositive();
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.clinicalontology.terminology.impl.cache;
+
+/**
+ * Statistics describing the use of a {@link BoundedCache}.
+ *
+ * @param hits        The number of lookups that found a live entry.
+ * @param misses      The number of lookups that did not, including those that waited for another caller's load.
+ * @param loads       The number of times a value was loaded.
+ * @param evictions   The number of entries evicted to make room for others.
+ * @param expirations The number of entries discarded because they expired.
+ * @param rejections  The number of loaded values that were not admitted.
+ * @param size        The number of entries.
+ */
+public record CacheStats(
+    long hits,
+    long misses,
+    long loads,
+    long evictions,
+    long expirations,
+    long rejections,
+    long size
+) {
+
+    /**
+     * Returns the fraction of lookups that found a live entry.
+     *
+     * @return The hit ratio, or 0 if there have been no lookups.
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit ratio), %d loads, %d evictions, %d expirations, "
+            + "%d rejections, %d entries", hits, misses, getHitRatio() * 100, loads, evictions, expirations,
+            rejections, size);
+    }
+
+}
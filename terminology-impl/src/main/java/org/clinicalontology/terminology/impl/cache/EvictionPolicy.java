@@ -0,0 +1,20 @@
+package org.clinicalontology.terminology.impl.cache;
+
+/**
+ * How a {@link BoundedCache} chooses which entries to keep once it is full.
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Every new entry is admitted, and the least recently used entry is evicted to make room for it.
+     */
+    LRU,
+
+    /**
+     * A new entry is admitted only if it has been requested more often than the least recently used entry, which is
+     * then evicted.  Request frequencies are estimated with a compact sketch that decays over time, so entries that
+     * are requested once, as in a scan, do not displace entries that are requested repeatedly.
+     */
+    TINY_LFU
+
+}
@@ -0,0 +1,88 @@
+package org.clinicalontology.terminology.impl.cache;
+
+/**
+ * A count-min sketch that estimates how often keys have been seen.  Each counter is stored in a byte but saturates at
+ * 15, so it needs only four bits of range; bytes are used rather than packed nibbles for simpler, faster access.
+ * Every counter is halved once the number of increments reaches ten times the capacity, so that the estimates favor
+ * recent history.  Not thread-safe.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] counters;
+
+    private final int mask;
+
+    private final long sampleSize;
+
+    private long additions;
+
+    /**
+     * Creates a sketch sized for the given number of keys.
+     *
+     * @param capacity The maximum number of keys held by the cache.
+     */
+    FrequencySketch(long capacity) {
+        int width = Integer.highestOneBit(Math.clamp(capacity, 8, 1 << 28) * 2 - 1);
+        counters = new byte[width * SEEDS.length];
+        mask = width - 1;
+        sampleSize = 10 * Math.max(capacity, 1);
+    }
+
+    /**
+     * Returns the estimated number of times a key has been seen, up to 15.
+     *
+     * @param hash The hash code of the key.
+     * @return The estimated frequency.
+     */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records that a key has been seen.
+     *
+     * @param hash The hash code of the key.
+     */
+    void increment(int hash) {
+        boolean added = false;
+
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+
+            additions /= 2;
+        }
+    }
+
+    private int indexOf(
+        int hash,
+        int row
+    ) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return row * (mask + 1) + ((int) h & mask);
+    }
+
+}
@@ -3,9 +3,11 @@ package org.clinicalontology.terminology.impl.model;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
 import org.clinicalontology.terminology.api.model.Concept;
 import org.clinicalontology.terminology.api.model.Oid;
 
+import java.beans.Transient;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Objects;
@@ -13,9 +15,29 @@ import java.util.Set;
 
 /**
  * Implementation of {@link CodeSystem}.
+ * <p>
+ * Equality and hashing are based on the canonical key (see {@link CodeSystemRegistry#getCanonicalKey(CodeSystem)}).
+ * The key is computed once and reused until the registry changes, so comparisons do not depend on the number of
+ * OIDs, and code systems that are equal by OID or normalization also have equal hash codes.  A registration that makes
+ * a code system equivalent to another changes its hash code.  Concepts do not hash their code system for this reason,
+ * and value set expansions re-key their indexes when the registry changes.
  */
 public class CodeSystemImpl implements CodeSystem {
 
+    /**
+     * The canonical identity of a code system.
+     *
+     * @param key             The canonical key.
+     * @param hash            The hash code of the key.
+     * @param registryVersion The registry version under which the identity was computed.
+     */
+    private record Identity(
+        String key,
+        int hash,
+        int registryVersion
+    ) {
+    }
+
     /**
      * The name assigned to the code system such as SNOMED-CT, RxNorm
      */
@@ -36,6 +58,11 @@ public class CodeSystemImpl implements CodeSystem {
      */
     private final Set<Oid> oids;
 
+    /**
+     * The cached canonical identity.
+     */
+    private transient volatile Identity identity;
+
     /**
      * Create a code system.  Returns null if the URN is null or empty.
      *
@@ -188,6 +215,27 @@ public class CodeSystemImpl implements CodeSystem {
         return new ConceptImpl(this, code, preferredName);
     }
 
+    @Override
+    @Transient
+    public String getCanonicalKey() {
+        return getIdentity().key;
+    }
+
+    @Override
+    public boolean isEqual(Object target) {
+        if (this == target) {
+            return true;
+        }
+
+        if (target instanceof CodeSystemImpl cs) {
+            Identity lhs = getIdentity();
+            Identity rhs = cs.getIdentity();
+            return lhs.hash == rhs.hash && Objects.equals(lhs.key, rhs.key);
+        }
+
+        return CodeSystem.super.isEqual(target);
+    }
+
     @Override
     public boolean equals(Object other) {
         return other instanceof CodeSystem && isEqual(other);
@@ -195,7 +243,24 @@ public class CodeSystemImpl implements CodeSystem {
 
     @Override
     public int hashCode() {
-        return Objects.hash(urn);
+        return getIdentity().hash;
+    }
+
+    /**
+     * Returns the canonical identity, recomputing it if the registry has changed since it was last computed.
+     *
+     * @return The canonical identity.
+     */
+    private Identity getIdentity() {
+        Identity current = identity;
+        int registryVersion = CodeSystemRegistry.getVersion();
+
+        if (current == null || current.registryVersion != registryVersion) {
+            String key = CodeSystemRegistry.getCanonicalKey(this);
+            identity = current = new Identity(key, Objects.hashCode(key), registryVersion);
+        }
+
+        return current;
     }
 
     @Override
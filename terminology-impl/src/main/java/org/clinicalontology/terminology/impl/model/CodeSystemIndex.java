@@ -0,0 +1,62 @@
+package org.clinicalontology.terminology.impl.model;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of the ordinals of an array of code systems by canonical key (see {@link CodeSystem#getCanonicalKey()}).
+ * Canonical keys depend on the {@link CodeSystemRegistry}, so an index is only valid for the registry version under
+ * which it was built.  Holders rebuild it when {@link #isCurrent()} returns false, which keeps lookups correct when
+ * code systems are registered after the index was first built.  More than one code system may share a key.
+ */
+public final class CodeSystemIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final int registryVersion;
+
+    private final Map<String, int[]> ordinals = new HashMap<>();
+
+    /**
+     * Builds an index under the current registry version.
+     *
+     * @param codeSystems The code systems, indexed by ordinal.  Null entries are not indexed.
+     */
+    public CodeSystemIndex(CodeSystem[] codeSystems) {
+        this.registryVersion = CodeSystemRegistry.getVersion();
+
+        for (int ordinal = 0; ordinal < codeSystems.length; ordinal++) {
+            String key = codeSystems[ordinal] == null ? null : codeSystems[ordinal].getCanonicalKey();
+
+            if (key != null) {
+                ordinals.merge(key, new int[]{ordinal}, ArrayUtils::addAll);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the index was built under the current registry version.
+     *
+     * @return True if the index was built under the current registry version.
+     */
+    public boolean isCurrent() {
+        return registryVersion == CodeSystemRegistry.getVersion();
+    }
+
+    /**
+     * Returns the ordinals of the code systems having the same canonical key as a code system.
+     *
+     * @param codeSystem The code system (possibly null).
+     * @return The matching ordinals, in ascending order (never null).
+     */
+    public int[] getOrdinals(CodeSystem codeSystem) {
+        String key = codeSystem == null ? null : codeSystem.getCanonicalKey();
+        int[] matches = key == null ? null : ordinals.get(key);
+        return matches == null ? NONE : matches;
+    }
+
+}
@@ -0,0 +1,344 @@
+package org.clinicalontology.terminology.impl.model;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ConceptSet;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A frozen, read-only implementation of {@link ValueSetExpansion} intended for very large value sets.  Rather than
+ * retaining a {@link Concept} instance per member, members are encoded as a code system ordinal plus a code, with all
+ * codes packed into a single character array and sorted so that membership can be determined by binary search.
+ * {@link Concept} instances are only materialized when the set returned by {@link #getExpansion()} is iterated.
+ * <p>
+ * Only the code system and code of each member are retained.  Preferred names, versions, and descriptions are not.
+ * Code systems are matched by canonical key under the current {@link CodeSystemRegistry} version, so code systems
+ * registered after the expansion was built are taken into account.
+ */
+public class CompactValueSetExpansionImpl implements ValueSetExpansion {
+
+    private final ValueSetIdentifier valueSetIdentifier;
+
+    private final ConceptSet semanticKey;
+
+    /**
+     * The distinct code systems of the members, indexed by ordinal.  A null entry represents members without a
+     * code system.
+     */
+    private final CodeSystem[] codeSystems;
+
+    /**
+     * The code system ordinals by canonical key, rebuilt when the code system registry changes.
+     */
+    private volatile CodeSystemIndex codeSystemIndex;
+
+    /**
+     * The ordinal of the members without a code system, or -1 if there are none.
+     */
+    private final int nullSystemOrdinal;
+
+    /**
+     * For ordinal n, members of that code system occupy positions systemStarts[n] (inclusive) through
+     * systemStarts[n + 1] (exclusive).
+     */
+    private final int[] systemStarts;
+
+    /**
+     * For member position n, the code occupies codeChars[codeOffsets[n]] through codeChars[codeOffsets[n + 1]].
+     */
+    private final int[] codeOffsets;
+
+    private final char[] codeChars;
+
+    private final Set<Concept> expansion = new CompactConceptSet();
+
+    /**
+     * Creates a compact copy of another value set expansion.
+     *
+     * @param valueSetExpansion The value set expansion to copy.
+     */
+    public CompactValueSetExpansionImpl(ValueSetExpansion valueSetExpansion) {
+        this(valueSetExpansion.getValueSetIdentifier(), valueSetExpansion.getSemanticKey(), valueSetExpansion.getExpansion());
+    }
+
+    /**
+     * Creates a compact value set expansion.
+     *
+     * @param valueSetIdentifier The value set identifier.
+     * @param expansion          The members of the value set.
+     */
+    public CompactValueSetExpansionImpl(
+        ValueSetIdentifier valueSetIdentifier,
+        Collection<Concept> expansion
+    ) {
+        this(valueSetIdentifier, null, expansion);
+    }
+
+    private CompactValueSetExpansionImpl(
+        ValueSetIdentifier valueSetIdentifier,
+        ConceptSet semanticKey,
+        Collection<Concept> expansion
+    ) {
+        this.valueSetIdentifier = valueSetIdentifier;
+        this.semanticKey = semanticKey;
+        List<CodeSystem> systems = new ArrayList<>();
+        List<List<String>> codesBySystem = new ArrayList<>();
+        Map<String, Integer> systemOrdinals = new HashMap<>();
+
+        if (expansion != null) {
+            for (Concept concept : expansion) {
+                Validate.isTrue(concept != null && concept.getCode() != null, "Every member must have a code.");
+                Integer ordinal = systemOrdinals.get(toKey(concept.getCodeSystem()));
+
+                if (ordinal == null) {
+                    ordinal = systems.size();
+                    systems.add(concept.getCodeSystem());
+                    codesBySystem.add(new ArrayList<>());
+                    systemOrdinals.put(toKey(concept.getCodeSystem()), ordinal);
+                }
+
+                codesBySystem.get(ordinal).add(concept.getCode());
+            }
+        }
+
+        codeSystems = systems.toArray(new CodeSystem[0]);
+        codeSystemIndex = new CodeSystemIndex(codeSystems);
+        nullSystemOrdinal = systems.indexOf(null);
+        systemStarts = new int[codeSystems.length + 1];
+        List<String> sortedCodes = new ArrayList<>();
+
+        for (int ordinal = 0; ordinal < codeSystems.length; ordinal++) {
+            systemStarts[ordinal] = sortedCodes.size();
+            codesBySystem.get(ordinal).stream()
+                .distinct()
+                .sorted()
+                .forEach(sortedCodes::add);
+        }
+
+        systemStarts[codeSystems.length] = sortedCodes.size();
+        codeOffsets = new int[sortedCodes.size() + 1];
+        codeChars = new char[sortedCodes.stream().mapToInt(String::length).sum()];
+        int offset = 0;
+
+        for (int i = 0; i < sortedCodes.size(); i++) {
+            String code = sortedCodes.get(i);
+            codeOffsets[i] = offset;
+            code.getChars(0, code.length(), codeChars, offset);
+            offset += code.length();
+        }
+
+        codeOffsets[sortedCodes.size()] = offset;
+    }
+
+    @Override
+    public ValueSetIdentifier getValueSetIdentifier() {
+        return valueSetIdentifier;
+    }
+
+    @Override
+    public ConceptSet getSemanticKey() {
+        return semanticKey;
+    }
+
+    /**
+     * Returns an unmodifiable view of the members of this value set.  Concepts are created as the view is iterated.
+     *
+     * @return An unmodifiable view of the members of this value set.
+     */
+    @Override
+    public Set<Concept> getExpansion() {
+        return expansion;
+    }
+
+    @Override
+    public boolean hasConcept(Concept concept) {
+        return concept != null && indexOf(concept.getCodeSystem(), concept.getCode()) >= 0;
+    }
+
+    /**
+     * Returns the number of members in this value set.
+     *
+     * @return The number of members in this value set.
+     */
+    public int size() {
+        return codeOffsets.length - 1;
+    }
+
+    /**
+     * Returns the member position of a code system and code.
+     *
+     * @param codeSystem The code system (possibly null).
+     * @param code       The code.
+     * @return The member position, or -1 if not a member.
+     */
+    private int indexOf(
+        CodeSystem codeSystem,
+        String code
+    ) {
+        if (code == null) {
+            return -1;
+        }
+
+        if (codeSystem == null) {
+            return nullSystemOrdinal < 0 ? -1 : indexOf(nullSystemOrdinal, code);
+        }
+
+        for (int ordinal : getCodeSystemIndex().getOrdinals(codeSystem)) {
+            int position = indexOf(ordinal, code);
+
+            if (position >= 0) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the member position of a code within the members of a code system.
+     *
+     * @param ordinal The code system ordinal.
+     * @param code    The code.
+     * @return The member position, or -1 if not a member.
+     */
+    private int indexOf(
+        int ordinal,
+        String code
+    ) {
+        int low = systemStarts[ordinal];
+        int high = systemStarts[ordinal + 1] - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareCode(mid, code);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares the code at the specified member position with a code, consistent with {@link String#compareTo}.
+     *
+     * @param position The member position.
+     * @param code     The code to compare.
+     * @return The result of the comparison.
+     */
+    private int compareCode(
+        int position,
+        String code
+    ) {
+        int start = codeOffsets[position];
+        int length = codeOffsets[position + 1] - start;
+        int limit = Math.min(length, code.length());
+
+        for (int i = 0; i < limit; i++) {
+            int cmp = codeChars[start + i] - code.charAt(i);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return length - code.length();
+    }
+
+    /**
+     * Returns the code system index, rebuilding it if the code system registry has changed since it was built.
+     */
+    private CodeSystemIndex getCodeSystemIndex() {
+        CodeSystemIndex index = codeSystemIndex;
+
+        if (!index.isCurrent()) {
+            codeSystemIndex = index = new CodeSystemIndex(codeSystems);
+        }
+
+        return index;
+    }
+
+    private static String toKey(CodeSystem codeSystem) {
+        String key = codeSystem == null ? null : codeSystem.getCanonicalKey();
+        return key == null ? "" : key;
+    }
+
+    /**
+     * Creates the concept at the specified member position.
+     *
+     * @param ordinal  The code system ordinal of the member.
+     * @param position The member position.
+     * @return The newly created concept.
+     */
+    private Concept toConcept(
+        int ordinal,
+        int position
+    ) {
+        int start = codeOffsets[position];
+        return new ConceptImpl(codeSystems[ordinal], new String(codeChars, start, codeOffsets[position + 1] - start));
+    }
+
+    /**
+     * Read-only set view that materializes concepts on iteration.
+     */
+    private class CompactConceptSet extends AbstractSet<Concept> {
+
+        @Override
+        public int size() {
+            return CompactValueSetExpansionImpl.this.size();
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Concept concept && hasConcept(concept);
+        }
+
+        @Override
+        public Iterator<Concept> iterator() {
+            return new Iterator<>() {
+
+                private int ordinal;
+
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return position < size();
+                }
+
+                @Override
+                public Concept next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    while (position >= systemStarts[ordinal + 1]) {
+                        ordinal++;
+                    }
+
+                    return toConcept(ordinal, position++);
+                }
+            };
+        }
+
+    }
+
+}
@@ -80,6 +80,11 @@ public class ConceptDescriptionImpl implements ConceptDescription {
         }
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(getLanguage(), getDescriptionType(), getDescription());
+    }
+
     @Override
     public String toString() {
         return description;
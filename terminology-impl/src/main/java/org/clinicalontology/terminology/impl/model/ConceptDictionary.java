@@ -0,0 +1,310 @@
+package org.clinicalontology.terminology.impl.model;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe dictionary that interns code systems and concepts.  Code systems are resolved through the
+ * {@link CodeSystemRegistry} so that registered instances are reused, and each interned concept is assigned a dense
+ * integer id.  Concepts are keyed by code system URN and code exactly as given; no normalization is performed.
+ * <p>
+ * The numbers of concepts and code systems are capped separately.  Once a cap is reached, lookups of entries not
+ * already in the dictionary return new, uninterned instances and an id of {@link #NO_ID}; they never fail.  Call
+ * {@link #clear()} to release all entries.
+ * <p>
+ * The {@link #getDefault() default} dictionary is shared by the whole process and interns whatever systems and codes
+ * it is given, including ones from untrusted input, so its caps are kept small: {@value #DEFAULT_MAX_SIZE} concepts
+ * and {@value #DEFAULT_MAX_CODE_SYSTEMS} code systems.  Code systems registered with the {@link CodeSystemRegistry}
+ * are shared by the registry whether or not they are interned here.  Create a dedicated dictionary for larger
+ * workloads.
+ * <p>
+ * Interned concepts are shared, so they are {@link ConceptImpl#immutable immutable}.  Lookups take no locks; a lookup
+ * that overlaps a call to {@link #clear()} may return an entry from before the clear.
+ */
+public class ConceptDictionary {
+
+    /**
+     * The id returned for a concept that is not interned.
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * The maximum number of concepts interned by the default dictionary.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1_000_000;
+
+    /**
+     * The maximum number of code systems interned by the default dictionary.
+     */
+    public static final int DEFAULT_MAX_CODE_SYSTEMS = 10_000;
+
+    private static final ConceptDictionary defaultInstance = new ConceptDictionary(
+        DEFAULT_MAX_SIZE,
+        DEFAULT_MAX_CODE_SYSTEMS);
+
+    private static final int PAGE_SHIFT = 12;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private record Entry(
+        int id,
+        Concept concept
+    ) {
+    }
+
+    /**
+     * The interned code systems and concepts.  {@link #clear()} replaces the state rather than emptying it, so no lock
+     * is needed to keep its parts consistent.
+     */
+    private static class State {
+
+        private final Map<String, CodeSystem> codeSystems = new ConcurrentHashMap<>();
+
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        /**
+         * Interned concepts, indexed by id, in pages that are allocated as they are first needed.
+         */
+        private final AtomicReferenceArray<AtomicReferenceArray<Concept>> pages;
+
+        private State(int maxSize) {
+            pages = new AtomicReferenceArray<>((maxSize + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+        }
+
+        private Concept getConcept(int id) {
+            AtomicReferenceArray<Concept> page = id < 0 || id >>> PAGE_SHIFT >= pages.length() ? null
+                : pages.get(id >>> PAGE_SHIFT);
+            return page == null ? null : page.get(id & (PAGE_SIZE - 1));
+        }
+
+        private void setConcept(
+            int id,
+            Concept concept
+        ) {
+            int index = id >>> PAGE_SHIFT;
+            AtomicReferenceArray<Concept> page = pages.get(index);
+
+            if (page == null) {
+                pages.compareAndSet(index, null, new AtomicReferenceArray<>(PAGE_SIZE));
+                page = pages.get(index);
+            }
+
+            page.set(id & (PAGE_SIZE - 1), concept);
+        }
+
+    }
+
+    private final int maxSize;
+
+    private final int maxCodeSystems;
+
+    private volatile State state;
+
+    /**
+     * Returns the shared dictionary instance.
+     *
+     * @return The shared dictionary instance.
+     */
+    public static ConceptDictionary getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * Creates a dictionary.
+     *
+     * @param maxSize The maximum number of concepts and, separately, code systems to intern.
+     */
+    public ConceptDictionary(int maxSize) {
+        this(maxSize, maxSize);
+    }
+
+    /**
+     * Creates a dictionary.
+     *
+     * @param maxSize        The maximum number of concepts to intern.
+     * @param maxCodeSystems The maximum number of code systems to intern.
+     */
+    public ConceptDictionary(
+        int maxSize,
+        int maxCodeSystems
+    ) {
+        Validate.isTrue(maxSize > 0, "The maximum size must be greater than zero.");
+        Validate.isTrue(maxCodeSystems > 0, "The maximum number of code systems must be greater than zero.");
+        this.maxSize = maxSize;
+        this.maxCodeSystems = maxCodeSystems;
+        this.state = new State(maxSize);
+    }
+
+    /**
+     * Returns the canonical code system for a URN.  If a code system with the same URN has been registered with the
+     * {@link CodeSystemRegistry}, that instance is returned.
+     *
+     * @param system The code system URN.
+     * @return The canonical code system, or null if the URN is blank.
+     */
+    public CodeSystem getCodeSystem(String system) {
+        return getCodeSystem(state, system);
+    }
+
+    private CodeSystem getCodeSystem(
+        State state,
+        String system
+    ) {
+        if (StringUtils.isBlank(system)) {
+            return null;
+        }
+
+        CodeSystem codeSystem = state.codeSystems.get(system);
+
+        if (codeSystem == null) {
+            codeSystem = state.codeSystems.size() < maxCodeSystems
+                ? state.codeSystems.computeIfAbsent(system, ConceptDictionary::resolveCodeSystem)
+                : resolveCodeSystem(system);
+        }
+
+        return codeSystem;
+    }
+
+    /**
+     * Returns the canonical concept for a code system and code.
+     *
+     * @param system The code system URN.
+     * @param code   The code.
+     * @return The canonical concept, or null if either argument is empty.
+     */
+    public Concept getConcept(
+        String system,
+        String code
+    ) {
+        Entry entry = getEntry(system, code);
+        return entry == null ? null : entry.concept;
+    }
+
+    /**
+     * Returns the canonical concept for a code system and code.
+     *
+     * @param system The code system.
+     * @param code   The code.
+     * @return The canonical concept, or null if either argument is empty.
+     */
+    public Concept getConcept(
+        CodeSystem system,
+        String code
+    ) {
+        return getConcept(system == null ? null : system.getUrnAsString(), code);
+    }
+
+    /**
+     * Returns the canonical concept with the specified id.
+     *
+     * @param id The concept id.
+     * @return The canonical concept, or null if no concept has that id.
+     */
+    public Concept getConcept(int id) {
+        return state.getConcept(id);
+    }
+
+    /**
+     * Returns the id of a code system and code, interning the concept if necessary.
+     *
+     * @param system The code system URN.
+     * @param code   The code.
+     * @return The concept id, or {@link #NO_ID} if either argument is empty or the dictionary is full.
+     */
+    public int getId(
+        String system,
+        String code
+    ) {
+        Entry entry = getEntry(system, code);
+        return entry == null ? NO_ID : entry.id;
+    }
+
+    /**
+     * Returns the id of a concept, interning the concept if necessary.
+     *
+     * @param concept The concept.
+     * @return The concept id, or {@link #NO_ID} if the concept is invalid or the dictionary is full.
+     */
+    public int getId(Concept concept) {
+        return concept == null ? NO_ID : getId(concept.getCodeSystemAsString(), concept.getCode());
+    }
+
+    /**
+     * Returns the number of interned concepts.
+     *
+     * @return The number of interned concepts.
+     */
+    public int size() {
+        return state.entries.size();
+    }
+
+    /**
+     * Releases all interned code systems and concepts.  Ids are reassigned from zero afterward.
+     */
+    public void clear() {
+        state = new State(maxSize);
+    }
+
+    private Entry getEntry(
+        String system,
+        String code
+    ) {
+        if (StringUtils.isEmpty(system) || StringUtils.isEmpty(code)) {
+            return null;
+        }
+
+        State state = this.state;
+        String key = system + "|" + code;
+        Entry entry = state.entries.get(key);
+
+        if (entry == null) {
+            CodeSystem codeSystem = getCodeSystem(state, system);
+
+            if (state.nextId.get() < maxSize) {
+                entry = state.entries.computeIfAbsent(key, k -> newEntry(state, codeSystem, code));
+            }
+
+            if (entry == null) {
+                entry = new Entry(NO_ID, ConceptImpl.immutable(codeSystem, code));
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Creates an entry with the next id, or returns null if the dictionary is full.  Called from within
+     * {@link ConcurrentHashMap#computeIfAbsent}, so it takes no locks.
+     */
+    private Entry newEntry(
+        State state,
+        CodeSystem codeSystem,
+        String code
+    ) {
+        int id = state.nextId.getAndIncrement();
+
+        if (id >= maxSize) {
+            return null;
+        }
+
+        Concept concept = ConceptImpl.immutable(codeSystem, code);
+        state.setConcept(id, concept);
+        return new Entry(id, concept);
+    }
+
+    private static CodeSystem resolveCodeSystem(String system) {
+        CodeSystem codeSystem = CodeSystemRegistry.byUrn(system);
+        return codeSystem != null && system.equals(codeSystem.getUrnAsString()) ? codeSystem : CodeSystemImpl.create(system);
+    }
+
+}
@@ -1,6 +1,5 @@
 package org.clinicalontology.terminology.impl.model;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.clinicalontology.terminology.api.model.*;
@@ -8,6 +7,7 @@ import org.clinicalontology.terminology.api.model.*;
 import java.net.URI;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -26,8 +26,17 @@ public class ConceptImpl implements Concept {
 
     private final Set<ConceptDescription> conceptDescriptions = new LinkedHashSet<>();
 
+    private final Set<ConceptDescription> conceptDescriptionsView = Collections.unmodifiableSet(conceptDescriptions);
+
+    /**
+     * The index of the concept descriptions, or null if it must be rebuilt.
+     */
+    private transient volatile DescriptionIndex descriptionIndex;
+
     private String preferredName;
 
+    private final boolean immutable;
+
     /**
      * Parses a pipe-delimited representation of a concept.  At a minimum, this must include
      * the code system and the code.
@@ -40,9 +49,10 @@ public class ConceptImpl implements Concept {
             return null;
         }
 
-        String[] pcs = conceptStr.split("\\|");
-        Validate.inclusiveBetween(2, 3, pcs.length, "Bad format for concept: %s", conceptStr);
-        return create(ArrayUtils.get(pcs, 0), ArrayUtils.get(pcs, 1), ArrayUtils.get(pcs, 2));
+        String[] pcs = new String[3];
+        int len = FieldTokenizer.split(conceptStr, FieldTokenizer.FIELD_DELIMITER, pcs);
+        Validate.inclusiveBetween(2, 3, len, "Bad format for concept: %s", conceptStr);
+        return create(pcs[0], pcs[1], pcs[2]);
     }
 
     /**
@@ -56,7 +66,7 @@ public class ConceptImpl implements Concept {
         CodeSystem system,
         String code
     ) {
-        return create(system == null ? null : system.getUrnAsString(), code, null);
+        return system == null || system.getUrn() == null || StringUtils.isEmpty(code) ? null : new ConceptImpl(system, code);
     }
 
     /**
@@ -75,6 +85,7 @@ public class ConceptImpl implements Concept {
 
     /**
      * Creates a new Concept from a system and code, unless either are null or empty, in which case it returns a null.
+     * The code system is interned through the default {@link ConceptDictionary}, up to its code system cap.
      *
      * @param system        The code system.
      * @param code          The code.
@@ -86,7 +97,23 @@ public class ConceptImpl implements Concept {
         String code,
         String preferredName
     ) {
-        return StringUtils.isEmpty(system) || StringUtils.isEmpty(code) ? null : new ConceptImpl(system, code, preferredName);
+        return StringUtils.isEmpty(system) || StringUtils.isEmpty(code) ? null
+            : new ConceptImpl(ConceptDictionary.getDefault().getCodeSystem(system), code, preferredName);
+    }
+
+    /**
+     * Creates a concept that cannot be modified, having only a code system and code.  Such concepts may be shared
+     * safely, for example by a {@link ConceptDictionary}.
+     *
+     * @param system The code system.
+     * @param code   The code.
+     * @return The immutable concept.
+     */
+    public static ConceptImpl immutable(
+        CodeSystem system,
+        String code
+    ) {
+        return new ConceptImpl(system, code, true);
     }
 
     /**
@@ -97,6 +124,19 @@ public class ConceptImpl implements Concept {
         this.codeSystem = null;
         this.code = null;
         this.version = null;
+        this.immutable = false;
+    }
+
+    private ConceptImpl(
+        CodeSystem system,
+        String code,
+        boolean immutable
+    ) {
+        this.codeSystem = system;
+        this.code = code;
+        this.version = null;
+        this.immutable = immutable;
+        Validate.isTrue(isValidConcept(), "Concept must have a code.");
     }
 
     public ConceptImpl(
@@ -156,6 +196,7 @@ public class ConceptImpl implements Concept {
         this.code = code;
         this.preferredName = preferredName;
         this.version = version;
+        this.immutable = false;
         Validate.isTrue(isValidConcept(), "Concept must have a code.");
         addConceptDescriptions(conceptDescriptions);
     }
@@ -165,6 +206,7 @@ public class ConceptImpl implements Concept {
         this.code = concept.getCode();
         this.preferredName = concept.getPreferredName();
         this.version = concept.getVersion();
+        this.immutable = false;
         conceptDescriptions.addAll(concept.getConceptDescriptions());
     }
 
@@ -190,12 +232,67 @@ public class ConceptImpl implements Concept {
 
     @Override
     public void setPreferredName(String preferredName) {
+        checkMutable();
         this.preferredName = preferredName;
     }
 
+    /**
+     * Returns true if this concept cannot be modified.
+     *
+     * @return True if this concept cannot be modified.
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("This concept cannot be modified.");
+        }
+    }
+
     @Override
     public Set<ConceptDescription> getConceptDescriptions() {
-        return conceptDescriptions;
+        return conceptDescriptionsView;
+    }
+
+    /**
+     * Returns the concept descriptions matching the specified language and type from a pre-built index.
+     */
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Language language,
+        DescriptionType type
+    ) {
+        return getDescriptionIndex().getDescriptions(language, type);
+    }
+
+    /**
+     * Returns the text of the concept descriptions matching the specified language and type from a pre-built index.
+     */
+    @Override
+    public List<String> getConceptDescriptionTexts(
+        Language language,
+        DescriptionType type
+    ) {
+        return getDescriptionIndex().getTexts(language, type);
+    }
+
+    private DescriptionIndex getDescriptionIndex() {
+        DescriptionIndex index = this.descriptionIndex;
+
+        if (index == null) {
+            synchronized (conceptDescriptions) {
+                index = this.descriptionIndex;
+
+                if (index == null) {
+                    this.descriptionIndex = index = conceptDescriptions.isEmpty() ? DescriptionIndex.EMPTY
+                        : new DescriptionIndex(conceptDescriptions);
+                }
+            }
+        }
+
+        return index;
     }
 
     @Override
@@ -211,7 +308,12 @@ public class ConceptImpl implements Concept {
 
     @Override
     public void addConceptDescriptions(ConceptDescription... conceptDescriptions) {
-        Collections.addAll(this.conceptDescriptions, conceptDescriptions);
+        checkMutable();
+
+        synchronized (this.conceptDescriptions) {
+            Collections.addAll(this.conceptDescriptions, conceptDescriptions);
+            descriptionIndex = null;
+        }
     }
 
     @Override
@@ -221,6 +323,7 @@ public class ConceptImpl implements Concept {
 
     @Override
     public void setAlias(String alias) {
+        checkMutable();
         this.alias = alias;
     }
 
@@ -229,9 +332,16 @@ public class ConceptImpl implements Concept {
         return isEqual(obj);
     }
 
+    /**
+     * Returns a hash code consistent with {@link Concept#isEqual}.  Only the code is hashed: the canonical key of the
+     * code system depends on the {@link CodeSystemRegistry}, and a hash that changed with later registrations would
+     * strand concepts already placed in hash-based collections.
+     *
+     * @return The hash code.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(hasCodeSystem() ? getCodeSystem().getUrn() : null, getCode());
+        return Objects.hashCode(code);
     }
 
     @Override
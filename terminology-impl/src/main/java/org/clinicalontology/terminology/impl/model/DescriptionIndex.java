@@ -0,0 +1,167 @@
+package org.clinicalontology.terminology.impl.model;
+
+import org.clinicalontology.terminology.api.model.ConceptDescription;
+import org.clinicalontology.terminology.api.model.DescriptionType;
+import org.clinicalontology.terminology.api.model.Language;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of the descriptions of a concept by language and type.  Every combination of a language (or any
+ * language) and a type (or any type) that matches at least one description is pre-built, so lookups return shared
+ * sets and lists without filtering, copying or allocating.
+ */
+final class DescriptionIndex {
+
+    private static final int SLOTS = DescriptionType.values().length + 1;
+
+    /**
+     * An index of no descriptions.
+     */
+    static final DescriptionIndex EMPTY = new DescriptionIndex(List.of());
+
+    /**
+     * The descriptions matching a language and type.
+     *
+     * @param descriptions The matching descriptions.
+     * @param texts        The text of the matching descriptions.
+     */
+    private record Entry(
+        Set<ConceptDescription> descriptions,
+        List<String> texts
+    ) {
+    }
+
+    /**
+     * The entries for any language, indexed by {@link #slot(DescriptionType)}.
+     */
+    private final Entry[] anyLanguage;
+
+    /**
+     * The entries for each language, indexed by {@link #slot(DescriptionType)}.
+     */
+    private final Map<Language, Entry[]> byLanguage;
+
+    /**
+     * Builds an index.
+     *
+     * @param descriptions The descriptions to index, in the order they were added.
+     */
+    DescriptionIndex(Collection<ConceptDescription> descriptions) {
+        List<Set<ConceptDescription>> anyLanguage = new ArrayList<>(Collections.nCopies(SLOTS, null));
+        Map<Language, List<Set<ConceptDescription>>> byLanguage = new EnumMap<>(Language.class);
+
+        for (ConceptDescription description : descriptions) {
+            Language language = description.getLanguage();
+            DescriptionType type = description.getDescriptionType();
+            add(anyLanguage, type, description);
+
+            if (language != null) {
+                add(byLanguage.computeIfAbsent(language, key -> new ArrayList<>(Collections.nCopies(SLOTS, null))),
+                    type, description);
+            }
+        }
+
+        this.anyLanguage = toEntries(anyLanguage);
+        this.byLanguage = new EnumMap<>(Language.class);
+        byLanguage.forEach((language, matches) -> this.byLanguage.put(language, toEntries(matches)));
+    }
+
+    private static void add(
+        List<Set<ConceptDescription>> matches,
+        DescriptionType type,
+        ConceptDescription description
+    ) {
+        add(matches, 0, description);
+
+        if (type != null) {
+            add(matches, slot(type), description);
+        }
+    }
+
+    private static void add(
+        List<Set<ConceptDescription>> matches,
+        int slot,
+        ConceptDescription description
+    ) {
+        if (matches.get(slot) == null) {
+            matches.set(slot, new LinkedHashSet<>());
+        }
+
+        matches.get(slot).add(description);
+    }
+
+    private static Entry[] toEntries(List<Set<ConceptDescription>> matches) {
+        Entry[] entries = new Entry[SLOTS];
+
+        for (int i = 0; i < SLOTS; i++) {
+            Set<ConceptDescription> match = matches.get(i);
+            entries[i] = match == null ? null : new Entry(Collections.unmodifiableSet(match), toTexts(match));
+        }
+
+        return entries;
+    }
+
+    private static List<String> toTexts(Set<ConceptDescription> descriptions) {
+        List<String> texts = new ArrayList<>(descriptions.size());
+
+        for (ConceptDescription description : descriptions) {
+            texts.add(description.getDescription());
+        }
+
+        return Collections.unmodifiableList(texts);
+    }
+
+    /**
+     * Returns the slot of a description type, reserving slot 0 for any type.
+     */
+    private static int slot(DescriptionType type) {
+        return type == null ? 0 : type.ordinal() + 1;
+    }
+
+    private Entry getEntry(
+        Language language,
+        DescriptionType type
+    ) {
+        Entry[] entries = language == null ? anyLanguage : byLanguage.get(language);
+        return entries == null ? null : entries[slot(type)];
+    }
+
+    /**
+     * Returns the descriptions matching a language and type.
+     *
+     * @param language The language, or null for any language.
+     * @param type     The description type, or null for any type.
+     * @return An immutable set of the matching descriptions, in the order they were added.
+     */
+    Set<ConceptDescription> getDescriptions(
+        Language language,
+        DescriptionType type
+    ) {
+        Entry entry = getEntry(language, type);
+        return entry == null ? Collections.emptySet() : entry.descriptions();
+    }
+
+    /**
+     * Returns the text of the descriptions matching a language and type.
+     *
+     * @param language The language, or null for any language.
+     * @param type     The description type, or null for any type.
+     * @return An immutable list of the text of the matching descriptions, in the order they were added.
+     */
+    List<String> getTexts(
+        Language language,
+        DescriptionType type
+    ) {
+        Entry entry = getEntry(language, type);
+        return entry == null ? Collections.emptyList() : entry.texts();
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.clinicalontology.terminology.impl.model;
+
+import java.util.Arrays;
+
+/**
+ * Splits delimited text, such as the pipe-delimited <code>system|code|display</code> and
+ * <code>id|version|displayName|alias</code> forms, into fields.  The results are the same as those of
+ * {@link String#split(String)} with a single-character delimiter, including the removal of trailing empty fields, but
+ * no intermediate list or array is created, and only fields the caller has room for are extracted.
+ */
+public final class FieldTokenizer {
+
+    /**
+     * The delimiter between the fields of a concept or value set identifier.
+     */
+    public static final char FIELD_DELIMITER = '|';
+
+    /**
+     * The delimiter between the concepts of a serialized concept list.
+     */
+    public static final char LIST_DELIMITER = ',';
+
+    /**
+     * Splits text into fields.
+     *
+     * @param input     The text.
+     * @param delimiter The field delimiter.
+     * @param fields    Receives the fields.  Entries beyond the number of fields are set to null.
+     * @return The number of fields, which may exceed the length of <code>fields</code>.
+     */
+    public static int split(
+        CharSequence input,
+        char delimiter,
+        String[] fields
+    ) {
+        return split(input, 0, input.length(), delimiter, fields);
+    }
+
+    /**
+     * Splits a range of text into fields.
+     *
+     * @param input     The text.
+     * @param start     The start of the range (inclusive).
+     * @param end       The end of the range (exclusive).
+     * @param delimiter The field delimiter.
+     * @param fields    Receives the fields.  Entries beyond the number of fields are set to null.
+     * @return The number of fields, which may exceed the length of <code>fields</code>.
+     */
+    public static int split(
+        CharSequence input,
+        int start,
+        int end,
+        char delimiter,
+        String[] fields
+    ) {
+        int fieldStart = start;
+        int count = 0;
+        int nonEmptyCount = 0;
+
+        for (int i = start; i <= end; i++) {
+            if (i == end || input.charAt(i) == delimiter) {
+                if (count < fields.length) {
+                    fields[count] = substring(input, fieldStart, i);
+                }
+
+                count++;
+                nonEmptyCount = i > fieldStart ? count : nonEmptyCount;
+                fieldStart = i + 1;
+            }
+        }
+
+        // Like String.split, text without a delimiter yields itself, even when empty.
+        count = count == 1 ? 1 : nonEmptyCount;
+
+        if (count < fields.length) {
+            Arrays.fill(fields, count, fields.length, null);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the index of the next delimiter in a range of text.
+     *
+     * @param input     The text.
+     * @param from      The index from which to search.
+     * @param end       The end of the range (exclusive).
+     * @param delimiter The delimiter.
+     * @return The index of the delimiter, or <code>end</code> if there is none.
+     */
+    public static int indexOf(
+        CharSequence input,
+        int from,
+        int end,
+        char delimiter
+    ) {
+        for (int i = from; i < end; i++) {
+            if (input.charAt(i) == delimiter) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    private static String substring(
+        CharSequence input,
+        int start,
+        int end
+    ) {
+        return input instanceof String string ? string.substring(start, end) : input.subSequence(start, end).toString();
+    }
+
+    private FieldTokenizer() {
+    }
+
+}
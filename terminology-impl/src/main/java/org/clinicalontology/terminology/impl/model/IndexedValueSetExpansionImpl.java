@@ -0,0 +1,332 @@
+package org.clinicalontology.terminology.impl.model;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ConceptSet;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+
+import java.net.URI;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of {@link ValueSetExpansion} that maintains a hash index over its members, keyed by canonical
+ * code system key and code, so that membership tests run in constant time.  The index is kept consistent with the
+ * set returned by {@link #getExpansion()}, which may be modified in the usual way until the expansion is frozen.
+ * A frozen expansion is immutable and may be shared freely between threads.
+ * <p>
+ * Canonical keys depend on the {@link CodeSystemRegistry}.  The index records the canonical key of each distinct code
+ * system instance among the members, and the first read after the registry version changes recomputes those keys,
+ * at a cost proportional to the number of distinct code systems.  Only if one of them has changed are the members
+ * re-keyed, at a cost proportional to the size of the expansion.  The check and any re-keying happen once, under a
+ * lock, however many threads read the expansion concurrently.  Members whose code systems become equivalent through
+ * a later registration are then merged, keeping the first.
+ */
+public class IndexedValueSetExpansionImpl implements ValueSetExpansion {
+
+    private final ValueSetIdentifier valueSetIdentifier;
+
+    private final ConceptSet semanticKey;
+
+    private final IndexedConceptSet expansion = new IndexedConceptSet();
+
+    /**
+     * For deserialization.
+     */
+    @SuppressWarnings("unused")
+    private IndexedValueSetExpansionImpl() {
+        this((ValueSetIdentifier) null);
+    }
+
+    public IndexedValueSetExpansionImpl(ValueSetIdentifier valueSetIdentifier) {
+        this(valueSetIdentifier, null);
+    }
+
+    public IndexedValueSetExpansionImpl(
+        ValueSetIdentifier valueSetIdentifier,
+        Collection<Concept> expansion
+    ) {
+        this(valueSetIdentifier, null, expansion);
+    }
+
+    public IndexedValueSetExpansionImpl(
+        URI id,
+        String version,
+        String displayName,
+        Collection<Concept> expansion
+    ) {
+        this(new ValueSetIdentifierImpl(id, version, displayName), expansion);
+    }
+
+    public IndexedValueSetExpansionImpl(
+        String id,
+        String version,
+        String displayName,
+        Collection<Concept> expansion
+    ) {
+        this(URI.create(id), version, displayName, expansion);
+    }
+
+    /**
+     * Creates an indexed copy of another value set expansion.
+     *
+     * @param valueSetExpansion The value set expansion to copy.
+     */
+    public IndexedValueSetExpansionImpl(ValueSetExpansion valueSetExpansion) {
+        this(valueSetExpansion.getValueSetIdentifier(), valueSetExpansion.getSemanticKey(), valueSetExpansion.getExpansion());
+    }
+
+    private IndexedValueSetExpansionImpl(
+        ValueSetIdentifier valueSetIdentifier,
+        ConceptSet semanticKey,
+        Collection<Concept> expansion
+    ) {
+        this.valueSetIdentifier = valueSetIdentifier;
+        this.semanticKey = semanticKey;
+
+        if (expansion != null) {
+            this.expansion.addAll(expansion);
+        }
+    }
+
+    @Override
+    public ValueSetIdentifier getValueSetIdentifier() {
+        return valueSetIdentifier;
+    }
+
+    @Override
+    public ConceptSet getSemanticKey() {
+        return semanticKey;
+    }
+
+    @Override
+    public Set<Concept> getExpansion() {
+        return expansion;
+    }
+
+    @Override
+    public boolean hasConcept(Concept concept) {
+        return expansion.contains(concept);
+    }
+
+    /**
+     * Makes this expansion immutable.  Thereafter, attempts to modify the set returned by {@link #getExpansion()}
+     * throw an {@link UnsupportedOperationException}.
+     *
+     * @return This expansion (for chaining).
+     */
+    public IndexedValueSetExpansionImpl freeze() {
+        expansion.frozen = true;
+        return this;
+    }
+
+    /**
+     * Returns true if this expansion has been frozen.
+     *
+     * @return True if this expansion has been frozen.
+     */
+    public boolean isFrozen() {
+        return expansion.frozen;
+    }
+
+    /**
+     * Returns the index key for a code system and code, based on the canonical key of the code system.
+     *
+     * @param codeSystem The code system (possibly null).
+     * @param code       The code.
+     * @return The index key.
+     */
+    private static String toKey(
+        CodeSystem codeSystem,
+        String code
+    ) {
+        return toKey(codeSystem == null ? null : codeSystem.getCanonicalKey(), code);
+    }
+
+    private static String toKey(
+        String canonicalKey,
+        String code
+    ) {
+        return (canonicalKey == null ? "" : canonicalKey) + "|" + code;
+    }
+
+    /**
+     * The members keyed by canonical code system key and code.
+     *
+     * @param registryVersion The registry version under which the keys were computed.
+     * @param members         The members.
+     * @param codeSystemKeys  The canonical key of each distinct code system instance among the members, as computed
+     *                        under the registry version.  It may also hold code systems of removed members.
+     */
+    private record Index(
+        int registryVersion,
+        Map<String, Concept> members,
+        Map<CodeSystem, String> codeSystemKeys
+    ) {
+
+        Index(int registryVersion) {
+            this(registryVersion, new LinkedHashMap<>(), new IdentityHashMap<>());
+        }
+
+        /**
+         * Adds a member if no equal member is present.
+         */
+        boolean add(Concept concept) {
+            CodeSystem codeSystem = concept.getCodeSystem();
+            String canonicalKey = codeSystem == null ? null : codeSystem.getCanonicalKey();
+
+            if (members.putIfAbsent(toKey(canonicalKey, concept.getCode()), concept) != null) {
+                return false;
+            }
+
+            if (codeSystem != null) {
+                codeSystemKeys.putIfAbsent(codeSystem, canonicalKey);
+            }
+
+            return true;
+        }
+
+        /**
+         * Returns true if the canonical key of any of the members' code systems has changed.
+         */
+        boolean isStale() {
+            for (Map.Entry<CodeSystem, String> entry : codeSystemKeys.entrySet()) {
+                if (!Objects.equals(entry.getKey().getCanonicalKey(), entry.getValue())) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+    }
+
+    /**
+     * A set of concepts backed by an index keyed by canonical code system key and code.  Lookups are therefore
+     * consistent with {@link Concept#isEqual}.
+     */
+    private static class IndexedConceptSet extends AbstractSet<Concept> {
+
+        private volatile Index index = new Index(CodeSystemRegistry.getVersion());
+
+        /**
+         * Serializes the revalidation of the index after the registry changes.
+         */
+        private final Object refreshLock = new Object();
+
+        /**
+         * Volatile so that a reader that sees an expansion as frozen also sees every change made before it was frozen.
+         */
+        private volatile boolean frozen;
+
+        @Override
+        public boolean add(Concept concept) {
+            checkNotFrozen();
+            return concept != null && getIndex().add(concept);
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Concept concept
+                && getIndex().members().containsKey(toKey(concept.getCodeSystem(), concept.getCode()));
+        }
+
+        @Override
+        public boolean remove(Object object) {
+            checkNotFrozen();
+            return object instanceof Concept concept
+                && getIndex().members().remove(toKey(concept.getCodeSystem(), concept.getCode())) != null;
+        }
+
+        @Override
+        public void clear() {
+            checkNotFrozen();
+            Index index = getIndex();
+            index.members().clear();
+            index.codeSystemKeys().clear();
+        }
+
+        @Override
+        public int size() {
+            return getIndex().members().size();
+        }
+
+        /**
+         * Returns the index for the current registry version, revalidating it if the registry has changed.  A frozen
+         * index is never modified, only replaced, so concurrent readers are safe.
+         */
+        private Index getIndex() {
+            Index index = this.index;
+            int registryVersion = CodeSystemRegistry.getVersion();
+            return index.registryVersion() == registryVersion ? index : refresh(registryVersion);
+        }
+
+        /**
+         * Carries an index forward to a new registry version, re-keying the members only if the canonical key of one
+         * of their code systems has changed.
+         */
+        private Index refresh(int registryVersion) {
+            synchronized (refreshLock) {
+                Index index = this.index;
+
+                if (index.registryVersion() == registryVersion) {
+                    return index;
+                }
+
+                if (!index.isStale()) {
+                    this.index = index = new Index(registryVersion, index.members(), index.codeSystemKeys());
+                    return index;
+                }
+
+                Index rekeyed = new Index(registryVersion);
+
+                for (Concept concept : index.members().values()) {
+                    rekeyed.add(concept);
+                }
+
+                this.index = rekeyed;
+                return rekeyed;
+            }
+        }
+
+        @Override
+        public Iterator<Concept> iterator() {
+            Iterator<Concept> iterator = getIndex().members().values().iterator();
+
+            return new Iterator<>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Concept next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    checkNotFrozen();
+                    iterator.remove();
+                }
+            };
+        }
+
+        private void checkNotFrozen() {
+            if (frozen) {
+                throw new UnsupportedOperationException("The expansion is frozen.");
+            }
+        }
+
+    }
+
+}
@@ -1,44 +1,252 @@
 package org.clinicalontology.terminology.impl.model;
 
 import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
 import org.clinicalontology.terminology.api.model.TerminologyMapping;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
 import org.clinicalontology.terminology.api.model.TerminologyMappings;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Implementation of {@link TerminologyMappings}.
+ * <p>
+ * Mappings are indexed by the canonical keys of their source and target code systems, by their category and by their
+ * type.  The indexes are built on the first filtered lookup after a change and shared by later lookups, which return
+ * immutable views of the matching mappings without copying them.  Canonical keys depend on the
+ * {@link CodeSystemRegistry}, so the indexes are also rebuilt on the first lookup after the registry version changes.
  */
 public class TerminologyMappingsImpl implements TerminologyMappings {
 
-    private final List<TerminologyMapping> mappings = new ArrayList<>();
+    /**
+     * An immutable, empty collection of mappings.
+     */
+    public static final TerminologyMappingsImpl EMPTY = new TerminologyMappingsImpl(List.of());
+
+    /**
+     * The mappings indexed by code system, category and type.
+     *
+     * @param registryVersion    The registry version under which the canonical keys were computed.
+     * @param bySourceCodeSystem The mappings keyed by the canonical key of the source code system.
+     * @param byTargetCodeSystem The mappings keyed by the canonical key of the target code system.
+     * @param byCategory         The mappings keyed by the canonical key of the category.
+     * @param byType             The mappings keyed by type.
+     */
+    private record Index(
+        int registryVersion,
+        Map<String, TerminologyMappingsImpl> bySourceCodeSystem,
+        Map<String, TerminologyMappingsImpl> byTargetCodeSystem,
+        Map<String, TerminologyMappingsImpl> byCategory,
+        Map<TerminologyMappingType, TerminologyMappingsImpl> byType
+    ) {
+    }
+
+    private final List<TerminologyMapping> mappings;
+
+    /**
+     * An unmodifiable view of the mappings, returned once these mappings are immutable.
+     */
+    private final List<TerminologyMapping> mappingsView;
+
+    /**
+     * Volatile so that a reader that sees these mappings as immutable also sees every mapping added before.
+     */
+    private volatile boolean immutable;
+
+    /**
+     * The current index, or null if it must be rebuilt.  It must also be rebuilt if the registry version has changed.
+     */
+    private transient volatile Index index;
+
+    public TerminologyMappingsImpl() {
+        this.mappings = new ArrayList<>();
+        this.mappingsView = Collections.unmodifiableList(mappings);
+    }
+
+    /**
+     * Creates a copy of another collection of mappings.
+     *
+     * @param mappings The mappings to copy.
+     */
+    public TerminologyMappingsImpl(TerminologyMappings mappings) {
+        this();
+        this.mappings.addAll(mappings.getMappings());
+    }
+
+    /**
+     * Creates an immutable collection of mappings.
+     *
+     * @param mappings The mappings, which must be unmodifiable.
+     */
+    private TerminologyMappingsImpl(List<TerminologyMapping> mappings) {
+        this.mappings = mappings;
+        this.mappingsView = mappings;
+        this.immutable = true;
+    }
 
     @Override
     public void add(TerminologyMapping... mapping) {
+        if (immutable) {
+            throw new UnsupportedOperationException("These mappings cannot be modified.");
+        }
+
         Collections.addAll(mappings, mapping);
+        index = null;
     }
 
     @Override
     public List<TerminologyMapping> getMappings() {
-        return mappings;
+        return immutable ? mappingsView : mappings;
+    }
+
+    /**
+     * Makes these mappings immutable without copying them.  Thereafter, attempts to add mappings throw an
+     * {@link UnsupportedOperationException} and {@link #getMappings()} returns an unmodifiable list.
+     *
+     * @return These mappings (for chaining).
+     */
+    public TerminologyMappingsImpl freeze() {
+        immutable = true;
+        return this;
+    }
+
+    /**
+     * Returns true if these mappings cannot be modified.
+     *
+     * @return True if these mappings cannot be modified.
+     */
+    public boolean isImmutable() {
+        return immutable;
     }
 
     @Override
     public TerminologyMapping findFirstMatch(CodeSystem targetCodeSystem) {
-        return mappings.stream()
-            .filter(m -> m.getTarget().getCodeSystem().equals(targetCodeSystem))
-            .findFirst()
-            .orElse(null);
+        List<TerminologyMapping> matches = findMatches(targetCodeSystem);
+        return matches.isEmpty() ? null : matches.getFirst();
     }
 
+    /**
+     * Returns the mappings whose target concept belongs to the given code system.
+     *
+     * @param targetCodeSystem The target code system used to filter the results.
+     * @return An immutable list of the matching mappings, in the order they were added.
+     */
     @Override
     public List<TerminologyMapping> findMatches(CodeSystem targetCodeSystem) {
-        return mappings.stream()
-            .filter(m -> m.getTarget().getCodeSystem().equals(targetCodeSystem))
-            .collect(Collectors.toList());
+        return getByTargetCodeSystem(targetCodeSystem).getMappings();
+    }
+
+    /**
+     * Returns the mappings whose source concept belongs to the given code system.
+     *
+     * @param sourceCodeSystem The source code system used to filter the results.
+     * @return Immutable mappings, in the order they were added.
+     */
+    public TerminologyMappingsImpl getBySourceCodeSystem(CodeSystem sourceCodeSystem) {
+        return sourceCodeSystem == null ? EMPTY
+            : getIndex().bySourceCodeSystem().getOrDefault(sourceCodeSystem.getCanonicalKey(), EMPTY);
+    }
+
+    /**
+     * Returns the mappings whose target concept belongs to the given code system.
+     *
+     * @param targetCodeSystem The target code system used to filter the results.
+     * @return Immutable mappings, in the order they were added.
+     */
+    public TerminologyMappingsImpl getByTargetCodeSystem(CodeSystem targetCodeSystem) {
+        return targetCodeSystem == null ? EMPTY
+            : getIndex().byTargetCodeSystem().getOrDefault(targetCodeSystem.getCanonicalKey(), EMPTY);
+    }
+
+    /**
+     * Returns the mappings having the given category.
+     *
+     * @param category The category used to filter the results.
+     * @return Immutable mappings, in the order they were added.
+     */
+    public TerminologyMappingsImpl getByCategory(Concept category) {
+        return category == null ? EMPTY : getIndex().byCategory().getOrDefault(toKey(category), EMPTY);
+    }
+
+    /**
+     * Returns the mappings of the given type.
+     *
+     * @param type The mapping type used to filter the results.
+     * @return Immutable mappings, in the order they were added.
+     */
+    public TerminologyMappingsImpl getByType(TerminologyMappingType type) {
+        return type == null ? EMPTY : getIndex().byType().getOrDefault(type, EMPTY);
+    }
+
+    private Index getIndex() {
+        Index index = this.index;
+
+        if (index == null || index.registryVersion() != CodeSystemRegistry.getVersion()) {
+            this.index = index = buildIndex();
+        }
+
+        return index;
+    }
+
+    private Index buildIndex() {
+        int registryVersion = CodeSystemRegistry.getVersion();
+        Map<String, List<TerminologyMapping>> bySourceCodeSystem = new HashMap<>();
+        Map<String, List<TerminologyMapping>> byTargetCodeSystem = new HashMap<>();
+        Map<String, List<TerminologyMapping>> byCategory = new HashMap<>();
+        Map<TerminologyMappingType, List<TerminologyMapping>> byType = new EnumMap<>(TerminologyMappingType.class);
+
+        for (TerminologyMapping mapping : mappings) {
+            Concept source = mapping.getSource();
+            Concept target = mapping.getTarget();
+
+            if (source != null && source.hasCodeSystem()) {
+                bySourceCodeSystem.computeIfAbsent(source.getCodeSystem().getCanonicalKey(), key -> new ArrayList<>())
+                    .add(mapping);
+            }
+
+            if (target != null && target.hasCodeSystem()) {
+                byTargetCodeSystem.computeIfAbsent(target.getCodeSystem().getCanonicalKey(), key -> new ArrayList<>())
+                    .add(mapping);
+            }
+
+            if (mapping.hasCategory()) {
+                byCategory.computeIfAbsent(toKey(mapping.getCategory()), key -> new ArrayList<>()).add(mapping);
+            }
+
+            if (mapping.getType() != null) {
+                byType.computeIfAbsent(mapping.getType(), key -> new ArrayList<>()).add(mapping);
+            }
+        }
+
+        return new Index(
+            registryVersion,
+            toImmutable(bySourceCodeSystem, new HashMap<>()),
+            toImmutable(byTargetCodeSystem, new HashMap<>()),
+            toImmutable(byCategory, new HashMap<>()),
+            toImmutable(byType, new EnumMap<>(TerminologyMappingType.class))
+        );
+    }
+
+    private static <K> Map<K, TerminologyMappingsImpl> toImmutable(
+        Map<K, List<TerminologyMapping>> index,
+        Map<K, TerminologyMappingsImpl> immutable
+    ) {
+        index.forEach((key, mappings) -> immutable.put(key, new TerminologyMappingsImpl(List.copyOf(mappings))));
+        return Collections.unmodifiableMap(immutable);
+    }
+
+    /**
+     * Returns a key that is equal for concepts that are {@link Concept#isEqual equal}.
+     */
+    private static String toKey(Concept concept) {
+        return (concept.hasCodeSystem() ? concept.getCodeSystem().getCanonicalKey() : "")
+            + FieldTokenizer.FIELD_DELIMITER + concept.getCode();
     }
 
 }
@@ -18,7 +18,7 @@ public class ValueSetExpansionImpl implements ValueSetExpansion {
 
     private final ValueSetIdentifier valueSetIdentifier;
 
-    private final Set<Concept> expansion = new HashSet<>();
+    private final MemberSet expansion = new MemberSet();
 
     /**
      * For deserialization.
@@ -71,4 +71,51 @@ public class ValueSetExpansionImpl implements ValueSetExpansion {
         return this.expansion;
     }
 
+    /**
+     * Tests whether the concept is included in the value set.  A hash lookup answers the test when both the concept and
+     * every member are {@link ConceptImpl} instances, whose hash codes do not depend on the code system registry.
+     * Otherwise a miss falls back to scanning the members with {@link Concept#isEqual}.
+     *
+     * @param concept The concept to search in the value set.
+     * @return True if the concept exists in the value set. False otherwise.
+     */
+    @Override
+    public boolean hasConcept(Concept concept) {
+        if (concept == null) {
+            return false;
+        }
+
+        if (expansion.contains(concept)) {
+            return true;
+        }
+
+        if (concept instanceof ConceptImpl && !expansion.hasForeignMembers) {
+            return false;
+        }
+
+        for (Concept member : expansion) {
+            if (member.isEqual(concept)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The members of the value set, noting whether any member is not a {@link ConceptImpl} and may therefore hash
+     * inconsistently with {@link Concept#isEqual}.
+     */
+    private static class MemberSet extends HashSet<Concept> {
+
+        private boolean hasForeignMembers;
+
+        @Override
+        public boolean add(Concept concept) {
+            hasForeignMembers |= !(concept instanceof ConceptImpl);
+            return super.add(concept);
+        }
+
+    }
+
 }
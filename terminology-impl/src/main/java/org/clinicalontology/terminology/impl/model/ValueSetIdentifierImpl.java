@@ -1,6 +1,5 @@
 package org.clinicalontology.terminology.impl.model;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
@@ -17,12 +16,9 @@ public class ValueSetIdentifierImpl extends VersionedNamespaceImpl implements Va
             return null;
         }
 
-        String[] pcs = vsid.split("\\|");
-        return new ValueSetIdentifierImpl(
-            ArrayUtils.get(pcs, 0),
-            ArrayUtils.get(pcs, 1),
-            ArrayUtils.get(pcs, 2),
-            ArrayUtils.get(pcs, 3));
+        String[] pcs = new String[4];
+        FieldTokenizer.split(vsid, FieldTokenizer.FIELD_DELIMITER, pcs);
+        return new ValueSetIdentifierImpl(pcs[0], pcs[1], pcs[2], pcs[3]);
     }
 
     private final String displayName;
@@ -0,0 +1,335 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.AsyncTerminologyService;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Adapts a synchronous {@link TerminologyService} to the {@link AsyncTerminologyService} interface.  Each request is
+ * run on its own virtual thread, so a slow delegate (for example, one backed by a database) blocks no platform threads.
+ * At most a configurable number of requests call the delegate at once; the rest wait, without occupying a platform
+ * thread, for a permit.
+ * <p>
+ * Duplicate requests are coalesced: a request made while an identical request is in flight shares its result rather
+ * than calling the delegate again.  Requests are identical if they invoke the same method with equal arguments (value
+ * set identifiers are compared by versioned id).  Each caller receives its own future, so cancelling or completing
+ * one does not affect the others.
+ * <p>
+ * Close the service to shut down its executor.  The delegate must be safe for concurrent use.
+ */
+public class AsyncTerminologyServiceImpl implements AsyncTerminologyService, AutoCloseable {
+
+    /**
+     * The default maximum number of concurrent calls to the delegate.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    /**
+     * Identifies a request for coalescing.
+     *
+     * @param operation The name of the operation.
+     * @param arguments The arguments of the operation.
+     */
+    private record RequestKey(
+        String operation,
+        List<Object> arguments
+    ) {
+
+        private static RequestKey of(
+            String operation,
+            Object... arguments
+        ) {
+            return new RequestKey(operation, Arrays.asList(arguments));
+        }
+
+    }
+
+    private final TerminologyService delegate;
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final int maxConcurrency;
+
+    /**
+     * Requests that are in flight.
+     */
+    private final Map<RequestKey, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Creates an asynchronous service with the default concurrency limit.
+     *
+     * @param delegate The synchronous terminology service.
+     */
+    public AsyncTerminologyServiceImpl(TerminologyService delegate) {
+        this(delegate, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Creates an asynchronous service.
+     *
+     * @param delegate       The synchronous terminology service.
+     * @param maxConcurrency The maximum number of concurrent calls to the delegate.
+     */
+    public AsyncTerminologyServiceImpl(
+        TerminologyService delegate,
+        int maxConcurrency
+    ) {
+        Validate.notNull(delegate, "A delegate is required.");
+        Validate.isTrue(maxConcurrency > 0, "The concurrency limit must be positive.");
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("terminology-async-", 0).factory());
+    }
+
+    /**
+     * Returns the synchronous terminology service.
+     *
+     * @return The synchronous terminology service.
+     */
+    public TerminologyService getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the maximum number of concurrent calls to the delegate.
+     *
+     * @return The maximum number of concurrent calls to the delegate.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the number of distinct requests currently in flight.
+     *
+     * @return The number of distinct requests currently in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the number of requests that have shared the result of an identical request in flight.
+     *
+     * @return The number of coalesced requests.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    @Override
+    public CompletableFuture<TerminologyMappings> getMappingsForConcept(Concept source) {
+        return submit(RequestKey.of("getMappingsForConcept", source),
+            () -> delegate.getMappingsForConcept(source));
+    }
+
+    @Override
+    public CompletableFuture<TerminologyMappings> getMappingsForConcept(
+        Concept source,
+        Concept category
+    ) {
+        return submit(RequestKey.of("getMappingsForCategory", source, category),
+            () -> delegate.getMappingsForConcept(source, category));
+    }
+
+    @Override
+    public CompletableFuture<TerminologyMappings> getMappingsForConcept(
+        Concept source,
+        String targetCodeSystem
+    ) {
+        return submit(RequestKey.of("getMappingsForTargetCodeSystem", source, targetCodeSystem),
+            () -> delegate.getMappingsForConcept(source, targetCodeSystem));
+    }
+
+    @Override
+    public CompletableFuture<TerminologyMappings> getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+        return submit(RequestKey.of("getMappingsForTarget", target, type, sourceCodeSystem),
+            () -> delegate.getMappingsForTarget(target, type, sourceCodeSystem));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isValidValueSet(ValueSetIdentifier valueSetIdentifier) {
+        return submit(RequestKey.of("isValidValueSet", toKey(valueSetIdentifier)),
+            () -> delegate.isValidValueSet(valueSetIdentifier));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isMemberOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    ) {
+        return submit(RequestKey.of("isMemberOfValueSet", toKey(valueSetIdentifier), concept),
+            () -> delegate.isMemberOfValueSet(valueSetIdentifier, concept));
+    }
+
+    @Override
+    public CompletableFuture<BitSet> findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    ) {
+        return submit(RequestKey.of("findMembersOfValueSet", toKey(valueSetIdentifier), copyOf(concepts)),
+            () -> delegate.findMembersOfValueSet(valueSetIdentifier, concepts), bits -> (BitSet) bits.clone());
+    }
+
+    @Override
+    public CompletableFuture<List<BitSet>> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    ) {
+        List<String> keys = valueSetIdentifiers.stream().map(AsyncTerminologyServiceImpl::toKey).toList();
+        return submit(RequestKey.of("findMembersOfValueSets", keys, copyOf(concepts)),
+            () -> delegate.findMembersOfValueSets(valueSetIdentifiers, concepts),
+            members -> members.stream().map(bits -> (BitSet) bits.clone()).toList());
+    }
+
+    @Override
+    public CompletableFuture<ValueSetExpansion> getValueSetExpansion(ValueSetIdentifier valueSetIdentifier) {
+        return submit(RequestKey.of("getValueSetExpansion", toKey(valueSetIdentifier)),
+            () -> delegate.getValueSetExpansion(valueSetIdentifier));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isValidConcept(Concept concept) {
+        return submit(RequestKey.of("isValidConcept", concept),
+            () -> delegate.isValidConcept(concept));
+    }
+
+    @Override
+    public CompletableFuture<Concept> getConcept(
+        String codeSystem,
+        String code
+    ) {
+        return submit(RequestKey.of("getConcept", codeSystem, code),
+            () -> delegate.getConcept(codeSystem, code));
+    }
+
+    @Override
+    public CompletableFuture<Concept> getConcept(Concept concept) {
+        return submit(RequestKey.of("getConceptByConcept", concept),
+            () -> delegate.getConcept(concept));
+    }
+
+    /**
+     * Shuts down the executor.  Requests already submitted are allowed to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <V> CompletableFuture<V> submit(
+        RequestKey key,
+        Supplier<V> call
+    ) {
+        return submit(key, call, null);
+    }
+
+    /**
+     * Submits a request, or joins an identical request in flight.
+     *
+     * @param key  Identifies the request.
+     * @param call Calls the delegate.
+     * @param copy If not null, gives each coalesced caller its own copy of a mutable result.
+     * @param <V>  The result type.
+     * @return A future for the result.
+     */
+    @SuppressWarnings("unchecked")
+    private <V> CompletableFuture<V> submit(
+        RequestKey key,
+        Supplier<V> call,
+        UnaryOperator<V> copy
+    ) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = (CompletableFuture<V>) inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            coalescedCount.increment();
+            return copy == null ? existing.copy() : existing.thenApply(copy);
+        }
+
+        try {
+            executor.execute(() -> run(key, future, call));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+
+        return future.copy();
+    }
+
+    /**
+     * Calls the delegate once a permit is available.  The request is removed from those in flight before its future
+     * is completed, so a later identical request is never given a completed result.
+     */
+    private <V> void run(
+        RequestKey key,
+        CompletableFuture<V> future,
+        Supplier<V> call
+    ) {
+        V result;
+
+        try {
+            permits.acquire();
+
+            try {
+                result = call.get();
+            } finally {
+                permits.release();
+            }
+        } catch (Throwable e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            return;
+        }
+
+        inFlight.remove(key, future);
+        future.complete(result);
+    }
+
+    /**
+     * Returns an unmodifiable copy of a list for use in a request key.  Unlike {@link List#copyOf}, null elements are
+     * allowed, since the delegate may accept them.
+     */
+    private static List<Object> copyOf(List<?> list) {
+        return Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    private static String toKey(ValueSetIdentifier valueSetIdentifier) {
+        return valueSetIdentifier == null ? null : valueSetIdentifier.getVersionedIdAsString();
+    }
+
+}
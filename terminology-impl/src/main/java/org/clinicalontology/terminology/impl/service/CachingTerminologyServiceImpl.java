@@ -0,0 +1,312 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.*;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.cache.BoundedCache;
+import org.clinicalontology.terminology.impl.cache.CacheConfig;
+import org.clinicalontology.terminology.impl.cache.CacheStats;
+import org.clinicalontology.terminology.impl.model.FieldTokenizer;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A terminology service that caches the concept, value set expansion, mapping and description lookups of another
+ * terminology service.  Each {@link Operation} has its own {@link BoundedCache}, configured independently.  Null
+ * results, such as those for unknown concepts or value sets, are cached as configured for negative caching.
+ * <p>
+ * Calling {@link #refresh()} refreshes the delegate and then discards every cached result.  Registering an external
+ * value set discards the cached expansion for that value set.  Membership checks are forwarded uncached, since the
+ * delegate's own indexes answer them faster than an expansion could.
+ * <p>
+ * Description text lookups, such as {@link #getConceptFSN(Concept)}, are answered from the pre-built description
+ * index of the cached concept.  Cached results are shared and must not be modified.
+ */
+public class CachingTerminologyServiceImpl implements TerminologyService {
+
+    /**
+     * The cached operations.
+     */
+    public enum Operation {
+
+        /**
+         * {@link TerminologyService#getConcept(String, String)}.
+         */
+        CONCEPT,
+
+        /**
+         * {@link TerminologyService#getValueSetExpansion(ValueSetIdentifier)}.
+         */
+        VALUE_SET_EXPANSION,
+
+        /**
+         * The {@link TerminologyService#getMappingsForConcept(Concept) getMappingsForConcept} and
+         * {@link TerminologyService#getMappingsForTarget(Concept) getMappingsForTarget} methods.
+         */
+        MAPPINGS,
+
+        /**
+         * The {@link TerminologyService#getConceptDescriptions(Concept, Language) getConceptDescriptions} methods.
+         */
+        DESCRIPTIONS
+
+    }
+
+    /**
+     * The configuration used for operations that are not configured explicitly.
+     */
+    public static final CacheConfig DEFAULT_CONFIG = CacheConfig.of(10_000, Duration.ofMinutes(10))
+        .withNegativeExpireAfterWrite(Duration.ofMinutes(1));
+
+    /**
+     * Identifies a mapping lookup.
+     *
+     * @param source The system and code of the source concept.
+     * @param filter Null, the category concept, or the target code system.
+     */
+    private record MappingKey(
+        String source,
+        Object filter
+    ) {
+    }
+
+    /**
+     * Identifies a reverse mapping lookup.
+     *
+     * @param target           The system and code of the target concept.
+     * @param type             The mapping type, possibly null.
+     * @param sourceCodeSystem The source code system, possibly null.
+     */
+    private record ReverseMappingKey(
+        String target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+    }
+
+    /**
+     * Identifies a description lookup.
+     *
+     * @param concept  The system and code of the concept.
+     * @param language The language, possibly null.
+     * @param type     The description type, possibly null.
+     */
+    private record DescriptionKey(
+        String concept,
+        Language language,
+        DescriptionType type
+    ) {
+    }
+
+    private final TerminologyService delegate;
+
+    private final BoundedCache<String, Concept> concepts;
+
+    private final BoundedCache<String, ValueSetExpansion> expansions;
+
+    private final BoundedCache<Object, TerminologyMappings> mappings;
+
+    private final BoundedCache<DescriptionKey, Set<ConceptDescription>> descriptions;
+
+    private final Map<Operation, BoundedCache<?, ?>> caches = new EnumMap<>(Operation.class);
+
+    /**
+     * Creates a caching service with the default configuration for every operation.
+     *
+     * @param delegate The terminology service whose results are cached.
+     */
+    public CachingTerminologyServiceImpl(TerminologyService delegate) {
+        this(delegate, Map.of());
+    }
+
+    /**
+     * Creates a caching service.
+     *
+     * @param delegate The terminology service whose results are cached.
+     * @param configs  The cache configuration for each operation.  Operations that are absent use
+     *                 {@link #DEFAULT_CONFIG}; use {@link CacheConfig#DISABLED} to not cache an operation.
+     */
+    public CachingTerminologyServiceImpl(
+        TerminologyService delegate,
+        Map<Operation, CacheConfig> configs
+    ) {
+        Validate.notNull(delegate, "A delegate is required.");
+        this.delegate = delegate;
+        this.concepts = register(Operation.CONCEPT, configs);
+        this.expansions = register(Operation.VALUE_SET_EXPANSION, configs);
+        this.mappings = register(Operation.MAPPINGS, configs);
+        this.descriptions = register(Operation.DESCRIPTIONS, configs);
+    }
+
+    private <K, V> BoundedCache<K, V> register(
+        Operation operation,
+        Map<Operation, CacheConfig> configs
+    ) {
+        BoundedCache<K, V> cache = new BoundedCache<>(configs.getOrDefault(operation, DEFAULT_CONFIG));
+        caches.put(operation, cache);
+        return cache;
+    }
+
+    /**
+     * Returns the terminology service whose results are cached.
+     *
+     * @return The terminology service whose results are cached.
+     */
+    public TerminologyService getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns cache statistics for an operation.
+     *
+     * @param operation The operation.
+     * @return The cache statistics.
+     */
+    public CacheStats getStats(Operation operation) {
+        return caches.get(operation).getStats();
+    }
+
+    /**
+     * Discards every cached result.
+     */
+    public void invalidateAll() {
+        caches.values().forEach(BoundedCache::invalidateAll);
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(Concept source) {
+        return mappings.get(new MappingKey(source.getSystemAndCode(), null),
+            key -> delegate.getMappingsForConcept(source));
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(
+        Concept source,
+        Concept category
+    ) {
+        return mappings.get(new MappingKey(source.getSystemAndCode(), category),
+            key -> delegate.getMappingsForConcept(source, category));
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(
+        Concept source,
+        String targetCodeSystem
+    ) {
+        return mappings.get(new MappingKey(source.getSystemAndCode(), targetCodeSystem),
+            key -> delegate.getMappingsForConcept(source, targetCodeSystem));
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+        return mappings.get(new ReverseMappingKey(target.getSystemAndCode(), type, sourceCodeSystem),
+            key -> delegate.getMappingsForTarget(target, type, sourceCodeSystem));
+    }
+
+    @Override
+    public boolean isValidValueSet(ValueSetIdentifier valueSetIdentifier) {
+        return delegate.isValidValueSet(valueSetIdentifier);
+    }
+
+    @Override
+    public boolean isMemberOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    ) {
+        return delegate.isMemberOfValueSet(valueSetIdentifier, concept);
+    }
+
+    @Override
+    public BitSet findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    ) {
+        return delegate.findMembersOfValueSet(valueSetIdentifier, concepts);
+    }
+
+    @Override
+    public List<BitSet> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    ) {
+        return delegate.findMembersOfValueSets(valueSetIdentifiers, concepts);
+    }
+
+    @Override
+    public ValueSetExpansion getValueSetExpansion(ValueSetIdentifier valueSetIdentifier) {
+        return expansions.get(valueSetIdentifier.getVersionedIdAsString(),
+            key -> delegate.getValueSetExpansion(valueSetIdentifier));
+    }
+
+    @Override
+    public boolean isValidConcept(Concept concept) {
+        return delegate.isValidConcept(concept);
+    }
+
+    @Override
+    public Concept getConcept(
+        String codeSystem,
+        String code
+    ) {
+        return concepts.get(codeSystem + FieldTokenizer.FIELD_DELIMITER + code,
+            key -> delegate.getConcept(codeSystem, code));
+    }
+
+    @Override
+    public LanguageContext getLanguageContext() {
+        return delegate.getLanguageContext();
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Concept concept,
+        Language language
+    ) {
+        return descriptions.get(new DescriptionKey(concept.getSystemAndCode(), language, null),
+            key -> delegate.getConceptDescriptions(concept, language));
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Concept concept,
+        DescriptionType descriptionType,
+        Language language
+    ) {
+        return descriptions.get(new DescriptionKey(concept.getSystemAndCode(), language, descriptionType),
+            key -> delegate.getConceptDescriptions(concept, descriptionType, language));
+    }
+
+    /**
+     * Registers the value set with the delegate and discards any cached expansion of it.
+     */
+    @Override
+    public void registerExternalValueSet(
+        ValueSetExpansion valueSetExpansion,
+        boolean allowOverrides
+    ) {
+        delegate.registerExternalValueSet(valueSetExpansion, allowOverrides);
+
+        if (valueSetExpansion != null && valueSetExpansion.getValueSetIdentifier() != null) {
+            expansions.invalidate(valueSetExpansion.getValueSetIdentifier().getVersionedIdAsString());
+        }
+    }
+
+    /**
+     * Refreshes the delegate and discards every cached result.
+     */
+    @Override
+    public void refresh() {
+        delegate.refresh();
+        invalidateAll();
+    }
+
+}
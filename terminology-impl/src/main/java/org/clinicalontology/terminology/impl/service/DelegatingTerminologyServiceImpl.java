@@ -0,0 +1,244 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.*;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A terminology service that forwards every call, including those with default implementations, to another
+ * terminology service.  Subclasses override selected methods to decorate the delegate.
+ */
+public class DelegatingTerminologyServiceImpl implements TerminologyService {
+
+    private final TerminologyService delegate;
+
+    /**
+     * Creates a service that forwards calls to a delegate.
+     *
+     * @param delegate The terminology service to which calls are forwarded.
+     */
+    public DelegatingTerminologyServiceImpl(TerminologyService delegate) {
+        Validate.notNull(delegate, "A delegate is required.");
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the terminology service to which calls are forwarded.
+     *
+     * @return The terminology service to which calls are forwarded.
+     */
+    public TerminologyService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(Concept source) {
+        return delegate.getMappingsForConcept(source);
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(
+        Concept source,
+        Concept category
+    ) {
+        return delegate.getMappingsForConcept(source, category);
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(
+        Concept source,
+        String targetCodeSystem
+    ) {
+        return delegate.getMappingsForConcept(source, targetCodeSystem);
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForTarget(Concept target) {
+        return delegate.getMappingsForTarget(target);
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+        return delegate.getMappingsForTarget(target, type, sourceCodeSystem);
+    }
+
+    @Override
+    public boolean isValidValueSet(ValueSetIdentifier valueSetIdentifier) {
+        return delegate.isValidValueSet(valueSetIdentifier);
+    }
+
+    @Override
+    public boolean isMemberOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    ) {
+        return delegate.isMemberOfValueSet(valueSetIdentifier, concept);
+    }
+
+    @Override
+    public BitSet findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    ) {
+        return delegate.findMembersOfValueSet(valueSetIdentifier, concepts);
+    }
+
+    @Override
+    public List<BitSet> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    ) {
+        return delegate.findMembersOfValueSets(valueSetIdentifiers, concepts);
+    }
+
+    @Override
+    public ValueSetExpansion getValueSetExpansion(ValueSetIdentifier valueSetIdentifier) {
+        return delegate.getValueSetExpansion(valueSetIdentifier);
+    }
+
+    @Override
+    public String getValueSetExpansionAsString(ValueSetIdentifier valueSetIdentifier) {
+        return delegate.getValueSetExpansionAsString(valueSetIdentifier);
+    }
+
+    @Override
+    public boolean isValidConcept(Concept concept) {
+        return delegate.isValidConcept(concept);
+    }
+
+    @Override
+    public Concept getConcept(
+        String codeSystem,
+        String code
+    ) {
+        return delegate.getConcept(codeSystem, code);
+    }
+
+    @Override
+    public Concept getConcept(Concept concept) {
+        return delegate.getConcept(concept);
+    }
+
+    @Override
+    public LanguageContext getLanguageContext() {
+        return delegate.getLanguageContext();
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(Concept concept) {
+        return delegate.getConceptDescriptions(concept);
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Concept concept,
+        Language language
+    ) {
+        return delegate.getConceptDescriptions(concept, language);
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Concept concept,
+        DescriptionType descriptionType
+    ) {
+        return delegate.getConceptDescriptions(concept, descriptionType);
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Concept concept,
+        DescriptionType descriptionType,
+        Language language
+    ) {
+        return delegate.getConceptDescriptions(concept, descriptionType, language);
+    }
+
+    @Override
+    public List<String> getConceptDescriptionText(
+        Concept concept,
+        DescriptionType descriptionType
+    ) {
+        return delegate.getConceptDescriptionText(concept, descriptionType);
+    }
+
+    @Override
+    public List<String> getConceptDescriptionText(
+        Concept concept,
+        DescriptionType descriptionType,
+        Language language
+    ) {
+        return delegate.getConceptDescriptionText(concept, descriptionType, language);
+    }
+
+    @Override
+    public Set<ConceptDescription> getLocalizedDescriptions(
+        Concept concept,
+        DescriptionType descriptionType,
+        LanguageContext context
+    ) {
+        return delegate.getLocalizedDescriptions(concept, descriptionType, context);
+    }
+
+    @Override
+    public List<String> getLocalizedDescriptionText(
+        Concept concept,
+        DescriptionType descriptionType,
+        LanguageContext context
+    ) {
+        return delegate.getLocalizedDescriptionText(concept, descriptionType, context);
+    }
+
+    @Override
+    public String getConceptFSN(Concept concept) {
+        return delegate.getConceptFSN(concept);
+    }
+
+    @Override
+    public List<String> getConceptSynonyms(Concept concept) {
+        return delegate.getConceptSynonyms(concept);
+    }
+
+    @Override
+    public List<String> getConceptSynonyms(
+        Concept concept,
+        Language language
+    ) {
+        return delegate.getConceptSynonyms(concept, language);
+    }
+
+    @Override
+    public String getConceptDefinition(Concept concept) {
+        return delegate.getConceptDefinition(concept);
+    }
+
+    @Override
+    public String getConceptDefinition(
+        Concept concept,
+        Language language
+    ) {
+        return delegate.getConceptDefinition(concept, language);
+    }
+
+    @Override
+    public void registerExternalValueSet(
+        ValueSetExpansion valueSetExpansion,
+        boolean allowOverrides
+    ) {
+        delegate.registerExternalValueSet(valueSetExpansion, allowOverrides);
+    }
+
+    @Override
+    public void refresh() {
+        delegate.refresh();
+    }
+
+}
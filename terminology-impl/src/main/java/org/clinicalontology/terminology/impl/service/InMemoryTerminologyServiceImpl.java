@@ -1,38 +1,64 @@
 package org.clinicalontology.terminology.impl.service;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.Validate;
 import org.clinicalontology.terminology.api.model.*;
 import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.model.CompactValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ConceptDictionary;
 import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.FieldTokenizer;
+import org.clinicalontology.terminology.impl.model.IndexedValueSetExpansionImpl;
 import org.clinicalontology.terminology.impl.model.TerminologyMappingImpl;
 import org.clinicalontology.terminology.impl.model.TerminologyMappingsImpl;
-import org.clinicalontology.terminology.impl.model.ValueSetExpansionImpl;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
- * Only use for demos and tests. Not intended for use for actual terminology services as all value set expansions
- * are kept in memory.
+ * A terminology service that keeps all concepts, value set expansions and mappings in memory.  It is safe for
+ * concurrent use and is optimized for read-heavy workloads:
+ * <ul>
+ *     <li>Indexes are concurrent maps.  Readers do not lock, except as described below.</li>
+ *     <li>Value set expansions and mappings returned to readers are frozen, so readers always see a complete,
+ *     unchanging collection.  Additions are staged in an unfrozen collection, which later additions modify in place.
+ *     Outside snapshot mode, the first read after an addition briefly locks the entry to freeze the staged collection,
+ *     and the next addition then replaces it with a copy.  In snapshot mode, {@link #refresh()} freezes everything
+ *     before publishing, so readers never lock.</li>
+ *     <li>Lookups of unknown concepts do not add to the concept index.</li>
+ * </ul>
+ * In snapshot mode, changes are not visible to readers as they are made.  Instead, they build a new generation of
+ * concepts, expansions and mappings, which {@link #refresh()} publishes in a single step.  Each generation is built
+ * from scratch, so it must be complete.  Readers in progress continue to use the generation they started with.
+ * <p>
+ * Since all expansions are held in memory, consider {@link CompactValueSetExpansionImpl} for very large value sets.
  */
 public class InMemoryTerminologyServiceImpl implements TerminologyService {
 
     /**
      * Indexes concepts by code system and code.
      */
-    private static class ConceptIndex extends HashMap<String, Concept> {
+    private static class ConceptIndex extends ConcurrentHashMap<String, Concept> {
 
         void put(Concept concept) {
             put(concept.getSystemAndCode(), concept);
         }
 
-        Concept computeIfAbsent(
+        Concept get(
             String codeSystem,
             String code) {
-            return computeIfAbsent(codeSystem + "|" + code, k -> new ConceptImpl(codeSystem, code));
+            return get(codeSystem + "|" + code);
         }
 
         boolean contains(Concept concept) {
@@ -42,12 +68,25 @@ public class InMemoryTerminologyServiceImpl implements TerminologyService {
     }
 
     /**
-     * Indexes value set expansions by versioned id.
+     * Indexes value set expansions by versioned id.  Expansions are stored as frozen
+     * {@link IndexedValueSetExpansionImpl} instances so that membership tests run in constant time.  A
+     * {@link CompactValueSetExpansionImpl} is stored as is, since it is already immutable and copying it would forfeit
+     * its memory savings.
+     * <p>
+     * Concepts added to a value set are staged in an unfrozen expansion, which is modified in place by later additions
+     * and frozen when it is next read.  Consecutive additions therefore cost constant time each, and an expansion is
+     * only copied when it is changed after having been read.
      */
-    private static class ExpansionIndex extends HashMap<String, ValueSetExpansion> {
-
+    private static class ExpansionIndex extends ConcurrentHashMap<String, ValueSetExpansion> {
+
+        /**
+         * Returns an expansion, first freezing it if it has changed since it was last read.
+         *
+         * @param valueSetIdentifier The value set identifier.
+         * @return The frozen expansion, or null if there is none.
+         */
         ValueSetExpansion get(ValueSetIdentifier valueSetIdentifier) {
-            return get(valueSetIdentifier.getVersionedIdAsString());
+            return getFrozen(valueSetIdentifier.getVersionedIdAsString());
         }
 
         boolean contains(ValueSetIdentifier valueSetIdentifier) {
@@ -55,76 +94,387 @@ public class InMemoryTerminologyServiceImpl implements TerminologyService {
         }
 
         void put(ValueSetExpansion valueSetExpansion) {
-            put(valueSetExpansion.getValueSetIdentifier().getVersionedIdAsString(), valueSetExpansion);
+            put(valueSetExpansion.getValueSetIdentifier().getVersionedIdAsString(), toImmutable(valueSetExpansion));
+        }
+
+        /**
+         * Adds concepts to a value set.  A staged expansion is modified in place; a frozen one, which readers may
+         * share, is replaced with an unfrozen copy.  Since both happen within {@link #compute}, an unfrozen expansion
+         * is only ever modified or frozen while holding the lock on its entry.
+         *
+         * @param valueSetIdentifier The value set identifier.
+         * @param concepts           The concepts to add.
+         */
+        void addAll(
+            ValueSetIdentifier valueSetIdentifier,
+            Collection<Concept> concepts
+        ) {
+            compute(valueSetIdentifier.getVersionedIdAsString(), (key, current) -> {
+                IndexedValueSetExpansionImpl expansion = current == null
+                    ? new IndexedValueSetExpansionImpl(valueSetIdentifier)
+                    : current instanceof IndexedValueSetExpansionImpl indexed && !indexed.isFrozen() ? indexed
+                    : new IndexedValueSetExpansionImpl(current);
+                expansion.getExpansion().addAll(concepts);
+                return expansion;
+            });
+        }
+
+        private ValueSetExpansion getFrozen(String key) {
+            ValueSetExpansion expansion = get(key);
+
+            if (expansion instanceof IndexedValueSetExpansionImpl indexed && !indexed.isFrozen()) {
+                expansion = computeIfPresent(key, (k, current) ->
+                    current instanceof IndexedValueSetExpansionImpl staged ? staged.freeze() : current);
+            }
+
+            return expansion;
+        }
+
+        void freeze() {
+            values().forEach(expansion -> {
+                if (expansion instanceof IndexedValueSetExpansionImpl indexed) {
+                    indexed.freeze();
+                }
+            });
+        }
+
+        long countMembers() {
+            return keySet().stream().map(this::getFrozen).filter(Objects::nonNull)
+                .mapToLong(expansion -> expansion.getExpansion().size()).sum();
         }
 
-        ValueSetExpansion computeIfAbsent(ValueSetIdentifier valueSetIdentifier) {
-            return computeIfAbsent(valueSetIdentifier.getVersionedIdAsString(),
-                k -> new ValueSetExpansionImpl(valueSetIdentifier));
+        private static ValueSetExpansion toImmutable(ValueSetExpansion valueSetExpansion) {
+            if (valueSetExpansion instanceof CompactValueSetExpansionImpl
+                || (valueSetExpansion instanceof IndexedValueSetExpansionImpl indexed && indexed.isFrozen())) {
+                return valueSetExpansion;
+            }
+
+            return new IndexedValueSetExpansionImpl(valueSetExpansion).freeze();
         }
     }
 
     /**
-     * Indexes terminology mappings by source concept.
+     * Indexes terminology mappings by source or target concept.  As with {@link ExpansionIndex}, mappings added to a
+     * concept are staged in a mutable collection, which later additions modify in place and which is frozen without
+     * copying when it is next read or published.  A collection is only copied when it is changed after having been
+     * read, so bulk loading adds each mapping in constant time however many mappings share a source or target.
      */
-    private static class MappingsIndex extends HashMap<String, TerminologyMappings> {
+    private static class MappingsIndex extends ConcurrentHashMap<String, TerminologyMappingsImpl> {
+
+        /**
+         * Returns a concept's mappings, first freezing them if they have changed since they were last read.
+         *
+         * @param concept The source or target concept.
+         * @return The frozen mappings, which are empty if there are none.
+         */
+        TerminologyMappingsImpl get(Concept concept) {
+            TerminologyMappingsImpl mappings = getFrozen(concept.getSystemAndCode());
+            return mappings == null ? TerminologyMappingsImpl.EMPTY : mappings;
+        }
+
+        /**
+         * Adds a mapping to a concept's mappings.  Staged mappings are modified in place; frozen ones, which readers
+         * may share, are replaced with a mutable copy.
+         *
+         * @param concept The source or target concept.
+         * @param mapping The mapping to add.
+         */
+        void add(
+            Concept concept,
+            TerminologyMapping mapping
+        ) {
+            compute(concept.getSystemAndCode(), (key, current) -> {
+                TerminologyMappingsImpl mappings = current == null ? new TerminologyMappingsImpl()
+                    : current.isImmutable() ? new TerminologyMappingsImpl(current) : current;
+                mappings.add(mapping);
+                return mappings;
+            });
+        }
 
-        TerminologyMappings get(Concept concept) {
-            return get(concept.getSystemAndCode());
+        void freeze() {
+            values().forEach(TerminologyMappingsImpl::freeze);
         }
 
-        TerminologyMappings computeIfAbsent(Concept concept) {
-            return computeIfAbsent(concept.getSystemAndCode(), k -> new TerminologyMappingsImpl());
+        long countMappings() {
+            return keySet().stream().map(this::getFrozen).filter(Objects::nonNull)
+                .mapToLong(TerminologyMappings::size).sum();
+        }
+
+        private TerminologyMappingsImpl getFrozen(String key) {
+            TerminologyMappingsImpl mappings = get(key);
+
+            if (mappings != null && !mappings.isImmutable()) {
+                mappings = computeIfPresent(key, (k, current) -> current.freeze());
+            }
+
+            return mappings;
         }
     }
 
-    private final ConceptIndex conceptIndex = new ConceptIndex();
+    /**
+     * Statistics describing a published generation.
+     *
+     * @param generation      The generation number.  Generations are numbered consecutively from zero.
+     * @param buildTimeMillis The time from the first change in the generation to its publication.
+     * @param concepts        The number of concepts.
+     * @param valueSets       The number of value sets.
+     * @param members         The total number of value set members.
+     * @param mappings        The total number of mappings.
+     * @param publishedAt     When the generation was published.
+     */
+    public record GenerationStats(
+        long generation,
+        long buildTimeMillis,
+        int concepts,
+        int valueSets,
+        long members,
+        long mappings,
+        Instant publishedAt
+    ) {
+    }
+
+    /**
+     * A complete set of indexes.
+     */
+    private static class Generation {
+
+        private final long number;
+
+        private final ConceptIndex conceptIndex = new ConceptIndex();
+
+        private final ExpansionIndex expansionIndex = new ExpansionIndex();
+
+        private final MappingsIndex mappingIndex = new MappingsIndex();
+
+        private final MappingsIndex reverseMappingIndex = new MappingsIndex();
+
+        /**
+         * When the first change was made, or 0 if there has been none.
+         */
+        private final AtomicLong startedNanos = new AtomicLong();
+
+        private GenerationStats stats;
+
+        Generation(long number) {
+            this.number = number;
+        }
+
+        void markChanged() {
+            startedNanos.compareAndSet(0, System.nanoTime());
+        }
+
+        boolean isChanged() {
+            return startedNanos.get() != 0;
+        }
+
+        /**
+         * Freezes the expansions and mappings and records the statistics for this generation.
+         */
+        void publish() {
+            expansionIndex.freeze();
+            mappingIndex.freeze();
+            reverseMappingIndex.freeze();
+            long buildTime = isChanged() ? System.nanoTime() - startedNanos.get() : 0;
+            stats = getStats(TimeUnit.NANOSECONDS.toMillis(buildTime), Instant.now());
+        }
+
+        GenerationStats getStats(
+            long buildTimeMillis,
+            Instant publishedAt
+        ) {
+            return new GenerationStats(number, buildTimeMillis, conceptIndex.size(), expansionIndex.size(),
+                expansionIndex.countMembers(), mappingIndex.countMappings(), publishedAt);
+        }
+    }
+
+    private final ConceptDictionary dictionary;
+
+    private final boolean snapshotMode;
+
+    private final Instant createdAt = Instant.now();
+
+    /**
+     * The generation visible to readers.
+     */
+    private volatile Generation current = new Generation(0);
+
+    /**
+     * The generation to which changes are made.  Except in snapshot mode, this is the current generation.
+     */
+    private Generation staging;
+
+    /**
+     * Changes to the staging generation hold the read lock.  Publishing it requires the write lock.
+     */
+    private final ReadWriteLock stagingLock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates a terminology service that interns concepts through the default {@link ConceptDictionary}.
+     */
+    public InMemoryTerminologyServiceImpl() {
+        this(ConceptDictionary.getDefault());
+    }
+
+    /**
+     * Creates a terminology service.
+     *
+     * @param dictionary The dictionary used to intern code systems and concepts.
+     */
+    public InMemoryTerminologyServiceImpl(ConceptDictionary dictionary) {
+        this(dictionary, false);
+    }
+
+    /**
+     * Creates a terminology service.
+     *
+     * @param dictionary   The dictionary used to intern code systems and concepts.
+     * @param snapshotMode If true, changes are only made visible by {@link #refresh()}.
+     */
+    public InMemoryTerminologyServiceImpl(
+        ConceptDictionary dictionary,
+        boolean snapshotMode
+    ) {
+        this.dictionary = dictionary;
+        this.snapshotMode = snapshotMode;
+        this.staging = snapshotMode ? new Generation(1) : current;
+
+        if (snapshotMode) {
+            current.publish();
+        }
+    }
+
+    /**
+     * Returns true if this service is in snapshot mode.
+     *
+     * @return True if this service is in snapshot mode.
+     */
+    public boolean isSnapshotMode() {
+        return snapshotMode;
+    }
+
+    /**
+     * In snapshot mode, publishes the generation under construction, if it has changed, and starts a new, empty one.
+     * Otherwise, does nothing.
+     */
+    @Override
+    public void refresh() {
+        if (!snapshotMode) {
+            return;
+        }
+
+        Lock lock = stagingLock.writeLock();
+        lock.lock();
 
-    private final ExpansionIndex expansionIndex = new ExpansionIndex();
+        try {
+            if (staging.isChanged()) {
+                staging.publish();
+                current = staging;
+                staging = new Generation(current.number + 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns statistics for the current generation.  Except in snapshot mode, these reflect the current state.
+     *
+     * @return Statistics for the current generation.
+     */
+    public GenerationStats getGenerationStats() {
+        Generation generation = current;
+        return generation.stats != null ? generation.stats : generation.getStats(0, createdAt);
+    }
 
-    private final MappingsIndex mappingIndex = new MappingsIndex();
+    /**
+     * Applies a change to the staging generation.
+     *
+     * @param change The change to apply.
+     */
+    private void stage(Consumer<Generation> change) {
+        Lock lock = stagingLock.readLock();
+        lock.lock();
+
+        try {
+            staging.markChanged();
+            change.accept(staging);
+        } finally {
+            lock.unlock();
+        }
+    }
 
     public void addConcept(Concept concept) {
-        conceptIndex.put(concept);
+        stage(generation -> generation.conceptIndex.put(concept));
     }
 
+    /**
+     * Returns the indexed concept or, if there is none, a new minimal concept.  The index is not modified.
+     *
+     * @param codeSystem The code system.
+     * @param code       The concept code.
+     * @return The concept.
+     */
     @Override
     public Concept getConcept(String codeSystem, String code) {
-        return conceptIndex.computeIfAbsent(codeSystem, code);
+        Concept concept = current.conceptIndex.get(codeSystem, code);
+        return concept != null ? concept : new ConceptImpl(dictionary.getCodeSystem(codeSystem), code);
     }
 
     @Override
     public boolean isValidConcept(Concept concept) {
-        return conceptIndex.contains(concept);
+        return current.conceptIndex.contains(concept);
     }
 
+    /**
+     * Returns the mappings having the concept at their source, which are empty if there are none.
+     *
+     * @param source The concept that is at the source of the mapping (RHS).
+     * @return The set of mappings having the concept at the source of the mapping.
+     */
     @Override
     public TerminologyMappings getMappingsForConcept(Concept source) {
-        return mappingIndex.get(source);
+        return current.mappingIndex.get(source);
     }
 
+    /**
+     * Returns an immutable view of the matching mappings, which are indexed by category.
+     */
     @Override
     public TerminologyMappings getMappingsForConcept(
         Concept source,
         Concept category
     ) {
-        TerminologyMappings filtered = new TerminologyMappingsImpl();
-        getMappingsForConcept(source).getMappings().stream()
-            .filter(m -> category.isEqual(m.getCategory()))
-            .forEach(filtered::add);
-        return filtered;
+        return current.mappingIndex.get(source).getByCategory(category);
     }
 
+    /**
+     * Returns an immutable view of the matching mappings, which are indexed by target code system.
+     */
     @Override
     public TerminologyMappings getMappingsForConcept(
         Concept source,
         String targetCodeSystem
     ) {
-        TerminologyMappings filtered = new TerminologyMappingsImpl();
-        getMappingsForConcept(source).getMappings().stream()
-            .filter(m -> targetCodeSystem.equals(m.getTarget().getCodeAsString()))
-            .forEach(filtered::add);
-        return filtered;
+        return current.mappingIndex.get(source).getByTargetCodeSystem(dictionary.getCodeSystem(targetCodeSystem));
+    }
+
+    /**
+     * Returns an immutable view of the matching mappings, which are indexed by target concept and then by mapping
+     * type and source code system.
+     */
+    @Override
+    public TerminologyMappings getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+        TerminologyMappingsImpl mappings = current.reverseMappingIndex.get(target);
+
+        if (sourceCodeSystem != null) {
+            mappings = mappings.getBySourceCodeSystem(dictionary.getCodeSystem(sourceCodeSystem));
+        }
+
+        return type == null ? mappings : mappings.getByType(type);
     }
 
     public void addTerminologyMapping(
@@ -136,13 +486,24 @@ public class InMemoryTerminologyServiceImpl implements TerminologyService {
             type = TerminologyMappingType.TARGET_EQUIVALENT;
         }
 
-        TerminologyMapping terminologyMapping = new TerminologyMappingImpl(type, source, target);
-        mappingIndex.computeIfAbsent(source).add(terminologyMapping);
+        addTerminologyMapping(new TerminologyMappingImpl(type, source, target));
+    }
+
+    /**
+     * Adds a mapping, indexed by both its source and its target concept.
+     *
+     * @param mapping The mapping to add.
+     */
+    public void addTerminologyMapping(TerminologyMapping mapping) {
+        stage(generation -> {
+            generation.mappingIndex.add(mapping.getSource(), mapping);
+            generation.reverseMappingIndex.add(mapping.getTarget(), mapping);
+        });
     }
 
     @Override
     public boolean isValidValueSet(ValueSetIdentifier valueSetIdentifier) {
-        return expansionIndex.contains(valueSetIdentifier);
+        return current.expansionIndex.contains(valueSetIdentifier);
     }
 
     @Override
@@ -150,23 +511,83 @@ public class InMemoryTerminologyServiceImpl implements TerminologyService {
         ValueSetIdentifier valueSetIdentifier,
         Concept concept
     ) {
-        ValueSetExpansion expansion = expansionIndex.get(valueSetIdentifier);
+        ValueSetExpansion expansion = current.expansionIndex.get(valueSetIdentifier);
         return expansion != null && expansion.hasConcept(concept);
     }
 
+    /**
+     * Looks up the value set's expansion once for the whole batch.
+     */
+    @Override
+    public BitSet findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    ) {
+        return findMembers(current.expansionIndex.get(valueSetIdentifier), concepts);
+    }
+
+    /**
+     * Looks up all value set expansions in the same generation, so that the results are consistent even if the
+     * service is refreshed during the call.
+     */
+    @Override
+    public List<BitSet> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    ) {
+        ExpansionIndex expansionIndex = current.expansionIndex;
+        List<BitSet> members = new ArrayList<>(valueSetIdentifiers.size());
+
+        for (ValueSetIdentifier valueSetIdentifier : valueSetIdentifiers) {
+            members.add(findMembers(expansionIndex.get(valueSetIdentifier), concepts));
+        }
+
+        return members;
+    }
+
+    private static BitSet findMembers(
+        ValueSetExpansion expansion,
+        List<? extends Concept> concepts
+    ) {
+        BitSet members = new BitSet(concepts.size());
+
+        if (expansion != null) {
+            for (int i = 0; i < concepts.size(); i++) {
+                if (expansion.hasConcept(concepts.get(i))) {
+                    members.set(i);
+                }
+            }
+        }
+
+        return members;
+    }
+
     public void registerValueSet(
         ValueSetIdentifier valueSetIdentifier,
         List<Concept> concepts
     ) {
-        expansionIndex.computeIfAbsent(valueSetIdentifier).getExpansion()
-            .addAll(concepts == null ? Collections.emptySet() : concepts);
+        addToValueSet(valueSetIdentifier, concepts == null ? Collections.emptySet() : concepts);
     }
 
+    /**
+     * Adds a concept to a value set.  Consecutive additions to a value set are staged in a single expansion, which is
+     * only copied if it is read between additions, so use {@link #registerValueSet} to add many concepts at once.
+     *
+     * @param valueSetIdentifier A value set identifier.
+     * @param concept            The concept to add.
+     */
     public void addConceptToValueSet(
         ValueSetIdentifier valueSetIdentifier,
         Concept concept
     ) {
-        expansionIndex.computeIfAbsent(valueSetIdentifier).getExpansion().add(concept);
+        addToValueSet(valueSetIdentifier, Collections.singleton(concept));
+    }
+
+    private void addToValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Collection<Concept> concepts
+    ) {
+        stage(generation -> generation.expansionIndex.addAll(valueSetIdentifier, concepts));
     }
 
     /**
@@ -181,23 +602,53 @@ public class InMemoryTerminologyServiceImpl implements TerminologyService {
     ) {
         if (StringUtils.isNotBlank(serializedConceptList)) {
             List<Concept> conceptList = new ArrayList<>();
-            String[] serializedConcepts = serializedConceptList.split(",");
-
-            for (String serializedConcept : serializedConcepts) {
-                String[] pcs = serializedConcept.split("\\|");
-                int len = pcs.length;
-                Validate.isTrue(len > 1 && len < 4, "Invalid concept format: %s", serializedConcept);
-                Concept concept = new ConceptImpl(pcs[0], pcs[1], len == 3 ? pcs[2] : null);
-                conceptList.add(concept);
+            String[] pcs = new String[3];
+            int end = serializedConceptList.length();
+
+            // Trailing empty concepts are ignored, as they were by String.split.
+            while (end > 0 && serializedConceptList.charAt(end - 1) == FieldTokenizer.LIST_DELIMITER) {
+                end--;
+            }
+
+            for (int start = 0; start < end; ) {
+                int next = FieldTokenizer.indexOf(serializedConceptList, start, end, FieldTokenizer.LIST_DELIMITER);
+                int len = FieldTokenizer.split(serializedConceptList, start, next, FieldTokenizer.FIELD_DELIMITER, pcs);
+
+                if (len < 2 || len > 3) {
+                    throw new IllegalArgumentException(
+                        "Invalid concept format: " + serializedConceptList.substring(start, next));
+                }
+
+                conceptList.add(newConcept(pcs[0], pcs[1], pcs[2]));
+                start = next + 1;
             }
 
             registerValueSet(valueSetIdentifier, conceptList);
         }
     }
 
+    /**
+     * Creates a concept whose code system is interned through the dictionary.  When there is no preferred name,
+     * the dictionary's canonical concept is returned.  Canonical concepts are immutable, so services sharing a
+     * dictionary cannot modify each other's concepts.
+     *
+     * @param codeSystem    The code system.
+     * @param code          The code.
+     * @param preferredName The preferred name (possibly null).
+     * @return The concept.
+     */
+    private Concept newConcept(
+        String codeSystem,
+        String code,
+        String preferredName
+    ) {
+        Concept concept = preferredName == null ? dictionary.getConcept(codeSystem, code) : null;
+        return concept != null ? concept : new ConceptImpl(dictionary.getCodeSystem(codeSystem), code, preferredName);
+    }
+
     @Override
     public ValueSetExpansion getValueSetExpansion(ValueSetIdentifier valueSetIdentifier) {
-        return expansionIndex.get(valueSetIdentifier);
+        return current.expansionIndex.get(valueSetIdentifier);
     }
 
     @Override
@@ -209,10 +660,12 @@ public class InMemoryTerminologyServiceImpl implements TerminologyService {
             return;
         }
 
-        if (!allowOverrides && expansionIndex.contains(valueSetExpansion.getValueSetIdentifier())) {
-            throw new RuntimeException("Value set " + valueSetExpansion.getValueSetIdentifier().getVersionedIdAsString() + " already exists");
-        } else {
-            expansionIndex.put(valueSetExpansion);
-        }
+        stage(generation -> {
+            if (!allowOverrides && generation.expansionIndex.contains(valueSetExpansion.getValueSetIdentifier())) {
+                throw new RuntimeException("Value set " + valueSetExpansion.getValueSetIdentifier().getVersionedIdAsString() + " already exists");
+            } else {
+                generation.expansionIndex.put(valueSetExpansion);
+            }
+        });
     }
 }
@@ -0,0 +1,129 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.MembershipListener;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A terminology service that times the value set membership checks of another terminology service and reports them
+ * to registered {@link MembershipListener listeners}.  Batch checks are reported per value set.  Failed checks are
+ * reported and then rethrown unchanged.
+ */
+public class InstrumentedTerminologyServiceImpl extends DelegatingTerminologyServiceImpl {
+
+    private final List<MembershipListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an instrumented terminology service.
+     *
+     * @param delegate  The terminology service whose membership checks are instrumented.
+     * @param listeners The initial listeners.
+     */
+    public InstrumentedTerminologyServiceImpl(
+        TerminologyService delegate,
+        MembershipListener... listeners
+    ) {
+        super(delegate);
+        this.listeners.addAll(List.of(listeners));
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(MembershipListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(MembershipListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public boolean isMemberOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    ) {
+        long start = System.nanoTime();
+        boolean member;
+
+        try {
+            member = super.isMemberOfValueSet(valueSetIdentifier, concept);
+        } catch (RuntimeException | Error e) {
+            long elapsed = System.nanoTime() - start;
+
+            for (MembershipListener listener : listeners) {
+                listener.onMembershipError(valueSetIdentifier, concept, e, elapsed);
+            }
+
+            throw e;
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        for (MembershipListener listener : listeners) {
+            listener.onMembershipCheck(valueSetIdentifier, concept, member, elapsed);
+        }
+
+        return member;
+    }
+
+    @Override
+    public BitSet findMembersOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        List<? extends Concept> concepts
+    ) {
+        return findMembersOfValueSets(List.of(valueSetIdentifier), concepts).getFirst();
+    }
+
+    /**
+     * Times the batch as a whole and reports an equal share of its time for each value set.
+     */
+    @Override
+    public List<BitSet> findMembersOfValueSets(
+        List<? extends ValueSetIdentifier> valueSetIdentifiers,
+        List<? extends Concept> concepts
+    ) {
+        long start = System.nanoTime();
+        List<BitSet> members;
+
+        try {
+            members = valueSetIdentifiers.size() == 1
+                ? List.of(super.findMembersOfValueSet(valueSetIdentifiers.getFirst(), concepts))
+                : super.findMembersOfValueSets(valueSetIdentifiers, concepts);
+        } catch (RuntimeException | Error e) {
+            long elapsed = (System.nanoTime() - start) / Math.max(1, valueSetIdentifiers.size());
+
+            for (ValueSetIdentifier valueSetIdentifier : valueSetIdentifiers) {
+                for (MembershipListener listener : listeners) {
+                    listener.onMembershipError(valueSetIdentifier, null, e, elapsed);
+                }
+            }
+
+            throw e;
+        }
+
+        long elapsed = (System.nanoTime() - start) / Math.max(1, valueSetIdentifiers.size());
+
+        for (int i = 0; i < valueSetIdentifiers.size(); i++) {
+            for (MembershipListener listener : listeners) {
+                listener.onBatchMembershipCheck(valueSetIdentifiers.get(i), concepts.size(),
+                    members.get(i).cardinality(), elapsed);
+            }
+        }
+
+        return members;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ConceptDescription;
+import org.clinicalontology.terminology.api.model.DescriptionType;
+import org.clinicalontology.terminology.api.model.LanguageContext;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A terminology service that answers the description lookups of another terminology service that do not specify a
+ * language using its own {@link LanguageContext}.  It holds no other state, so it may be configured once per service
+ * or created for a single request, such as one using the language preferences of the requesting user.
+ */
+public class LocalizedTerminologyServiceImpl extends DelegatingTerminologyServiceImpl {
+
+    private final LanguageContext languageContext;
+
+    /**
+     * Creates a localized terminology service.
+     *
+     * @param delegate        The terminology service to which calls are forwarded.
+     * @param languageContext The language context used by description lookups that do not specify a language.
+     */
+    public LocalizedTerminologyServiceImpl(
+        TerminologyService delegate,
+        LanguageContext languageContext
+    ) {
+        super(delegate);
+        Validate.notNull(languageContext, "A language context is required.");
+        this.languageContext = languageContext;
+    }
+
+    @Override
+    public LanguageContext getLanguageContext() {
+        return languageContext;
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(Concept concept) {
+        return getLocalizedDescriptions(concept, null, languageContext);
+    }
+
+    @Override
+    public Set<ConceptDescription> getConceptDescriptions(
+        Concept concept,
+        DescriptionType descriptionType
+    ) {
+        return getLocalizedDescriptions(concept, descriptionType, languageContext);
+    }
+
+    @Override
+    public List<String> getConceptDescriptionText(
+        Concept concept,
+        DescriptionType descriptionType
+    ) {
+        return getLocalizedDescriptionText(concept, descriptionType, languageContext);
+    }
+
+    @Override
+    public List<String> getConceptSynonyms(Concept concept) {
+        return getLocalizedDescriptionText(concept, DescriptionType.SYNONYM, languageContext);
+    }
+
+    @Override
+    public String getConceptDefinition(Concept concept) {
+        List<String> definitions = getLocalizedDescriptionText(concept, DescriptionType.DEFINITION, languageContext);
+        return definitions.isEmpty() ? null : definitions.getFirst();
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.model.CompactValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ConceptDictionary;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.IndexedValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.TerminologyMappingsImpl;
+import org.clinicalontology.terminology.impl.store.ExpansionStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A terminology service backed by a memory-mapped {@link ExpansionStore}.  Opening the service maps the store file
+ * rather than loading it, so startup time and heap use do not depend on the number of value set members.  Value sets
+ * registered with {@link #registerExternalValueSet} are held in memory and take precedence over those in the store.
+ * <p>
+ * The store does not hold terminology mappings, so no mappings are returned.  This service is safe for concurrent use.
+ */
+public class MappedTerminologyServiceImpl implements TerminologyService {
+
+    private final ExpansionStore store;
+
+    private final ConceptDictionary dictionary;
+
+    /**
+     * Registered value set expansions, indexed by versioned id.
+     */
+    private final Map<String, ValueSetExpansion> externalValueSets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a terminology service from a store file.
+     *
+     * @param path The store file.
+     * @throws IOException If the store cannot be opened.
+     */
+    public MappedTerminologyServiceImpl(Path path) throws IOException {
+        this(ExpansionStore.open(path), ConceptDictionary.getDefault());
+    }
+
+    /**
+     * Creates a terminology service.
+     *
+     * @param store      The expansion store.
+     * @param dictionary The dictionary used to intern code systems.
+     */
+    public MappedTerminologyServiceImpl(
+        ExpansionStore store,
+        ConceptDictionary dictionary
+    ) {
+        this.store = store;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the expansion store.
+     *
+     * @return The expansion store.
+     */
+    public ExpansionStore getStore() {
+        return store;
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(Concept source) {
+        return TerminologyMappingsImpl.EMPTY;
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(
+        Concept source,
+        Concept category
+    ) {
+        return TerminologyMappingsImpl.EMPTY;
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForConcept(
+        Concept source,
+        String targetCodeSystem
+    ) {
+        return TerminologyMappingsImpl.EMPTY;
+    }
+
+    @Override
+    public TerminologyMappings getMappingsForTarget(
+        Concept target,
+        TerminologyMappingType type,
+        String sourceCodeSystem
+    ) {
+        return TerminologyMappingsImpl.EMPTY;
+    }
+
+    @Override
+    public boolean isValidValueSet(ValueSetIdentifier valueSetIdentifier) {
+        return externalValueSets.containsKey(valueSetIdentifier.getVersionedIdAsString())
+            || store.containsValueSet(valueSetIdentifier);
+    }
+
+    @Override
+    public boolean isMemberOfValueSet(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    ) {
+        ValueSetExpansion expansion = externalValueSets.get(valueSetIdentifier.getVersionedIdAsString());
+        return expansion != null ? expansion.hasConcept(concept) : store.isMember(valueSetIdentifier, concept);
+    }
+
+    @Override
+    public ValueSetExpansion getValueSetExpansion(ValueSetIdentifier valueSetIdentifier) {
+        ValueSetExpansion expansion = externalValueSets.get(valueSetIdentifier.getVersionedIdAsString());
+        return expansion != null ? expansion : store.getExpansion(valueSetIdentifier);
+    }
+
+    @Override
+    public boolean isValidConcept(Concept concept) {
+        return store.containsConcept(concept);
+    }
+
+    /**
+     * Returns the concept from the store or, if there is none, a new minimal concept.
+     *
+     * @param codeSystem The code system.
+     * @param code       The concept code.
+     * @return The concept.
+     */
+    @Override
+    public Concept getConcept(String codeSystem, String code) {
+        Concept concept = store.getConcept(dictionary.getCodeSystem(codeSystem), code);
+        return concept != null ? concept : new ConceptImpl(dictionary.getCodeSystem(codeSystem), code);
+    }
+
+    @Override
+    public void registerExternalValueSet(
+        ValueSetExpansion valueSetExpansion,
+        boolean allowOverrides
+    ) {
+        if (valueSetExpansion == null || valueSetExpansion.getValueSetIdentifier() == null || valueSetExpansion.getExpansion() == null) {
+            return;
+        }
+
+        ValueSetIdentifier valueSetIdentifier = valueSetExpansion.getValueSetIdentifier();
+
+        if (!allowOverrides && isValidValueSet(valueSetIdentifier)) {
+            throw new RuntimeException("Value set " + valueSetIdentifier.getVersionedIdAsString() + " already exists");
+        }
+
+        externalValueSets.put(valueSetIdentifier.getVersionedIdAsString(),
+            valueSetExpansion instanceof CompactValueSetExpansionImpl
+                || (valueSetExpansion instanceof IndexedValueSetExpansionImpl indexed && indexed.isFrozen())
+                ? valueSetExpansion : new IndexedValueSetExpansionImpl(valueSetExpansion).freeze());
+    }
+
+}
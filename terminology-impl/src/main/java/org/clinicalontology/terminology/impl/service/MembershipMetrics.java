@@ -0,0 +1,252 @@
+package org.clinicalontology.terminology.impl.service;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.MembershipListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link MembershipListener} that accumulates membership metrics for each value set: call, member and error counts,
+ * cache hits and misses, and a latency histogram.  Latencies are recorded in buckets whose upper bounds are powers of
+ * two nanoseconds, so percentiles are accurate to within a factor of two.  This class is safe for concurrent use.
+ */
+public class MembershipMetrics implements MembershipListener {
+
+    /**
+     * The number of latency histogram buckets.  Bucket <i>i</i> counts latencies below 2<sup><i>i</i></sup>
+     * nanoseconds that are not counted in a lower bucket.
+     */
+    public static final int LATENCY_BUCKETS = 64;
+
+    /**
+     * A snapshot of the metrics for a value set.
+     *
+     * @param valueSetIdentifier The value set.
+     * @param calls              The number of completed membership checks.
+     * @param members            The number of checks that found a member.
+     * @param errors             The number of failed membership checks.
+     * @param cacheHits          The number of cache lookups that found a result.
+     * @param cacheMisses        The number of cache lookups that did not find a result.
+     * @param totalNanos         The total time taken by all checks, including failed ones, in nanoseconds.
+     * @param latencyHistogram   The number of checks in each latency bucket.
+     */
+    public record ValueSetMetrics(
+        ValueSetIdentifier valueSetIdentifier,
+        long calls,
+        long members,
+        long errors,
+        long cacheHits,
+        long cacheMisses,
+        long totalNanos,
+        long[] latencyHistogram
+    ) {
+
+        /**
+         * Returns the fraction of cache lookups that found a result.
+         *
+         * @return The cache hit ratio, or 0 if there have been no lookups.
+         */
+        public double getCacheHitRatio() {
+            long lookups = cacheHits + cacheMisses;
+            return lookups == 0 ? 0 : (double) cacheHits / lookups;
+        }
+
+        /**
+         * Returns the mean latency of membership checks.
+         *
+         * @return The mean latency in nanoseconds, or 0 if there have been no checks.
+         */
+        public double getMeanLatencyNanos() {
+            long count = calls + errors;
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Returns an upper bound for a latency percentile.
+         *
+         * @param percentile The percentile (0 to 100).
+         * @return The upper bound of the histogram bucket containing the percentile, in nanoseconds, or 0 if there
+         *     have been no checks.
+         */
+        public long getLatencyPercentileNanos(double percentile) {
+            long count = calls + errors;
+            long threshold = (long) Math.ceil(count * percentile / 100);
+            long cumulative = 0;
+
+            for (int i = 0; i < latencyHistogram.length && count > 0; i++) {
+                cumulative += latencyHistogram[i];
+
+                if (cumulative >= threshold && cumulative > 0) {
+                    return i == LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+
+            return 0;
+        }
+
+    }
+
+    /**
+     * Accumulated metrics for a value set.
+     */
+    private static class Accumulator {
+
+        private final ValueSetIdentifier valueSetIdentifier;
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder members = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder cacheHits = new LongAdder();
+
+        private final LongAdder cacheMisses = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+
+        private Accumulator(ValueSetIdentifier valueSetIdentifier) {
+            this.valueSetIdentifier = valueSetIdentifier;
+        }
+
+        private void recordLatency(long elapsedNanos) {
+            recordLatency(elapsedNanos, 1);
+        }
+
+        private void recordLatency(
+            long elapsedNanos,
+            int count
+        ) {
+            totalNanos.add(elapsedNanos);
+            int bucket = Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, elapsedNanos / count));
+            latencyHistogram.addAndGet(Math.min(LATENCY_BUCKETS - 1, bucket), count);
+        }
+
+        private ValueSetMetrics snapshot() {
+            long[] histogram = new long[LATENCY_BUCKETS];
+
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                histogram[i] = latencyHistogram.get(i);
+            }
+
+            return new ValueSetMetrics(valueSetIdentifier, calls.sum(), members.sum(), errors.sum(), cacheHits.sum(),
+                cacheMisses.sum(), totalNanos.sum(), histogram);
+        }
+
+    }
+
+    /**
+     * Accumulators indexed by versioned value set id.
+     */
+    private final Map<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    @Override
+    public void onMembershipCheck(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept,
+        boolean member,
+        long elapsedNanos
+    ) {
+        Accumulator accumulator = getAccumulator(valueSetIdentifier);
+        accumulator.calls.increment();
+
+        if (member) {
+            accumulator.members.increment();
+        }
+
+        accumulator.recordLatency(elapsedNanos);
+    }
+
+    /**
+     * Records each concept in the batch as a check taking an equal share of the batch's time.
+     */
+    @Override
+    public void onBatchMembershipCheck(
+        ValueSetIdentifier valueSetIdentifier,
+        int conceptCount,
+        int memberCount,
+        long elapsedNanos
+    ) {
+        if (conceptCount > 0) {
+            Accumulator accumulator = getAccumulator(valueSetIdentifier);
+            accumulator.calls.add(conceptCount);
+            accumulator.members.add(memberCount);
+            accumulator.recordLatency(elapsedNanos, conceptCount);
+        }
+    }
+
+    @Override
+    public void onMembershipError(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept,
+        Throwable error,
+        long elapsedNanos
+    ) {
+        Accumulator accumulator = getAccumulator(valueSetIdentifier);
+        accumulator.errors.increment();
+        accumulator.recordLatency(elapsedNanos);
+    }
+
+    @Override
+    public void onCacheLookup(
+        ValueSetIdentifier valueSetIdentifier,
+        boolean hit
+    ) {
+        Accumulator accumulator = getAccumulator(valueSetIdentifier);
+        (hit ? accumulator.cacheHits : accumulator.cacheMisses).increment();
+    }
+
+    @Override
+    public void onCacheLookups(
+        ValueSetIdentifier valueSetIdentifier,
+        long hits,
+        long misses
+    ) {
+        if (hits > 0 || misses > 0) {
+            Accumulator accumulator = getAccumulator(valueSetIdentifier);
+            accumulator.cacheHits.add(hits);
+            accumulator.cacheMisses.add(misses);
+        }
+    }
+
+    /**
+     * Returns the metrics for a value set.
+     *
+     * @param valueSetIdentifier The value set.
+     * @return The metrics for the value set, or null if none have been recorded.
+     */
+    public ValueSetMetrics getMetrics(ValueSetIdentifier valueSetIdentifier) {
+        Accumulator accumulator = accumulators.get(valueSetIdentifier.getVersionedIdAsString());
+        return accumulator == null ? null : accumulator.snapshot();
+    }
+
+    /**
+     * Returns the metrics for all value sets.
+     *
+     * @return The metrics, indexed by versioned value set id.
+     */
+    public Map<String, ValueSetMetrics> getAllMetrics() {
+        return accumulators.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().snapshot()));
+    }
+
+    /**
+     * Discards all metrics.
+     */
+    public void reset() {
+        accumulators.clear();
+    }
+
+    private Accumulator getAccumulator(ValueSetIdentifier valueSetIdentifier) {
+        return accumulators.computeIfAbsent(valueSetIdentifier.getVersionedIdAsString(),
+            key -> new Accumulator(valueSetIdentifier));
+    }
+
+}
@@ -0,0 +1,426 @@
+package org.clinicalontology.terminology.impl.store;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.impl.model.CodeSystemIndex;
+import org.clinicalontology.terminology.impl.model.ConceptDictionary;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.clinicalontology.terminology.impl.store.ExpansionStoreFormat.*;
+
+/**
+ * A read-only store of value set expansions, memory-mapped from a file produced by {@link ExpansionStoreWriter}.
+ * Opening a store reads only the code systems and the value set directory; concepts and members are read from the
+ * mapping on demand, so the operating system's page cache, which is shared between processes, holds the data rather
+ * than the heap.
+ * <p>
+ * Membership is determined by binary search, first for the concept in the concept index and then for its id in the
+ * value set's members.  Code systems are matched by canonical key (see {@link CodeSystem#getCanonicalKey()}) under
+ * the current {@link CodeSystemRegistry} version, so code systems registered after the store was opened are taken
+ * into account.
+ * <p>
+ * A store is safe for concurrent use.  Files must be smaller than 2 GB.
+ */
+public class ExpansionStore {
+
+    private final Path path;
+
+    private final ByteBuffer buffer;
+
+    private final int conceptCount;
+
+    private final int conceptsOffset;
+
+    private final int conceptIndexOffset;
+
+    private final int directoryOffset;
+
+    private final int membersOffset;
+
+    private final int stringsOffset;
+
+    private final CodeSystem[] codeSystems;
+
+    /**
+     * Code system ordinals indexed by canonical key, rebuilt when the code system registry changes.
+     */
+    private volatile CodeSystemIndex codeSystemIndex;
+
+    private final List<ValueSetIdentifier> valueSetIdentifiers;
+
+    /**
+     * Directory entries indexed by versioned value set id.
+     */
+    private final Map<String, Integer> directory = new HashMap<>();
+
+    /**
+     * Opens a store, interning code systems through the default {@link ConceptDictionary}.
+     *
+     * @param path The store file.
+     * @return The store.
+     * @throws IOException If the file cannot be read or is not an expansion store.
+     */
+    public static ExpansionStore open(Path path) throws IOException {
+        return open(path, ConceptDictionary.getDefault());
+    }
+
+    /**
+     * Opens a store.
+     *
+     * @param path       The store file.
+     * @param dictionary The dictionary used to intern code systems.
+     * @return The store.
+     * @throws IOException If the file cannot be read or is not an expansion store.
+     */
+    public static ExpansionStore open(
+        Path path,
+        ConceptDictionary dictionary
+    ) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Expansion store is too large to map: " + path);
+            }
+
+            return new ExpansionStore(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), dictionary);
+        }
+    }
+
+    private ExpansionStore(
+        Path path,
+        ByteBuffer buffer,
+        ConceptDictionary dictionary
+    ) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an expansion store: " + path);
+        }
+
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported expansion store version " + buffer.getInt(4) + ": " + path);
+        }
+
+        int systemCount = buffer.getInt(8);
+        conceptCount = buffer.getInt(12);
+        int valueSetCount = buffer.getInt(16);
+        int systemsOffset = (int) buffer.getLong(20);
+        conceptsOffset = (int) buffer.getLong(28);
+        conceptIndexOffset = (int) buffer.getLong(36);
+        directoryOffset = (int) buffer.getLong(44);
+        membersOffset = (int) buffer.getLong(52);
+        stringsOffset = (int) buffer.getLong(60);
+        codeSystems = new CodeSystem[systemCount];
+
+        for (int ordinal = 0; ordinal < systemCount; ordinal++) {
+            int urn = buffer.getInt(systemsOffset + ordinal * SYSTEM_SIZE);
+            codeSystems[ordinal] = dictionary.getCodeSystem(readString(urn));
+        }
+
+        codeSystemIndex = new CodeSystemIndex(codeSystems);
+
+        List<ValueSetIdentifier> identifiers = new ArrayList<>(valueSetCount);
+
+        for (int entry = 0; entry < valueSetCount; entry++) {
+            int offset = directoryOffset + entry * DIRECTORY_ENTRY_SIZE;
+            ValueSetIdentifier identifier = new ValueSetIdentifierImpl(URI.create(readString(buffer.getInt(offset))),
+                readString(buffer.getInt(offset + 4)), readString(buffer.getInt(offset + 8)),
+                readString(buffer.getInt(offset + 12)));
+            identifiers.add(identifier);
+            directory.put(identifier.getVersionedIdAsString(), entry);
+        }
+
+        valueSetIdentifiers = Collections.unmodifiableList(identifiers);
+    }
+
+    /**
+     * Returns the store file.
+     *
+     * @return The store file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the identifiers of all value sets in the store.
+     *
+     * @return The identifiers of all value sets in the store.
+     */
+    public List<ValueSetIdentifier> getValueSetIdentifiers() {
+        return valueSetIdentifiers;
+    }
+
+    /**
+     * Returns the number of distinct concepts in the store.
+     *
+     * @return The number of distinct concepts in the store.
+     */
+    public int getConceptCount() {
+        return conceptCount;
+    }
+
+    /**
+     * Returns true if the store contains the value set.
+     *
+     * @param valueSetIdentifier The value set identifier.
+     * @return True if the store contains the value set.
+     */
+    public boolean containsValueSet(ValueSetIdentifier valueSetIdentifier) {
+        return findEntry(valueSetIdentifier) >= 0;
+    }
+
+    /**
+     * Returns a read-only view of a value set's expansion.  Members are read from the store as the view is used.
+     *
+     * @param valueSetIdentifier The value set identifier.
+     * @return The value set expansion, or null if the store does not contain the value set.
+     */
+    public ValueSetExpansion getExpansion(ValueSetIdentifier valueSetIdentifier) {
+        int entry = findEntry(valueSetIdentifier);
+        return entry < 0 ? null : new MappedValueSetExpansion(this, entry, valueSetIdentifiers.get(entry));
+    }
+
+    /**
+     * Returns true if a concept is a member of a value set.
+     *
+     * @param valueSetIdentifier The value set identifier.
+     * @param concept            The concept.
+     * @return True if the concept is a member of the value set.
+     */
+    public boolean isMember(
+        ValueSetIdentifier valueSetIdentifier,
+        Concept concept
+    ) {
+        int entry = findEntry(valueSetIdentifier);
+        return entry >= 0 && concept != null && containsMember(entry, findConceptId(concept.getCodeSystem(), concept.getCode()));
+    }
+
+    /**
+     * Returns a concept from the store, including its display name.
+     *
+     * @param codeSystem The code system.
+     * @param code       The code.
+     * @return The concept, or null if the store does not contain it.
+     */
+    public Concept getConcept(
+        CodeSystem codeSystem,
+        String code
+    ) {
+        int id = findConceptId(codeSystem, code);
+        return id < 0 ? null : toConcept(id);
+    }
+
+    /**
+     * Returns true if the store contains a concept.
+     *
+     * @param concept The concept.
+     * @return True if the store contains the concept.
+     */
+    public boolean containsConcept(Concept concept) {
+        return concept != null && findConceptId(concept.getCodeSystem(), concept.getCode()) >= 0;
+    }
+
+    int getMemberCount(int entry) {
+        return buffer.getInt(directoryOffset + entry * DIRECTORY_ENTRY_SIZE + 24);
+    }
+
+    /**
+     * Returns the concept id of a value set member.
+     *
+     * @param entry    The directory entry of the value set.
+     * @param position The position of the member.
+     * @return The concept id.
+     */
+    int getMemberId(
+        int entry,
+        int position
+    ) {
+        return buffer.getInt(membersOffset + (getFirstMember(entry) + position) * Integer.BYTES);
+    }
+
+    /**
+     * Returns true if a value set contains a concept.
+     *
+     * @param entry     The directory entry of the value set.
+     * @param conceptId The concept id (negative if the concept is not in the store).
+     * @return True if the value set contains the concept.
+     */
+    boolean containsMember(
+        int entry,
+        int conceptId
+    ) {
+        if (conceptId < 0) {
+            return false;
+        }
+
+        int first = getFirstMember(entry);
+        int low = 0;
+        int high = getMemberCount(entry) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = buffer.getInt(membersOffset + (first + mid) * Integer.BYTES);
+
+            if (id < conceptId) {
+                low = mid + 1;
+            } else if (id > conceptId) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the id of a concept.
+     *
+     * @param codeSystem The code system (possibly null).
+     * @param code       The code (possibly null).
+     * @return The concept id, or -1 if the store does not contain the concept.
+     */
+    int findConceptId(
+        CodeSystem codeSystem,
+        String code
+    ) {
+        int[] ordinals = codeSystem == null || code == null ? null : getCodeSystemIndex().getOrdinals(codeSystem);
+
+        if (ordinals == null || ordinals.length == 0) {
+            return -1;
+        }
+
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+
+        for (int ordinal : ordinals) {
+            int id = findConceptId(ordinal, codeBytes);
+
+            if (id >= 0) {
+                return id;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the code system index, rebuilding it if the code system registry has changed since it was built.
+     */
+    private CodeSystemIndex getCodeSystemIndex() {
+        CodeSystemIndex index = codeSystemIndex;
+
+        if (!index.isCurrent()) {
+            codeSystemIndex = index = new CodeSystemIndex(codeSystems);
+        }
+
+        return index;
+    }
+
+    /**
+     * Creates the concept with the specified id.
+     *
+     * @param id The concept id.
+     * @return The newly created concept.
+     */
+    Concept toConcept(int id) {
+        int offset = conceptsOffset + id * CONCEPT_SIZE;
+        return new ConceptImpl(codeSystems[buffer.getInt(offset)], readString(buffer.getInt(offset + 4)),
+            readString(buffer.getInt(offset + 8)));
+    }
+
+    private int findEntry(ValueSetIdentifier valueSetIdentifier) {
+        Integer entry = valueSetIdentifier == null ? null : directory.get(valueSetIdentifier.getVersionedIdAsString());
+        return entry == null ? -1 : entry;
+    }
+
+    private int getFirstMember(int entry) {
+        return (int) buffer.getLong(directoryOffset + entry * DIRECTORY_ENTRY_SIZE + 16);
+    }
+
+    private int findConceptId(
+        int ordinal,
+        byte[] code
+    ) {
+        int low = 0;
+        int high = conceptCount - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = buffer.getInt(conceptIndexOffset + mid * Integer.BYTES);
+            int offset = conceptsOffset + id * CONCEPT_SIZE;
+            int cmp = Integer.compare(buffer.getInt(offset), ordinal);
+
+            if (cmp == 0) {
+                cmp = compareString(buffer.getInt(offset + 4), code);
+            }
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return id;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares a pooled string with UTF-8 bytes, consistent with {@link java.util.Arrays#compareUnsigned}.
+     *
+     * @param ref   The string reference.
+     * @param value The bytes to compare.
+     * @return The result of the comparison.
+     */
+    private int compareString(
+        int ref,
+        byte[] value
+    ) {
+        int start = stringsOffset + ref;
+        int length = buffer.getInt(start);
+        int limit = Math.min(length, value.length);
+
+        for (int i = 0; i < limit; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(start + Integer.BYTES + i), value[i]);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return length - value.length;
+    }
+
+    private String readString(int ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+
+        int start = stringsOffset + ref;
+        byte[] bytes = new byte[buffer.getInt(start)];
+        buffer.get(start + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,220 @@
+package org.clinicalontology.terminology.impl.store;
+
+import org.apache.commons.lang3.StringUtils;
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.impl.model.ConceptDictionary;
+import org.clinicalontology.terminology.impl.model.FieldTokenizer;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles text dumps of value sets into an expansion store file (see {@link ExpansionStore}).  Each input is read
+ * in a single pass, and members are streamed to an {@link ExpansionStoreWriter}, so memory use grows with the number
+ * of distinct concepts rather than with the size of the input.
+ * <p>
+ * A dump consists of lines of the following forms:
+ * <ul>
+ *     <li><code>#id|version|displayName|alias</code> begins a value set.  Trailing fields are optional.</li>
+ *     <li><code>codeSystem|code|display</code> adds a member to the current value set.  The display is optional.</li>
+ * </ul>
+ * Blank lines are ignored.  Code systems are interned through a {@link ConceptDictionary} and stored under their
+ * canonical keys (see {@link CodeSystem#getCanonicalKey()}), so that a concept whose code system is given under
+ * different registered names, such as a URL and an OID, is stored once.
+ * <p>
+ * Usage from the command line: <code>ExpansionStoreCompiler &lt;output&gt; &lt;input&gt;...</code>
+ */
+public class ExpansionStoreCompiler {
+
+    /**
+     * Statistics for a compilation.
+     *
+     * @param valueSets    The number of value sets compiled.
+     * @param members      The number of member lines read.
+     * @param concepts     The number of distinct concepts written.
+     * @param elapsedNanos The time taken, in nanoseconds.
+     */
+    public record CompileStats(
+        int valueSets,
+        long members,
+        int concepts,
+        long elapsedNanos
+    ) {
+
+        /**
+         * Returns the number of member lines read per second.
+         *
+         * @return The number of member lines read per second.
+         */
+        public double getConceptsPerSecond() {
+            return elapsedNanos == 0 ? 0 : members * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d value sets, %,d members, %,d distinct concepts in %,d ms (%,.0f concepts/s)",
+                valueSets, members, concepts, elapsedNanos / 1_000_000, getConceptsPerSecond());
+        }
+
+    }
+
+    private final ConceptDictionary dictionary;
+
+    /**
+     * Creates a compiler that interns code systems through the default {@link ConceptDictionary}.
+     */
+    public ExpansionStoreCompiler() {
+        this(ConceptDictionary.getDefault());
+    }
+
+    /**
+     * Creates a compiler.
+     *
+     * @param dictionary The dictionary used to intern code systems.
+     */
+    public ExpansionStoreCompiler(ConceptDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Compiles one or more dumps into a single expansion store file.
+     *
+     * @param output The file to write.
+     * @param inputs The dumps to read.  A value set may appear in only one of them.
+     * @return The compilation statistics.
+     * @throws IOException If an I/O error occurs.
+     */
+    public CompileStats compile(
+        Path output,
+        List<Path> inputs
+    ) throws IOException {
+        long start = System.nanoTime();
+        long members = 0;
+
+        try (ExpansionStoreWriter writer = new ExpansionStoreWriter()) {
+            for (Path input : inputs) {
+                try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                    members += compile(reader, input.toString(), writer);
+                }
+            }
+
+            int valueSets = writer.getValueSetCount();
+            int concepts = writer.getConceptCount();
+            writer.write(output);
+            return new CompileStats(valueSets, members, concepts, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reads a dump, adding its value sets to a writer.
+     *
+     * @param reader The dump.
+     * @param source The name of the dump, for error messages.
+     * @param writer The writer.
+     * @return The number of member lines read.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long compile(
+        BufferedReader reader,
+        String source,
+        ExpansionStoreWriter writer
+    ) throws IOException {
+        long members = 0;
+        int lineNumber = 0;
+        boolean inValueSet = false;
+        String[] fields = new String[3];
+        String line;
+
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+
+                if (line.charAt(0) == '#') {
+                    ValueSetIdentifier valueSetIdentifier = ValueSetIdentifierImpl.create(line.substring(1));
+
+                    if (valueSetIdentifier == null) {
+                        throw new IllegalArgumentException("Missing value set id");
+                    }
+
+                    if (inValueSet) {
+                        writer.endValueSet();
+                    }
+
+                    writer.beginValueSet(valueSetIdentifier);
+                    inValueSet = true;
+                } else {
+                    if (!inValueSet) {
+                        throw new IllegalArgumentException("Member precedes the first value set");
+                    }
+
+                    addMember(line, fields, writer);
+                    members++;
+                }
+            }
+
+            if (inValueSet) {
+                writer.endValueSet();
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException(source + ", line " + lineNumber + ": " + e.getMessage(), e);
+        }
+
+        return members;
+    }
+
+    /**
+     * Parses a <code>codeSystem|code|display</code> line and adds it to the current value set under the canonical key
+     * of its code system.
+     *
+     * @param line   The line.
+     * @param fields Receives the parsed fields.
+     * @param writer The writer.
+     */
+    private void addMember(
+        String line,
+        String[] fields,
+        ExpansionStoreWriter writer
+    ) {
+        int len = FieldTokenizer.split(line, FieldTokenizer.FIELD_DELIMITER, fields);
+
+        if (len < 2 || len > 3 || StringUtils.isBlank(fields[0])) {
+            throw new IllegalArgumentException("Invalid concept format: " + line);
+        }
+
+        CodeSystem codeSystem = dictionary.getCodeSystem(fields[0]);
+        writer.addMember(codeSystem.getCanonicalKey(), fields[1], fields[2]);
+    }
+
+    /**
+     * Compiles dumps from the command line and reports the statistics.
+     *
+     * @param args The output file followed by one or more input files.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ExpansionStoreCompiler <output> <input>...");
+            System.exit(1);
+        }
+
+        List<Path> inputs = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) {
+            inputs.add(Path.of(args[i]));
+        }
+
+        System.out.println(new ExpansionStoreCompiler().compile(Path.of(args[0]), inputs));
+    }
+
+}
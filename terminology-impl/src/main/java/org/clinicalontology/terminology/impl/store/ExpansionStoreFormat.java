@@ -0,0 +1,37 @@
+package org.clinicalontology.terminology.impl.store;
+
+/**
+ * Layout of an expansion store file.  All values are big-endian.  Strings are referenced by their byte offset within
+ * the string pool, where each is stored as its UTF-8 length followed by its UTF-8 bytes.  A reference of
+ * {@link #NULL_REF} represents a null string.
+ * <pre>
+ * header         magic, version, system count, concept count, value set count (ints), followed by the offsets of
+ *                the sections below (longs)
+ * systems        per code system: URN (string ref)
+ * concepts       per concept, in id order: system ordinal, code (string ref), display (string ref)
+ * concept index  concept ids sorted by system ordinal and then by the unsigned UTF-8 bytes of the code
+ * directory      per value set: id, version, display name, alias (string refs), first member (long), member count
+ * members        concept ids, sorted in ascending order within each value set
+ * strings        the string pool
+ * </pre>
+ */
+final class ExpansionStoreFormat {
+
+    static final int MAGIC = 0x54565331;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 5 * Integer.BYTES + 6 * Long.BYTES;
+
+    static final int SYSTEM_SIZE = Integer.BYTES;
+
+    static final int CONCEPT_SIZE = 3 * Integer.BYTES;
+
+    static final int DIRECTORY_ENTRY_SIZE = 5 * Integer.BYTES + Long.BYTES;
+
+    static final int NULL_REF = -1;
+
+    private ExpansionStoreFormat() {
+    }
+
+}
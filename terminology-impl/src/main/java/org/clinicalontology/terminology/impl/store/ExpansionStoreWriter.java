@@ -0,0 +1,363 @@
+package org.clinicalontology.terminology.impl.store;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.clinicalontology.terminology.impl.store.ExpansionStoreFormat.*;
+
+/**
+ * Writes value set expansions to an expansion store file (see {@link ExpansionStore}).  Value sets are added one at a
+ * time, either whole or member by member.  Each distinct concept is stored once, however many value sets it belongs
+ * to.  Members and strings are spilled to temporary files as they are added, so memory use grows with the number of
+ * distinct concepts rather than with the number of members.
+ * <p>
+ * Call {@link #write} to produce the file.  Temporary files are removed when the writer is closed.
+ */
+public class ExpansionStoreWriter implements Closeable {
+
+    private record ValueSetEntry(
+        ValueSetIdentifier identifier,
+        long firstMember,
+        int memberCount
+    ) {
+    }
+
+    private final Map<String, Integer> systemOrdinals = new HashMap<>();
+
+    private final List<Integer> systemRefs = new ArrayList<>();
+
+    /**
+     * Concept ids indexed by code system and code.
+     */
+    private final Map<String, Integer> conceptIds = new HashMap<>();
+
+    private final List<byte[]> codes = new ArrayList<>();
+
+    private int[] conceptSystems = new int[1024];
+
+    private int[] codeRefs = new int[1024];
+
+    private int[] displayRefs = new int[1024];
+
+    private final List<ValueSetEntry> valueSets = new ArrayList<>();
+
+    private final Set<String> valueSetIds = new HashSet<>();
+
+    private final Path membersFile;
+
+    private final Path stringsFile;
+
+    private final DataOutputStream membersOut;
+
+    private final DataOutputStream stringsOut;
+
+    private long memberCount;
+
+    private ValueSetIdentifier currentValueSet;
+
+    private int[] currentMembers = new int[1024];
+
+    private int currentMemberCount;
+
+    private boolean closed;
+
+    /**
+     * Creates a writer whose temporary files are placed in the default temporary directory.
+     *
+     * @throws IOException If the temporary files cannot be created.
+     */
+    public ExpansionStoreWriter() throws IOException {
+        membersFile = Files.createTempFile("expansion-members", ".tmp");
+        stringsFile = Files.createTempFile("expansion-strings", ".tmp");
+        membersOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(membersFile)));
+        stringsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(stringsFile)));
+    }
+
+    /**
+     * Adds a value set and all of its members.
+     *
+     * @param valueSetExpansion The value set expansion.
+     */
+    public void addValueSet(ValueSetExpansion valueSetExpansion) {
+        beginValueSet(valueSetExpansion.getValueSetIdentifier());
+
+        for (Concept concept : valueSetExpansion.getExpansion()) {
+            addMember(concept);
+        }
+
+        endValueSet();
+    }
+
+    /**
+     * Starts a new value set.  Members are then added with {@link #addMember} and the value set is completed with
+     * {@link #endValueSet()}.
+     *
+     * @param valueSetIdentifier The value set identifier.  It must not already have been added.
+     */
+    public void beginValueSet(ValueSetIdentifier valueSetIdentifier) {
+        checkNotClosed();
+        Validate.validState(currentValueSet == null, "Value set %s has not been ended.", currentValueSet);
+        Validate.notNull(valueSetIdentifier, "A value set identifier is required.");
+        Validate.isTrue(valueSetIds.add(valueSetIdentifier.getVersionedIdAsString()),
+            "Value set %s has already been added.", valueSetIdentifier.getVersionedIdAsString());
+        currentValueSet = valueSetIdentifier;
+        currentMemberCount = 0;
+    }
+
+    /**
+     * Adds a member to the current value set.
+     *
+     * @param concept The member.
+     */
+    public void addMember(Concept concept) {
+        addMember(concept.getCodeSystemAsString(), concept.getCode(), concept.getPreferredName());
+    }
+
+    /**
+     * Adds a member to the current value set.
+     *
+     * @param system  The code system URN.
+     * @param code    The code.
+     * @param display The display name (possibly null).  Only the first display name of a concept is retained.
+     */
+    public void addMember(
+        String system,
+        String code,
+        String display
+    ) {
+        Validate.validState(currentValueSet != null, "No value set has been begun.");
+        Validate.isTrue(StringUtils.isNotEmpty(system) && StringUtils.isNotEmpty(code),
+            "Every member must have a code system and a code.");
+
+        if (currentMemberCount == currentMembers.length) {
+            currentMembers = Arrays.copyOf(currentMembers, currentMemberCount * 2);
+        }
+
+        currentMembers[currentMemberCount++] = getConceptId(system, code, display);
+    }
+
+    /**
+     * Completes the current value set.
+     */
+    public void endValueSet() {
+        Validate.validState(currentValueSet != null, "No value set has been begun.");
+        Arrays.sort(currentMembers, 0, currentMemberCount);
+        int count = 0;
+
+        try {
+            for (int i = 0; i < currentMemberCount; i++) {
+                if (i == 0 || currentMembers[i] != currentMembers[i - 1]) {
+                    membersOut.writeInt(currentMembers[i]);
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        valueSets.add(new ValueSetEntry(currentValueSet, memberCount, count));
+        memberCount += count;
+        currentValueSet = null;
+    }
+
+    /**
+     * Returns the number of distinct concepts added so far.
+     *
+     * @return The number of distinct concepts.
+     */
+    public int getConceptCount() {
+        return codes.size();
+    }
+
+    /**
+     * Returns the number of value sets added so far.
+     *
+     * @return The number of value sets.
+     */
+    public int getValueSetCount() {
+        return valueSets.size();
+    }
+
+    /**
+     * Writes the expansion store file and closes this writer.
+     *
+     * @param path The file to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(Path path) throws IOException {
+        checkNotClosed();
+        Validate.validState(currentValueSet == null, "Value set %s has not been ended.", currentValueSet);
+        int[][] directoryRefs = new int[valueSets.size()][];
+
+        for (int i = 0; i < directoryRefs.length; i++) {
+            ValueSetIdentifier identifier = valueSets.get(i).identifier;
+            directoryRefs[i] = new int[]{writeString(identifier.getIdAsString()), writeString(identifier.getVersion()),
+                writeString(identifier.getDisplayName()), writeString(identifier.getAlias())};
+        }
+
+        membersOut.close();
+        stringsOut.close();
+        int conceptCount = codes.size();
+        int[] conceptIndex = IntStream.range(0, conceptCount)
+            .boxed()
+            .sorted((id1, id2) -> {
+                int cmp = Integer.compare(conceptSystems[id1], conceptSystems[id2]);
+                return cmp != 0 ? cmp : Arrays.compareUnsigned(codes.get(id1), codes.get(id2));
+            })
+            .mapToInt(Integer::intValue)
+            .toArray();
+        long systemsOffset = HEADER_SIZE;
+        long conceptsOffset = systemsOffset + (long) systemRefs.size() * SYSTEM_SIZE;
+        long conceptIndexOffset = conceptsOffset + (long) conceptCount * CONCEPT_SIZE;
+        long directoryOffset = conceptIndexOffset + (long) conceptCount * Integer.BYTES;
+        long membersOffset = directoryOffset + (long) valueSets.size() * DIRECTORY_ENTRY_SIZE;
+        long stringsOffset = membersOffset + memberCount * Integer.BYTES;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(systemRefs.size());
+            out.writeInt(conceptCount);
+            out.writeInt(valueSets.size());
+            out.writeLong(systemsOffset);
+            out.writeLong(conceptsOffset);
+            out.writeLong(conceptIndexOffset);
+            out.writeLong(directoryOffset);
+            out.writeLong(membersOffset);
+            out.writeLong(stringsOffset);
+
+            for (int systemRef : systemRefs) {
+                out.writeInt(systemRef);
+            }
+
+            for (int id = 0; id < conceptCount; id++) {
+                out.writeInt(conceptSystems[id]);
+                out.writeInt(codeRefs[id]);
+                out.writeInt(displayRefs[id]);
+            }
+
+            for (int id : conceptIndex) {
+                out.writeInt(id);
+            }
+
+            for (int i = 0; i < directoryRefs.length; i++) {
+                for (int ref : directoryRefs[i]) {
+                    out.writeInt(ref);
+                }
+
+                out.writeLong(valueSets.get(i).firstMember);
+                out.writeInt(valueSets.get(i).memberCount);
+            }
+
+            Files.copy(membersFile, out);
+            Files.copy(stringsFile, out);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Removes the temporary files.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            membersOut.close();
+            stringsOut.close();
+            Files.deleteIfExists(membersFile);
+            Files.deleteIfExists(stringsFile);
+        }
+    }
+
+    private int getConceptId(
+        String system,
+        String code,
+        String display
+    ) {
+        String key = system + "|" + code;
+        Integer id = conceptIds.get(key);
+
+        if (id == null) {
+            id = codes.size();
+            byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+            ensureConceptCapacity(id + 1);
+            conceptSystems[id] = getSystemOrdinal(system);
+            codeRefs[id] = writeString(codeBytes);
+            displayRefs[id] = writeString(display);
+            codes.add(codeBytes);
+            conceptIds.put(key, id);
+        } else if (displayRefs[id] == NULL_REF && display != null) {
+            displayRefs[id] = writeString(display);
+        }
+
+        return id;
+    }
+
+    private int getSystemOrdinal(String system) {
+        return systemOrdinals.computeIfAbsent(system, key -> {
+            systemRefs.add(writeString(key));
+            return systemRefs.size() - 1;
+        });
+    }
+
+    private void ensureConceptCapacity(int capacity) {
+        if (capacity > conceptSystems.length) {
+            int length = conceptSystems.length * 2;
+            conceptSystems = Arrays.copyOf(conceptSystems, length);
+            codeRefs = Arrays.copyOf(codeRefs, length);
+            displayRefs = Arrays.copyOf(displayRefs, length);
+        }
+    }
+
+    private int writeString(String value) {
+        return value == null ? NULL_REF : writeString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a string to the string pool.
+     *
+     * @param value The UTF-8 bytes of the string.
+     * @return The reference to the string.
+     */
+    private int writeString(byte[] value) {
+        int ref = stringsOut.size();
+        Validate.validState(ref >= 0 && ref + Integer.BYTES + value.length > 0, "The string pool is full.");
+
+        try {
+            stringsOut.writeInt(value.length);
+            stringsOut.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return ref;
+    }
+
+    private void checkNotClosed() {
+        Validate.validState(!closed, "The writer is closed.");
+    }
+
+}
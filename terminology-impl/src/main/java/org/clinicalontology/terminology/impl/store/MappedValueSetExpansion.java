@@ -0,0 +1,95 @@
+package org.clinicalontology.terminology.impl.store;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of a value set expansion held in an {@link ExpansionStore}.  Concepts are created as the set
+ * returned by {@link #getExpansion()} is iterated.
+ */
+class MappedValueSetExpansion implements ValueSetExpansion {
+
+    private final ExpansionStore store;
+
+    private final int entry;
+
+    private final ValueSetIdentifier valueSetIdentifier;
+
+    private final Set<Concept> expansion = new MappedConceptSet();
+
+    MappedValueSetExpansion(
+        ExpansionStore store,
+        int entry,
+        ValueSetIdentifier valueSetIdentifier
+    ) {
+        this.store = store;
+        this.entry = entry;
+        this.valueSetIdentifier = valueSetIdentifier;
+    }
+
+    @Override
+    public ValueSetIdentifier getValueSetIdentifier() {
+        return valueSetIdentifier;
+    }
+
+    /**
+     * Returns an unmodifiable view of the members of this value set.
+     *
+     * @return An unmodifiable view of the members of this value set.
+     */
+    @Override
+    public Set<Concept> getExpansion() {
+        return expansion;
+    }
+
+    @Override
+    public boolean hasConcept(Concept concept) {
+        return concept != null && store.containsMember(entry, store.findConceptId(concept.getCodeSystem(), concept.getCode()));
+    }
+
+    /**
+     * Read-only set view that reads members from the store.
+     */
+    private class MappedConceptSet extends AbstractSet<Concept> {
+
+        @Override
+        public int size() {
+            return store.getMemberCount(entry);
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Concept concept && hasConcept(concept);
+        }
+
+        @Override
+        public Iterator<Concept> iterator() {
+            return new Iterator<>() {
+
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return position < size();
+                }
+
+                @Override
+                public Concept next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return store.toConcept(store.getMemberId(entry, position++));
+                }
+            };
+        }
+
+    }
+
+}
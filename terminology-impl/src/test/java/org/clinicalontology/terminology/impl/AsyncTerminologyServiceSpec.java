@@ -0,0 +1,142 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.clinicalontology.terminology.impl.service.AsyncTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncTerminologyServiceSpec {
+
+    private static final ValueSetIdentifier VS = new ValueSetIdentifierImpl("http://async.spec/vs", "1");
+
+    private static final String SYSTEM = "http://async.spec/system";
+
+    private static final int CALLERS = 300;
+
+    private static final int MAX_CONCURRENCY = 8;
+
+    /**
+     * A delegate that blocks membership checks until released and records how many run at once.
+     */
+    private static class BlockingService extends InMemoryTerminologyServiceImpl {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public boolean isMemberOfValueSet(
+            ValueSetIdentifier valueSetIdentifier,
+            Concept concept
+        ) {
+            calls.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+
+            if ("error".equals(concept.getCode())) {
+                throw new IllegalArgumentException("Bad concept");
+            }
+
+            return super.isMemberOfValueSet(valueSetIdentifier, concept);
+        }
+
+    }
+
+    @Test
+    public void testCoalescing() {
+        BlockingService delegate = new BlockingService();
+        delegate.registerValueSet(VS, List.of(new ConceptImpl(SYSTEM, "member")));
+
+        try (AsyncTerminologyServiceImpl service = new AsyncTerminologyServiceImpl(delegate, MAX_CONCURRENCY)) {
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(service.isMemberOfValueSet(new ValueSetIdentifierImpl("http://async.spec/vs", "1"),
+                    new ConceptImpl(SYSTEM, "member")));
+            }
+
+            CompletableFuture<Boolean> error = service.isMemberOfValueSet(VS, new ConceptImpl(SYSTEM, "error"));
+            assertEquals(2, service.getInFlightCount());
+            assertEquals(CALLERS - 1, service.getCoalescedCount());
+            futures.getFirst().cancel(true);
+            delegate.release.countDown();
+
+            for (CompletableFuture<Boolean> future : futures.subList(1, CALLERS)) {
+                assertTrue(future.join());
+            }
+
+            CompletionException e = assertThrows(CompletionException.class, error::join);
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertEquals(2, delegate.calls.get());
+            assertEquals(0, service.getInFlightCount());
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        BlockingService delegate = new BlockingService();
+        delegate.registerValueSet(VS, List.of(new ConceptImpl(SYSTEM, "code0")));
+
+        try (AsyncTerminologyServiceImpl service = new AsyncTerminologyServiceImpl(delegate, MAX_CONCURRENCY)) {
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(service.isMemberOfValueSet(VS, new ConceptImpl(SYSTEM, "code" + i)));
+            }
+
+            assertEquals(0, service.getCoalescedCount());
+
+            while (delegate.running.get() < MAX_CONCURRENCY) {
+                Thread.sleep(1);
+            }
+
+            assertEquals(CALLERS, service.getInFlightCount());
+            delegate.release.countDown();
+            assertEquals(1, futures.stream().filter(CompletableFuture::join).count());
+            assertEquals(CALLERS, delegate.calls.get());
+            assertEquals(MAX_CONCURRENCY, delegate.maxRunning.get());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new AsyncTerminologyServiceImpl(delegate, 0));
+    }
+
+    @Test
+    public void testNullConcepts() {
+        InMemoryTerminologyServiceImpl delegate = new InMemoryTerminologyServiceImpl();
+        delegate.registerValueSet(VS, List.of(new ConceptImpl(SYSTEM, "member")));
+        List<Concept> concepts = Arrays.asList(null, new ConceptImpl(SYSTEM, "member"));
+
+        try (AsyncTerminologyServiceImpl service = new AsyncTerminologyServiceImpl(delegate, MAX_CONCURRENCY)) {
+            assertEquals(BitSet.valueOf(new long[] {2}), service.findMembersOfValueSet(VS, concepts).join());
+            assertEquals(List.of(BitSet.valueOf(new long[] {2})),
+                service.findMembersOfValueSets(List.of(VS), concepts).join());
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.DescriptionType;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.impl.cache.BoundedCache;
+import org.clinicalontology.terminology.impl.cache.CacheConfig;
+import org.clinicalontology.terminology.impl.cache.CacheStats;
+import org.clinicalontology.terminology.impl.cache.EvictionPolicy;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.clinicalontology.terminology.impl.service.CachingTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.service.CachingTerminologyServiceImpl.Operation;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CachingTerminologyServiceSpec {
+
+    private static final ValueSetIdentifier VS = new ValueSetIdentifierImpl("http://caching.spec/vs", "1");
+
+    private static final String SYSTEM = "http://caching.spec/system";
+
+    @Test
+    public void testEviction() {
+        AtomicLong time = new AtomicLong();
+        CacheConfig lru = new CacheConfig(2, Duration.ofNanos(100), null, EvictionPolicy.LRU);
+        BoundedCache<String, String> cache = new BoundedCache<>(lru, time::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("A", cache.get("a", key -> load(key, loads)));
+        assertEquals("B", cache.get("b", key -> load(key, loads)));
+        assertEquals("A", cache.get("a", key -> load(key, loads)));
+        assertEquals("C", cache.get("c", key -> load(key, loads)));
+        assertEquals("A", cache.get("a", key -> load(key, loads)));
+        assertEquals(3, loads.get());
+        assertEquals("B", cache.get("b", key -> load(key, loads)));
+        assertEquals(4, loads.get());
+        assertNull(cache.get("missing", key -> null));
+        assertEquals("MISSING", cache.get("missing", key -> "MISSING"));
+        time.set(100);
+        assertEquals("A", cache.get("a", key -> load(key, loads)));
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.hits());
+        assertEquals(7, stats.misses());
+        assertEquals(3, stats.evictions());
+        assertEquals(1, stats.expirations());
+        assertEquals(2, stats.size());
+
+        CacheConfig tinyLfu = CacheConfig.of(2, null);
+        cache = new BoundedCache<>(tinyLfu);
+
+        for (int i = 0; i < 5; i++) {
+            cache.get("a", key -> load(key, loads));
+            cache.get("b", key -> load(key, loads));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("scan" + i, key -> load(key, loads));
+        }
+
+        loads.set(0);
+        cache.get("a", key -> load(key, loads));
+        cache.get("b", key -> load(key, loads));
+        assertEquals(0, loads.get());
+        assertEquals(10, cache.getStats().rejections());
+        assertNull(cache.get("missing", key -> null));
+        assertEquals("A", new BoundedCache<String, String>(CacheConfig.DISABLED).get("a", key -> load(key, loads)));
+        assertThrows(IllegalArgumentException.class, () -> CacheConfig.of(-1, null));
+    }
+
+    @Test
+    public void testLoadCoalescing() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(CacheConfig.of(100, null));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> cache.get("key", key -> {
+                    try {
+                        assertTrue(release.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+
+                    return load(key, loads);
+                }), executor));
+            }
+
+            while (cache.getStats().misses() < 200) {
+                Thread.sleep(1);
+            }
+
+            release.countDown();
+
+            for (CompletableFuture<String> future : futures) {
+                assertEquals("KEY", future.join());
+            }
+        }
+
+        assertEquals(1, loads.get());
+        assertThrows(IllegalStateException.class, () -> cache.get("error", key -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(CacheConfig.of(100, null));
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+
+            for (String key : List.of("invalidated", "unrelated")) {
+                futures.add(CompletableFuture.supplyAsync(() -> cache.get(key, k -> {
+                    started.countDown();
+
+                    try {
+                        assertTrue(release.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+
+                    return load(k, loads);
+                }), executor));
+            }
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            cache.invalidate("invalidated");
+            release.countDown();
+            assertEquals("INVALIDATED", futures.get(0).join());
+            assertEquals("UNRELATED", futures.get(1).join());
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals("UNRELATED", cache.get("unrelated", key -> load(key, loads)));
+        assertEquals("INVALIDATED", cache.get("invalidated", key -> load(key, loads)));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testCachingService() {
+        AtomicInteger conceptLoads = new AtomicInteger();
+        InMemoryTerminologyServiceImpl delegate = new InMemoryTerminologyServiceImpl() {
+
+            @Override
+            public Concept getConcept(
+                String codeSystem,
+                String code
+            ) {
+                conceptLoads.incrementAndGet();
+                return "unknown".equals(code) ? null : super.getConcept(codeSystem, code);
+            }
+
+        };
+
+        Concept concept = new ConceptImpl(SYSTEM, "code1");
+        delegate.registerValueSet(VS, List.of(concept));
+        CachingTerminologyServiceImpl service = new CachingTerminologyServiceImpl(delegate,
+            Map.of(Operation.MAPPINGS, CacheConfig.DISABLED));
+
+        assertEquals(concept, service.getConcept(concept));
+        assertEquals(concept, service.getConcept(SYSTEM, "code1"));
+        assertNull(service.getConcept(SYSTEM, "unknown"));
+        assertNull(service.getConcept(SYSTEM, "unknown"));
+        assertEquals(2, conceptLoads.get());
+        assertEquals(2, service.getStats(Operation.CONCEPT).hits());
+        assertTrue(service.getConceptDescriptions(concept).isEmpty());
+        assertNull(service.getConceptFSN(concept));
+        assertTrue(service.getConceptDescriptions(concept, DescriptionType.SYNONYM, null).isEmpty());
+        assertEquals(1, service.getStats(Operation.DESCRIPTIONS).misses());
+
+        ValueSetExpansion expansion = service.getValueSetExpansion(VS);
+        assertSame(expansion, service.getValueSetExpansion(new ValueSetIdentifierImpl("http://caching.spec/vs", "1")));
+        assertTrue(service.isMemberOfValueSet(VS, concept));
+        service.registerExternalValueSet(new ValueSetExpansionImpl(VS), true);
+        assertNotSame(expansion, service.getValueSetExpansion(VS));
+        service.getMappingsForConcept(concept);
+        service.getMappingsForConcept(concept);
+        assertEquals(2, service.getStats(Operation.MAPPINGS).misses());
+        assertEquals(0, service.getStats(Operation.MAPPINGS).size());
+
+        int loads = conceptLoads.get();
+        service.refresh();
+        assertEquals(0, service.getStats(Operation.CONCEPT).size());
+        assertEquals(concept, service.getConcept(SYSTEM, "code1"));
+        assertEquals(loads + 1, conceptLoads.get());
+    }
+
+    private static String load(
+        String key,
+        AtomicInteger loads
+    ) {
+        loads.incrementAndGet();
+        return key.toUpperCase();
+    }
+
+}
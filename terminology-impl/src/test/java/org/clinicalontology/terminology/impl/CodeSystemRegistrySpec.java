@@ -0,0 +1,137 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.impl.model.CodeSystemImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class CodeSystemRegistrySpec {
+
+    private static final int WRITERS = 8;
+
+    private static final int READERS = 8;
+
+    private static final int SYSTEMS_PER_WRITER = 100;
+
+    private static final String PREFIX = "http://registry.spec/";
+
+    @Test
+    public void testConcurrentRegistration() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+
+        for (int i = 0; i < WRITERS; i++) {
+            int writer = i;
+            writers.add(Thread.ofPlatform().start(() -> run(start, errors, () -> {
+                for (int j = 0; j < SYSTEMS_PER_WRITER; j++) {
+                    CodeSystem codeSystem = new CodeSystemImpl(urn(writer, j), null, null, oid(writer, j));
+                    CodeSystemRegistry.registerCodeSystems(codeSystem);
+                    CodeSystemRegistry.registerCodeSystemNormalization(legacyUrn(writer, j), codeSystem);
+                }
+            })));
+        }
+
+        for (int i = 0; i < READERS; i++) {
+            readers.add(Thread.ofPlatform().start(() -> run(start, errors, () -> {
+                int j = 0;
+
+                while (writing.get()) {
+                    int writer = j % WRITERS;
+                    int index = j++ % SYSTEMS_PER_WRITER;
+                    CodeSystem codeSystem = CodeSystemRegistry.byUrn(urn(writer, index));
+
+                    if (codeSystem != null) {
+                        assertSame(codeSystem, CodeSystemRegistry.byOid(oid(writer, index)));
+                    }
+
+                    CodeSystemRegistry.getNormalizedCodeSystem(legacyUrn(writer, index));
+                }
+            })));
+        }
+
+        start.countDown();
+
+        for (Thread thread : writers) {
+            thread.join();
+        }
+
+        writing.set(false);
+
+        for (Thread thread : readers) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int j = 0; j < SYSTEMS_PER_WRITER; j++) {
+                CodeSystem codeSystem = CodeSystemRegistry.byUrn(urn(writer, j));
+                assertNotNull(codeSystem);
+                assertSame(codeSystem, CodeSystemRegistry.byOid(oid(writer, j)));
+                assertEquals(urn(writer, j), CodeSystemRegistry.getNormalizedCodeSystem(legacyUrn(writer, j)));
+            }
+        }
+    }
+
+    @Test
+    public void testNormalizationCache() {
+        String local = PREFIX + "local";
+        CodeSystemRegistry.NormalizationCacheStats before = CodeSystemRegistry.getNormalizationCacheStats();
+        assertEquals(local, CodeSystemRegistry.getNormalizedCodeSystem(local));
+        assertEquals(local, CodeSystemRegistry.getNormalizedCodeSystem(local));
+        CodeSystemRegistry.NormalizationCacheStats after = CodeSystemRegistry.getNormalizationCacheStats();
+        assertTrue(after.hits() > before.hits());
+        assertTrue(after.misses() > before.misses());
+        assertTrue(after.size() > 0);
+        CodeSystem codeSystem = new CodeSystemImpl(PREFIX + "normalized", null, null, "1.2.840.999.0.1");
+        CodeSystemRegistry.registerCodeSystemNormalization(local, codeSystem);
+        assertEquals(codeSystem.getUrnAsString(), CodeSystemRegistry.getNormalizedCodeSystem(local));
+        assertTrue(CodeSystemRegistry.areSystemsEquivalent(local, codeSystem.getUrnAsString()));
+    }
+
+    private static void run(
+        CountDownLatch start,
+        ConcurrentLinkedQueue<Throwable> errors,
+        Runnable task
+    ) {
+        try {
+            start.await();
+            task.run();
+        } catch (Throwable e) {
+            errors.add(e);
+        }
+    }
+
+    private static String urn(
+        int writer,
+        int index
+    ) {
+        return PREFIX + writer + "/" + index;
+    }
+
+    private static String legacyUrn(
+        int writer,
+        int index
+    ) {
+        return PREFIX + "legacy/" + writer + "/" + index;
+    }
+
+    private static String oid(
+        int writer,
+        int index
+    ) {
+        return "1.2.840.999." + (writer + 1) + "." + (index + 1);
+    }
+
+}
@@ -0,0 +1,169 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.DescriptionType;
+import org.clinicalontology.terminology.impl.model.CodeSystemImpl;
+import org.clinicalontology.terminology.impl.model.ConceptDictionary;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConceptDictionarySpec {
+
+    private static final String SYSTEM = "http://dictionary.spec/system";
+
+    @Test
+    public void testInterning() {
+        ConceptDictionary dictionary = new ConceptDictionary(100);
+        Concept concept = dictionary.getConcept(SYSTEM, "code1");
+        assertSame(concept, dictionary.getConcept(SYSTEM, "code1"));
+        assertSame(concept, dictionary.getConcept(CodeSystemImpl.create(SYSTEM), "code1"));
+        assertSame(concept.getCodeSystem(), dictionary.getCodeSystem(SYSTEM));
+        assertSame(concept.getCodeSystem(), dictionary.getConcept(SYSTEM, "code2").getCodeSystem());
+        assertEquals(0, dictionary.getId(SYSTEM, "code1"));
+        assertEquals(1, dictionary.getId(new ConceptImpl(SYSTEM, "code2")));
+        assertSame(concept, dictionary.getConcept(0));
+        assertNull(dictionary.getConcept(2));
+        assertNull(dictionary.getConcept(-1));
+        assertNull(dictionary.getConcept(SYSTEM, ""));
+        assertEquals(ConceptDictionary.NO_ID, dictionary.getId(null, "code1"));
+        assertEquals(2, dictionary.size());
+
+        ConceptImpl interned = (ConceptImpl) concept;
+        assertTrue(interned.isImmutable());
+        assertThrows(UnsupportedOperationException.class, () -> interned.setPreferredName("name"));
+        assertThrows(UnsupportedOperationException.class,
+            () -> interned.addConceptDescription(DescriptionType.SYNONYM, "synonym"));
+        ConceptImpl copy = new ConceptImpl(concept);
+        copy.setPreferredName("name");
+        assertNull(concept.getPreferredName());
+    }
+
+    @Test
+    public void testCodeSystemAliasing() {
+        CodeSystem registered = new CodeSystemImpl("http://dictionary.spec/registered", null, null, "1.2.840.999.31");
+        CodeSystemRegistry.registerCodeSystems(registered);
+        ConceptDictionary dictionary = new ConceptDictionary(100);
+        assertSame(registered, dictionary.getCodeSystem("http://dictionary.spec/registered"));
+        CodeSystem oidUrn = dictionary.getCodeSystem("urn:oid:1.2.840.999.31");
+        assertNotSame(registered, oidUrn);
+        assertEquals("urn:oid:1.2.840.999.31", oidUrn.getUrnAsString());
+        Concept byUrn = dictionary.getConcept("http://dictionary.spec/registered", "code1");
+        Concept byOid = dictionary.getConcept("urn:oid:1.2.840.999.31", "code1");
+        assertNotSame(byUrn, byOid);
+        assertEquals(byUrn, byOid);
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testSizeCap() {
+        ConceptDictionary dictionary = new ConceptDictionary(2);
+        Concept concept = dictionary.getConcept(SYSTEM, "code1");
+        dictionary.getConcept(SYSTEM, "code2");
+        Concept uninterned = dictionary.getConcept(SYSTEM, "code3");
+        assertEquals(new ConceptImpl(SYSTEM, "code3"), uninterned);
+        assertNotSame(uninterned, dictionary.getConcept(SYSTEM, "code3"));
+        assertEquals(ConceptDictionary.NO_ID, dictionary.getId(SYSTEM, "code3"));
+        assertSame(concept, dictionary.getConcept(SYSTEM, "code1"));
+        assertEquals(2, dictionary.size());
+
+        dictionary.clear();
+        assertEquals(0, dictionary.size());
+        assertNull(dictionary.getConcept(0));
+        Concept reinterned = dictionary.getConcept(SYSTEM, "code3");
+        assertEquals(0, dictionary.getId(SYSTEM, "code3"));
+        assertSame(reinterned, dictionary.getConcept(0));
+        assertNotSame(concept, dictionary.getConcept(SYSTEM, "code1"));
+    }
+
+    @Test
+    public void testCodeSystemCap() {
+        ConceptDictionary dictionary = new ConceptDictionary(100, 1);
+        CodeSystem codeSystem = dictionary.getCodeSystem(SYSTEM);
+        assertSame(codeSystem, dictionary.getCodeSystem(SYSTEM));
+        CodeSystem uninterned = dictionary.getCodeSystem(SYSTEM + "2");
+        assertEquals(SYSTEM + "2", uninterned.getUrnAsString());
+        assertNotSame(uninterned, dictionary.getCodeSystem(SYSTEM + "2"));
+        assertEquals(SYSTEM + "2", dictionary.getConcept(SYSTEM + "2", "code1").getCodeSystemAsString());
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testConcurrentInterning() throws Exception {
+        int threads = 16;
+        int codes = 20_000;
+        ConceptDictionary dictionary = new ConceptDictionary(codes);
+        ConceptDictionary cleared = new ConceptDictionary(codes);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<List<Concept>>> futures = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads + 1)) {
+            for (int t = 0; t < threads; t++) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    List<Concept> concepts = new ArrayList<>(codes);
+
+                    for (int i = 0; i < codes; i++) {
+                        concepts.add(dictionary.getConcept(SYSTEM, "code" + i));
+                        assertEquals("code" + i, cleared.getConcept(SYSTEM, "code" + i).getCode());
+                    }
+
+                    return concepts;
+                }, executor));
+            }
+
+            CompletableFuture<Void> clearing = CompletableFuture.runAsync(() -> {
+                await(start);
+
+                for (int i = 0; i < 1_000; i++) {
+                    cleared.clear();
+                }
+            }, executor);
+
+            start.countDown();
+            clearing.get(30, TimeUnit.SECONDS);
+            List<Concept> first = futures.getFirst().get(30, TimeUnit.SECONDS);
+
+            for (CompletableFuture<List<Concept>> future : futures) {
+                List<Concept> concepts = future.get(30, TimeUnit.SECONDS);
+
+                for (int i = 0; i < codes; i++) {
+                    assertSame(first.get(i), concepts.get(i));
+                }
+            }
+        }
+
+        Set<Integer> ids = new HashSet<>();
+
+        for (int i = 0; i < codes; i++) {
+            int id = dictionary.getId(SYSTEM, "code" + i);
+            assertTrue(ids.add(id));
+            assertSame(dictionary.getConcept(SYSTEM, "code" + i), dictionary.getConcept(id));
+        }
+
+        assertEquals(codes, dictionary.size());
+        assertEquals(codes - 1, ids.stream().mapToInt(Integer::intValue).max().orElse(-1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -1,11 +1,25 @@
 package org.clinicalontology.terminology.impl;
 
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
 import org.clinicalontology.terminology.api.model.Concept;
 import org.clinicalontology.terminology.api.model.DescriptionType;
+import org.clinicalontology.terminology.api.model.Language;
+import org.clinicalontology.terminology.api.model.LanguageContext;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.model.CodeSystemImpl;
 import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.FieldTokenizer;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.service.LocalizedTerminologyServiceImpl;
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
 
 public class ConceptSpec {
 
@@ -28,4 +42,137 @@ public class ConceptSpec {
         assertEquals(cpt1, cpt2);
     }
 
+    @Test
+    public void testDescriptionIndex() {
+        ConceptImpl concept = new ConceptImpl("http://concept.spec/system", "code1");
+        assertTrue(concept.getConceptDescriptionTexts(null, null).isEmpty());
+        concept.addConceptDescription(DescriptionType.FULLY_SPECIFIED_NAME, "FSN", Language.EN);
+        concept.addConceptDescription(DescriptionType.SYNONYM, "SYN1", Language.EN);
+        concept.addConceptDescription(DescriptionType.SYNONYM, "SYN2", Language.EN);
+        concept.addConceptDescription(DescriptionType.SYNONYM, "SYN-DE", Language.DE);
+        concept.addConceptDescription(DescriptionType.DEFINITION, "DEF", null);
+        assertEquals(List.of("SYN1", "SYN2", "SYN-DE"),
+            concept.getConceptDescriptionTexts(null, DescriptionType.SYNONYM));
+        assertEquals(List.of("SYN1", "SYN2"), concept.getConceptDescriptionTexts(Language.EN, DescriptionType.SYNONYM));
+        assertEquals(List.of("FSN", "SYN1", "SYN2"), concept.getConceptDescriptionTexts(Language.EN, null));
+        assertEquals(5, concept.getConceptDescriptions(null, null).size());
+        assertTrue(concept.getConceptDescriptions(Language.DE, DescriptionType.DEFINITION).isEmpty());
+        assertTrue(concept.getConceptDescriptions(Language.FR, null).isEmpty());
+        assertSame(concept.getConceptDescriptions(Language.EN, DescriptionType.SYNONYM),
+            concept.getConceptDescriptions(Language.EN, DescriptionType.SYNONYM));
+        assertThrows(UnsupportedOperationException.class, () -> concept.getConceptDescriptions().clear());
+        assertThrows(UnsupportedOperationException.class,
+            () -> concept.getConceptDescriptionTexts(Language.EN, null).add("X"));
+
+        concept.addConceptDescription(DescriptionType.SYNONYM, "SYN3", Language.EN);
+        assertEquals(List.of("SYN1", "SYN2", "SYN3"), concept.getConceptDescriptionTexts(Language.EN,
+            DescriptionType.SYNONYM));
+        assertEquals("FSN", concept.getConceptDescriptionText(DescriptionType.FULLY_SPECIFIED_NAME));
+        assertEquals("DEF", new ConceptImpl(concept).getConceptDescriptionText(DescriptionType.DEFINITION));
+
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        service.addConcept(concept);
+        assertEquals("FSN", service.getConceptFSN(concept));
+        assertEquals(List.of("SYN1", "SYN2", "SYN3"), service.getConceptSynonyms(concept, Language.EN));
+        assertEquals("DEF", service.getConceptDefinition(concept, null));
+        assertEquals(1, service.getConceptDescriptions(concept, Language.DE).size());
+    }
+
+    @Test
+    public void testLanguageContext() {
+        assertEquals(Language.IW, Language.fromLocale(Locale.forLanguageTag("he-IL")));
+        assertEquals(Language.JI, Language.fromCode("yi"));
+        assertEquals(Language.IN, Language.fromCode("ID"));
+        assertEquals(Language.ES, Language.fromCode("es"));
+        assertNull(Language.fromCode("xx"));
+        assertNull(Language.fromLocale(null));
+        Locale original = Locale.getDefault();
+
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals(Language.DE, Language.getDefault());
+            assertSame(LanguageContext.getDefault(), LanguageContext.getDefault());
+            Locale.setDefault(Locale.forLanguageTag("es-MX"));
+            assertEquals(Language.ES, Language.getDefault());
+            assertEquals(List.of(Language.ES), LanguageContext.getDefault().getLanguages());
+            Locale.setDefault(Locale.forLanguageTag("xx"));
+            assertNull(Language.getDefault());
+            assertEquals(LanguageContext.ANY, LanguageContext.getDefault());
+        } finally {
+            Locale.setDefault(original);
+        }
+
+        LanguageContext context = LanguageContext.fromLocale(Locale.forLanguageTag("es"), Language.EN);
+        assertEquals(List.of(Language.ES, Language.EN), context.getLanguages());
+        assertEquals(Language.ES, context.getLanguage());
+        assertEquals(LanguageContext.of(Language.ES, Language.EN, null), context.withFallback(Language.ES, null));
+        assertThrows(IllegalArgumentException.class, LanguageContext::of);
+
+        ConceptImpl concept = new ConceptImpl("http://concept.spec/system", "code2");
+        concept.addConceptDescription(DescriptionType.SYNONYM, "SYN-EN", Language.EN);
+        concept.addConceptDescription(DescriptionType.DEFINITION, "DEF-ES", Language.ES);
+        concept.addConceptDescription(DescriptionType.DEFINITION, "DEF-EN", Language.EN);
+        assertEquals(List.of("SYN-EN"), concept.getLocalizedDescriptionTexts(context, DescriptionType.SYNONYM));
+        assertEquals(List.of("DEF-ES"), concept.getLocalizedDescriptionTexts(context, DescriptionType.DEFINITION));
+        assertTrue(concept.getLocalizedDescriptions(LanguageContext.of(Language.FR), null).isEmpty());
+        assertEquals(3, concept.getLocalizedDescriptions(LanguageContext.of(Language.FR, null), null).size());
+
+        InMemoryTerminologyServiceImpl delegate = new InMemoryTerminologyServiceImpl();
+        delegate.addConcept(concept);
+        TerminologyService service = new LocalizedTerminologyServiceImpl(delegate, context);
+        assertSame(context, service.getLanguageContext());
+        assertEquals(List.of("SYN-EN"), service.getConceptSynonyms(concept));
+        assertEquals("DEF-ES", service.getConceptDefinition(concept));
+        assertEquals(1, service.getConceptDescriptions(concept).size());
+        assertEquals("DEF-EN", service.getConceptDefinition(concept, Language.EN));
+        assertEquals(List.of("DEF-EN"), delegate.getLocalizedDescriptionText(concept, DescriptionType.DEFINITION,
+            LanguageContext.of(Language.EN, Language.ES)));
+    }
+
+    @Test
+    public void testFieldTokenizer() {
+        String[] fields = new String[3];
+
+        for (String input : new String[]{"", "|", "a", "a|b", "a|b|", "|a|b", "a||c", "a|b|c|d", "a|b||", "a,b"}) {
+            String[] expected = input.split("\\|");
+            assertEquals(input, expected.length, FieldTokenizer.split(input, FieldTokenizer.FIELD_DELIMITER, fields));
+
+            for (int i = 0; i < fields.length; i++) {
+                assertEquals(input, i < expected.length ? expected[i] : null, fields[i]);
+            }
+        }
+
+        assertEquals(2, FieldTokenizer.split("x|a|b|y", 2, 5, FieldTokenizer.FIELD_DELIMITER, fields));
+        assertEquals("b", fields[1]);
+        assertEquals(3, FieldTokenizer.indexOf("a|b,c", 0, 5, FieldTokenizer.LIST_DELIMITER));
+        assertEquals(3, FieldTokenizer.indexOf("a|b,c", 0, 3, FieldTokenizer.LIST_DELIMITER));
+        assertThrows(IllegalArgumentException.class, () -> ConceptImpl.create("http://system1|code1|cpt1|extra"));
+    }
+
+    @Test
+    public void testEquivalentCodeSystems() {
+        CodeSystem registered = new CodeSystemImpl("http://concept.spec/system", null, null, "1.2.840.999.1");
+        CodeSystemRegistry.registerCodeSystems(registered);
+        CodeSystem alias = new CodeSystemImpl("http://concept.spec/alias", null, null, "1.2.840.999.1");
+        CodeSystem oidUrn = new CodeSystemImpl("urn:oid:1.2.840.999.1");
+        CodeSystem other = new CodeSystemImpl("http://concept.spec/other", null, null, "1.2.840.999.2");
+        assertEquals(registered, alias);
+        assertEquals(alias, oidUrn);
+        assertEquals(registered.hashCode(), alias.hashCode());
+        assertEquals(registered.hashCode(), oidUrn.hashCode());
+        assertNotEquals(registered, other);
+        Set<Concept> concepts = new HashSet<>();
+        concepts.add(new ConceptImpl(registered, "code1"));
+        assertTrue(concepts.contains(new ConceptImpl(alias, "code1")));
+        assertTrue(concepts.contains(new ConceptImpl(oidUrn, "code1")));
+        assertFalse(concepts.contains(new ConceptImpl(alias, "code2")));
+        assertFalse(concepts.contains(new ConceptImpl(other, "code1")));
+        assertFalse(concepts.add(new ConceptImpl(alias, "code1", "alias")));
+        CodeSystem legacy = new CodeSystemImpl("http://concept.spec/legacy");
+        assertFalse(concepts.contains(new ConceptImpl(legacy, "code1")));
+        CodeSystemRegistry.registerCodeSystemNormalization(legacy, registered);
+        assertEquals(registered.getCanonicalKey(), legacy.getCanonicalKey());
+        assertTrue(concepts.contains(new ConceptImpl(legacy, "code1")));
+    }
+
 }
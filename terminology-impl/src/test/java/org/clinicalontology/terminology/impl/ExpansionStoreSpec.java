@@ -0,0 +1,155 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.model.CodeSystemImpl;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.clinicalontology.terminology.impl.service.MappedTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.store.ExpansionStore;
+import org.clinicalontology.terminology.impl.store.ExpansionStoreCompiler;
+import org.clinicalontology.terminology.impl.store.ExpansionStoreWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ExpansionStoreSpec {
+
+    private static final ValueSetIdentifier VS1 = new ValueSetIdentifierImpl("http://store.spec/vs1", "1", "Value set 1");
+
+    private static final ValueSetIdentifier VS2 = new ValueSetIdentifierImpl("http://store.spec/vs2", "2");
+
+    private static final ValueSetIdentifier VS3 = new ValueSetIdentifierImpl("http://store.spec/vs3", "1");
+
+    @Test
+    public void testStore() throws Exception {
+        Path path = Files.createTempFile("expansion-store", ".bin");
+
+        try {
+            Set<Concept> members = new HashSet<>();
+
+            for (int i = 0; i < 500; i++) {
+                members.add(new ConceptImpl("http://store.spec/system" + (i % 3), "code" + i, "display" + i));
+            }
+
+            try (ExpansionStoreWriter writer = new ExpansionStoreWriter()) {
+                writer.addValueSet(new ValueSetExpansionImpl(VS1, members));
+                writer.beginValueSet(VS2);
+                writer.addMember("http://store.spec/system1", "code1", null);
+                writer.addMember("http://store.spec/system1", "code1", null);
+                writer.addMember("http://store.spec/system4", "é", "accented");
+                writer.endValueSet();
+                assertThrows(IllegalArgumentException.class, () -> writer.beginValueSet(VS1));
+                writer.write(path);
+            }
+
+            ExpansionStore store = ExpansionStore.open(path);
+            assertEquals(501, store.getConceptCount());
+            assertEquals(2, store.getValueSetIdentifiers().size());
+            assertEquals("Value set 1", store.getValueSetIdentifiers().getFirst().getDisplayName());
+            ValueSetExpansion expansion = store.getExpansion(VS1);
+            assertEquals(members, new HashSet<>(expansion.getExpansion()));
+            assertEquals(2, store.getExpansion(VS2).getExpansion().size());
+            assertTrue(expansion.hasConcept(new ConceptImpl("http://store.spec/system2", "code2")));
+            assertFalse(expansion.hasConcept(new ConceptImpl("http://store.spec/system1", "code2")));
+            assertFalse(expansion.hasConcept(new ConceptImpl("http://store.spec/system4", "code1")));
+            assertThrows(UnsupportedOperationException.class,
+                () -> expansion.getExpansion().add(new ConceptImpl("http://store.spec/system1", "code2")));
+            Concept oidConcept = new ConceptImpl("urn:oid:1.2.840.999.77", "code2");
+            assertFalse(expansion.hasConcept(oidConcept));
+            CodeSystemRegistry.registerCodeSystems(
+                new CodeSystemImpl("http://store.spec/system2", null, null, "1.2.840.999.77"));
+            assertTrue(expansion.hasConcept(oidConcept));
+
+            TerminologyService service = new MappedTerminologyServiceImpl(path);
+            assertTrue(service.isValidValueSet(VS2));
+            assertFalse(service.isValidValueSet(VS3));
+            assertTrue(service.isMemberOfValueSet(VS2, new ConceptImpl("http://store.spec/system4", "é")));
+            assertFalse(service.isMemberOfValueSet(VS2, new ConceptImpl("http://store.spec/system2", "code2")));
+            assertEquals("display7", service.getConcept("http://store.spec/system1", "code7").getPreferredName());
+            assertTrue(service.isValidConcept(new ConceptImpl("http://store.spec/system1", "code7")));
+            assertFalse(service.isValidConcept(service.getConcept("http://store.spec/system1", "code500")));
+            service.registerExternalValueSet(new ValueSetExpansionImpl(VS3, Set.of(new ConceptImpl("http://store.spec/system1", "x"))), false);
+            assertTrue(service.isMemberOfValueSet(VS3, new ConceptImpl("http://store.spec/system1", "x")));
+            assertThrows(RuntimeException.class, () -> service.registerExternalValueSet(store.getExpansion(VS1), false));
+            assertFalse(service.getMappingsForConcept(new ConceptImpl("http://store.spec/system1", "code7")).hasMappings());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testCompiler() throws Exception {
+        Path input = Files.createTempFile("expansion-dump", ".txt");
+        Path output = Files.createTempFile("expansion-store", ".bin");
+
+        try {
+            Files.writeString(input, """
+                #http://store.spec/vs1|1|Value set 1
+                http://store.spec/system1|code1|display1
+                http://store.spec/system1|code2|
+
+                #http://store.spec/vs2|2
+                http://store.spec/system1|code1
+                http://store.spec/system2|code1|display|with pipe
+                """);
+            ExpansionStoreCompiler compiler = new ExpansionStoreCompiler();
+            IOException e = assertThrows(IOException.class, () -> compiler.compile(output, List.of(input)));
+            assertTrue(e.getMessage().endsWith("line 7: Invalid concept format: http://store.spec/system2|code1|display|with pipe"));
+            Files.writeString(input, Files.readString(input).replace("|with pipe", ""));
+            ExpansionStoreCompiler.CompileStats stats = compiler.compile(output, List.of(input));
+            assertEquals(2, stats.valueSets());
+            assertEquals(4, stats.members());
+            assertEquals(3, stats.concepts());
+            ExpansionStore store = ExpansionStore.open(output);
+            assertTrue(store.isMember(VS1, new ConceptImpl("http://store.spec/system1", "code2")));
+            assertNull(store.getConcept(CodeSystemImpl.create("http://store.spec/system1"), "code2").getPreferredName());
+            assertEquals("display1", store.getConcept(CodeSystemImpl.create("http://store.spec/system1"), "code1").getPreferredName());
+            assertEquals(2, store.getExpansion(VS2).getExpansion().size());
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void testCompilerAliases() throws Exception {
+        CodeSystemRegistry.registerCodeSystems(
+            new CodeSystemImpl("http://store.spec/aliased", null, null, "1.2.840.999.78"));
+        Path input = Files.createTempFile("expansion-dump", ".txt");
+        Path output = Files.createTempFile("expansion-store", ".bin");
+
+        try {
+            Files.writeString(input, """
+                #http://store.spec/vs3|1
+                http://store.spec/aliased|code1|display1
+                urn:oid:1.2.840.999.78|code1
+                urn:oid:1.2.840.999.78|code2
+                """);
+            ExpansionStoreCompiler.CompileStats stats = new ExpansionStoreCompiler().compile(output, List.of(input));
+            assertEquals(3, stats.members());
+            assertEquals(2, stats.concepts());
+            ExpansionStore store = ExpansionStore.open(output);
+            assertEquals(2, store.getExpansion(VS3).getExpansion().size());
+            assertTrue(store.isMember(VS3, new ConceptImpl("http://store.spec/aliased", "code2")));
+            assertTrue(store.isMember(VS3, new ConceptImpl("urn:oid:1.2.840.999.78", "code1")));
+            assertEquals("display1", store.getConcept(CodeSystemImpl.create("urn:oid:1.2.840.999.78"), "code1")
+                .getPreferredName());
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+}
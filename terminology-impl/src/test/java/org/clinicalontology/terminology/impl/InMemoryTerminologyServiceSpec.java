@@ -0,0 +1,285 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.impl.model.CodeSystemImpl;
+import org.clinicalontology.terminology.impl.model.ConceptDictionary;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.TerminologyMappingImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class InMemoryTerminologyServiceSpec {
+
+    private static final int WRITERS = 4;
+
+    private static final int READERS = 4;
+
+    private static final int VALUE_SETS = 20;
+
+    private static final int CONCEPTS = 50;
+
+    private static final String SYSTEM = "http://service.spec/system";
+
+    private static final String TARGET_SYSTEM = "http://service.spec/target";
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+
+        for (int i = 0; i < WRITERS; i++) {
+            int writer = i;
+            writers.add(Thread.ofPlatform().start(() -> run(start, errors, () -> {
+                for (int vs = 0; vs < VALUE_SETS; vs++) {
+                    for (int j = 0; j < CONCEPTS; j++) {
+                        Concept concept = concept(writer, j);
+                        service.addConcept(concept);
+                        service.addConceptToValueSet(valueSet(vs), concept);
+                    }
+                }
+            })));
+        }
+
+        for (int i = 0; i < READERS; i++) {
+            readers.add(Thread.ofPlatform().start(() -> run(start, errors, () -> {
+                int j = 0;
+
+                while (writing.get()) {
+                    ValueSetExpansion expansion = service.getValueSetExpansion(valueSet(j % VALUE_SETS));
+
+                    if (expansion != null) {
+                        for (Concept concept : expansion.getExpansion()) {
+                            assertTrue(expansion.hasConcept(concept));
+                        }
+                    }
+
+                    service.isMemberOfValueSet(valueSet(j % VALUE_SETS), concept(j % WRITERS, j % CONCEPTS));
+                    assertNotNull(service.getConcept(SYSTEM, "unknown" + j++));
+                }
+            })));
+        }
+
+        start.countDown();
+
+        for (Thread thread : writers) {
+            thread.join();
+        }
+
+        writing.set(false);
+
+        for (Thread thread : readers) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        for (int vs = 0; vs < VALUE_SETS; vs++) {
+            assertEquals(WRITERS * CONCEPTS, service.getValueSetExpansion(valueSet(vs)).getExpansion().size());
+
+            for (int writer = 0; writer < WRITERS; writer++) {
+                for (int j = 0; j < CONCEPTS; j++) {
+                    assertTrue(service.isMemberOfValueSet(valueSet(vs), concept(writer, j)));
+                    assertTrue(service.isValidConcept(concept(writer, j)));
+                }
+            }
+        }
+
+        assertFalse(service.isValidConcept(service.getConcept(SYSTEM, "unknown0")));
+        ValueSetExpansion expansion = service.getValueSetExpansion(valueSet(0));
+        assertThrows(UnsupportedOperationException.class, () -> expansion.getExpansion().add(concept(0, CONCEPTS)));
+    }
+
+    @Test
+    public void testAddConceptToValueSet() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+
+        for (int j = 0; j < CONCEPTS; j++) {
+            service.addConceptToValueSet(valueSet(0), concept(0, j));
+        }
+
+        assertTrue(service.isMemberOfValueSet(valueSet(0), concept(0, 0)));
+        ValueSetExpansion expansion = service.getValueSetExpansion(valueSet(0));
+        assertEquals(CONCEPTS, expansion.getExpansion().size());
+        assertThrows(UnsupportedOperationException.class, () -> expansion.getExpansion().add(concept(1, 0)));
+        service.addConceptToValueSet(valueSet(0), concept(1, 0));
+        assertFalse(expansion.hasConcept(concept(1, 0)));
+        assertEquals(CONCEPTS, expansion.getExpansion().size());
+        assertTrue(service.isMemberOfValueSet(valueSet(0), concept(1, 0)));
+        assertEquals(CONCEPTS + 1, service.getGenerationStats().members());
+        assertNotSame(expansion, service.getValueSetExpansion(valueSet(0)));
+        assertSame(service.getValueSetExpansion(valueSet(0)), service.getValueSetExpansion(valueSet(0)));
+    }
+
+    @Test
+    public void testSnapshotMode() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl(ConceptDictionary.getDefault(), true);
+        assertEquals(0, service.getGenerationStats().generation());
+        service.addConcept(concept(0, 0));
+        service.registerValueSet(valueSet(0), List.of(concept(0, 0), concept(0, 1)));
+        service.addTerminologyMapping(concept(0, 0), concept(0, 1), null);
+        assertFalse(service.isValidValueSet(valueSet(0)));
+        assertFalse(service.isValidConcept(concept(0, 0)));
+        service.refresh();
+        InMemoryTerminologyServiceImpl.GenerationStats stats = service.getGenerationStats();
+        assertEquals(1, stats.generation());
+        assertEquals(1, stats.concepts());
+        assertEquals(1, stats.valueSets());
+        assertEquals(2, stats.members());
+        assertEquals(1, stats.mappings());
+        assertTrue(service.isMemberOfValueSet(valueSet(0), concept(0, 1)));
+        assertTrue(service.isValidConcept(concept(0, 0)));
+        assertEquals(1, service.getMappingsForConcept(concept(0, 0)).size());
+        ValueSetExpansion expansion = service.getValueSetExpansion(valueSet(0));
+        assertThrows(UnsupportedOperationException.class, () -> expansion.getExpansion().add(concept(0, 2)));
+
+        service.registerValueSet(valueSet(1), List.of(concept(1, 0)));
+        assertTrue(service.isValidValueSet(valueSet(0)));
+        assertFalse(service.isValidValueSet(valueSet(1)));
+        service.refresh();
+        assertEquals(2, service.getGenerationStats().generation());
+        assertFalse(service.isValidValueSet(valueSet(0)));
+        assertTrue(service.isMemberOfValueSet(valueSet(1), concept(1, 0)));
+        assertTrue(expansion.hasConcept(concept(0, 1)));
+        service.refresh();
+        assertEquals(2, service.getGenerationStats().generation());
+    }
+
+    @Test
+    public void testParseAndRegisterValueSet() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        service.parseAndRegisterValueSet(valueSet(0), SYSTEM + "|code1|Code 1," + SYSTEM + "|code2,,");
+        ValueSetExpansion expansion = service.getValueSetExpansion(valueSet(0));
+        assertEquals(2, expansion.getExpansion().size());
+        assertTrue(expansion.hasConcept(new ConceptImpl(SYSTEM, "code2")));
+        assertThrows(IllegalArgumentException.class,
+            () -> service.parseAndRegisterValueSet(valueSet(1), SYSTEM + "|code1,," + SYSTEM + "|code2"));
+        assertThrows(IllegalArgumentException.class,
+            () -> service.parseAndRegisterValueSet(valueSet(1), SYSTEM + "|code1|Code 1|extra"));
+    }
+
+    @Test
+    public void testMappings() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        Concept source = concept(0, 0);
+        Concept category = new ConceptImpl(SYSTEM, "category");
+        Concept target1 = new ConceptImpl(TARGET_SYSTEM, "target1");
+        Concept target2 = new ConceptImpl(TARGET_SYSTEM, "target2");
+        service.addTerminologyMapping(source, concept(0, 1), null);
+        service.addTerminologyMapping(source, target1, TerminologyMappingType.TARGET_BROADER);
+        service.addTerminologyMapping(
+            new TerminologyMappingImpl(TerminologyMappingType.TARGET_EQUIVALENT, source, target2, category));
+
+        assertEquals(3, service.getMappingsForConcept(source).size());
+        TerminologyMappings all = service.getMappingsForConcept(source);
+        assertThrows(UnsupportedOperationException.class, () -> all.add(all.getMappings().getFirst()));
+        assertThrows(UnsupportedOperationException.class, () -> all.getMappings().clear());
+        assertThrows(UnsupportedOperationException.class, () -> service.getMappingsForTarget(target1).getMappings()
+            .clear());
+        TerminologyMappings byTarget = service.getMappingsForConcept(source, TARGET_SYSTEM);
+        assertEquals(List.of(target1, target2), byTarget.getMappings().stream().map(m -> m.getTarget()).toList());
+        assertSame(byTarget, service.getMappingsForConcept(source, TARGET_SYSTEM));
+        assertSame(target1, service.getMappingsForConcept(source).findFirstMatch(target1.getCodeSystem()).getTarget());
+        assertThrows(UnsupportedOperationException.class, () -> byTarget.add(byTarget.getMappings().getFirst()));
+        assertThrows(UnsupportedOperationException.class, () -> byTarget.getMappings().clear());
+        assertEquals(1, service.getMappingsForConcept(source, new ConceptImpl(SYSTEM, "category")).size());
+        assertFalse(service.getMappingsForConcept(source, new ConceptImpl(TARGET_SYSTEM, "category")).hasMappings());
+        assertFalse(service.getMappingsForConcept(concept(0, 1)).hasMappings());
+        assertFalse(service.getMappingsForConcept(concept(0, 1), TARGET_SYSTEM).hasMappings());
+        assertFalse(service.getMappingsForConcept(concept(0, 1), category).hasMappings());
+    }
+
+    @Test
+    public void testStagedMappings() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        Concept target = new ConceptImpl(TARGET_SYSTEM, "target");
+
+        for (int j = 0; j < CONCEPTS; j++) {
+            service.addTerminologyMapping(concept(0, j), target, null);
+        }
+
+        TerminologyMappings mappings = service.getMappingsForTarget(target);
+        assertEquals(CONCEPTS, mappings.size());
+        assertSame(mappings, service.getMappingsForTarget(target));
+        assertThrows(UnsupportedOperationException.class, () -> mappings.add(mappings.getMappings().getFirst()));
+        service.addTerminologyMapping(concept(1, 0), target, null);
+        assertEquals(CONCEPTS, mappings.size());
+        assertEquals(CONCEPTS + 1, service.getMappingsForTarget(target).size());
+        assertEquals(CONCEPTS + 1, service.getGenerationStats().mappings());
+    }
+
+    @Test
+    public void testMappingsAfterRegistration() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        Concept source = concept(0, 0);
+        service.addTerminologyMapping(source, new ConceptImpl("urn:oid:1.2.840.999.79", "target"), null);
+        assertFalse(service.getMappingsForConcept(source, "http://service.spec/registered").hasMappings());
+        CodeSystemRegistry.registerCodeSystems(
+            new CodeSystemImpl("http://service.spec/registered", null, null, "1.2.840.999.79"));
+        assertEquals(1, service.getMappingsForConcept(source, "http://service.spec/registered").size());
+        assertEquals(1, service.getMappingsForConcept(source, "urn:oid:1.2.840.999.79").size());
+    }
+
+    @Test
+    public void testReverseMappings() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        Concept target = new ConceptImpl(TARGET_SYSTEM, "target");
+        service.addTerminologyMapping(concept(0, 0), target, TerminologyMappingType.TARGET_EQUIVALENT);
+        service.addTerminologyMapping(concept(0, 1), target, TerminologyMappingType.TARGET_BROADER);
+        service.addTerminologyMapping(new ConceptImpl(TARGET_SYSTEM, "other"), target,
+            TerminologyMappingType.TARGET_EQUIVALENT);
+        service.addTerminologyMapping(concept(0, 2), new ConceptImpl(TARGET_SYSTEM, "other"), null);
+
+        assertEquals(3, service.getMappingsForTarget(target).size());
+        assertEquals(2, service.getMappingsForTarget(target, null, SYSTEM).size());
+        assertEquals(2, service.getMappingsForTarget(target, TerminologyMappingType.TARGET_EQUIVALENT, null).size());
+        TerminologyMappings filtered = service.getMappingsForTarget(target, TerminologyMappingType.TARGET_BROADER,
+            SYSTEM);
+        assertEquals(concept(0, 1), filtered.getMappings().getFirst().getSource());
+        assertSame(filtered, service.getMappingsForTarget(target, TerminologyMappingType.TARGET_BROADER, SYSTEM));
+        assertFalse(service.getMappingsForTarget(concept(0, 0)).hasMappings());
+        assertEquals(1, service.getMappingsForConcept(concept(0, 2)).size());
+    }
+
+    private static void run(
+        CountDownLatch start,
+        ConcurrentLinkedQueue<Throwable> errors,
+        Runnable task
+    ) {
+        try {
+            start.await();
+            task.run();
+        } catch (Throwable e) {
+            errors.add(e);
+        }
+    }
+
+    private static Concept concept(
+        int writer,
+        int index
+    ) {
+        return new ConceptImpl(SYSTEM, writer + "-" + index);
+    }
+
+    private static ValueSetIdentifier valueSet(int index) {
+        return new ValueSetIdentifierImpl("http://service.spec/vs" + index, "1");
+    }
+
+}
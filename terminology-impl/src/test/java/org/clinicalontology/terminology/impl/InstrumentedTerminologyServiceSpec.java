@@ -0,0 +1,111 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.MembershipListener;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.service.InstrumentedTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.service.MembershipMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedTerminologyServiceSpec {
+
+    private static final ValueSetIdentifier VS1 = new ValueSetIdentifierImpl("http://instrumented.spec/vs1", "1");
+
+    private static final ValueSetIdentifier VS2 = new ValueSetIdentifierImpl("http://instrumented.spec/vs2", "1");
+
+    private static final Concept CONCEPT1 = new ConceptImpl("http://instrumented.spec/system", "code1");
+
+    private static final Concept CONCEPT2 = new ConceptImpl("http://instrumented.spec/system", "code2");
+
+    @Test
+    public void testMetrics() {
+        InMemoryTerminologyServiceImpl delegate = new InMemoryTerminologyServiceImpl() {
+
+            @Override
+            public boolean isMemberOfValueSet(
+                ValueSetIdentifier valueSetIdentifier,
+                Concept concept
+            ) {
+                if (valueSetIdentifier == VS2) {
+                    throw new IllegalStateException("Timed out");
+                }
+
+                return super.isMemberOfValueSet(valueSetIdentifier, concept);
+            }
+
+            @Override
+            public List<BitSet> findMembersOfValueSets(
+                List<? extends ValueSetIdentifier> valueSetIdentifiers,
+                List<? extends Concept> concepts
+            ) {
+                if (valueSetIdentifiers.contains(VS2)) {
+                    throw new IllegalStateException("Timed out");
+                }
+
+                return super.findMembersOfValueSets(valueSetIdentifiers, concepts);
+            }
+
+        };
+
+        delegate.registerValueSet(VS1, List.of(CONCEPT1));
+        MembershipMetrics metrics = new MembershipMetrics();
+        List<Throwable> errors = new ArrayList<>();
+        InstrumentedTerminologyServiceImpl service = new InstrumentedTerminologyServiceImpl(delegate, metrics);
+        service.addListener(new MembershipListener() {
+
+            @Override
+            public void onMembershipError(
+                ValueSetIdentifier valueSetIdentifier,
+                Concept concept,
+                Throwable error,
+                long elapsedNanos
+            ) {
+                errors.add(error);
+            }
+
+        });
+
+        assertTrue(service.isMemberOfValueSet(VS1, CONCEPT1));
+        assertFalse(service.isMemberOfValueSet(VS1, CONCEPT2));
+        assertFalse(service.isMemberOfValueSet(VS1, CONCEPT2));
+        assertThrows(IllegalStateException.class, () -> service.isMemberOfValueSet(VS2, CONCEPT1));
+        assertEquals(1, errors.size());
+        assertTrue(service.isValidValueSet(VS1));
+        MembershipMetrics.ValueSetMetrics vs1 = metrics.getMetrics(VS1);
+        assertEquals(3, vs1.calls());
+        assertEquals(1, vs1.members());
+        assertEquals(0, vs1.errors());
+        assertEquals(3, Arrays.stream(vs1.latencyHistogram()).sum());
+        assertTrue(vs1.getLatencyPercentileNanos(50) <= vs1.getLatencyPercentileNanos(100));
+        assertTrue(vs1.getLatencyPercentileNanos(100) > 0);
+        assertEquals(1, metrics.getMetrics(VS2).errors());
+        metrics.onCacheLookup(VS2, true);
+        metrics.onCacheLookup(VS2, true);
+        metrics.onCacheLookup(VS2, false);
+        assertEquals(2.0 / 3, metrics.getMetrics(VS2).getCacheHitRatio(), 1e-9);
+        metrics.onCacheLookups(VS2, 6, 0);
+        assertEquals(8, metrics.getMetrics(VS2).cacheHits());
+        assertEquals(1, metrics.getMetrics(VS2).cacheMisses());
+        assertEquals(2, metrics.getAllMetrics().size());
+        assertEquals(BitSet.valueOf(new long[]{0b101}),
+            service.findMembersOfValueSet(VS1, List.of(CONCEPT1, CONCEPT2, CONCEPT1)));
+        assertEquals(6, metrics.getMetrics(VS1).calls());
+        assertEquals(3, metrics.getMetrics(VS1).members());
+        assertThrows(IllegalStateException.class,
+            () -> service.findMembersOfValueSets(List.of(VS1, VS2), List.of(CONCEPT1)));
+        assertEquals(2, metrics.getMetrics(VS2).errors());
+        metrics.reset();
+        assertNull(metrics.getMetrics(VS1));
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.clinicalontology.terminology.impl;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.CodeSystemRegistry;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ValueSetExpansion;
+import org.clinicalontology.terminology.impl.model.CodeSystemImpl;
+import org.clinicalontology.terminology.impl.model.CompactValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.IndexedValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetExpansionImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ValueSetExpansionSpec {
+
+    @Test
+    public void testIndexedExpansion() {
+        CodeSystem system1 = new CodeSystemImpl("http://system1", null, null, "1.2.3");
+        CodeSystem system1Oid = new CodeSystemImpl("http://system1-alias", null, null, "1.2.3");
+        CodeSystemRegistry.registerCodeSystems(system1);
+        Concept cpt1 = new ConceptImpl(system1, "code1");
+        Concept cpt2 = new ConceptImpl("http://system2", "code2");
+        ValueSetExpansion expansion = new IndexedValueSetExpansionImpl(
+            new ValueSetIdentifierImpl("http://vs1", "1"), List.of(cpt1, cpt2));
+        assertEquals(2, expansion.getExpansion().size());
+        assertTrue(expansion.hasConcept(new ConceptImpl("http://system1", "code1")));
+        assertTrue(expansion.hasConcept(new ConceptImpl(system1Oid, "code1")));
+        assertTrue(expansion.hasConcept(new ConceptImpl("urn:oid:1.2.3", "code1")));
+        assertTrue(expansion.hasConcept(cpt2));
+        assertTrue(new ValueSetExpansionImpl(null, Set.of(cpt1)).hasConcept(new ConceptImpl(system1Oid, "code1")));
+        assertFalse(expansion.hasConcept(new ConceptImpl("http://system2", "code1")));
+        assertFalse(expansion.getExpansion().add(new ConceptImpl("http://system2", "code2", "duplicate")));
+        assertTrue(expansion.getExpansion().remove(new ConceptImpl(system1Oid, "code1")));
+        assertFalse(expansion.hasConcept(cpt1));
+        assertEquals(1, expansion.getExpansion().size());
+        expansion.getExpansion().removeIf(cpt2::equals);
+        assertFalse(expansion.hasConcept(cpt2));
+        assertFalse(expansion.hasExpansion());
+    }
+
+    @Test
+    public void testCompactExpansion() {
+        Set<Concept> concepts = new HashSet<>();
+
+        for (int i = 0; i < 1000; i++) {
+            concepts.add(new ConceptImpl("http://system" + (i % 3), "code" + i));
+        }
+
+        ValueSetExpansion expansion = new CompactValueSetExpansionImpl(new ValueSetIdentifierImpl("http://vs1", "1"), concepts);
+        assertEquals(1000, expansion.getExpansion().size());
+        assertEquals(concepts, new HashSet<>(expansion.getExpansion()));
+        assertTrue(expansion.hasConcept(new ConceptImpl("http://system1", "code1")));
+        assertTrue(expansion.hasConcept(new ConceptImpl("http://system2", "code998")));
+        assertFalse(expansion.hasConcept(new ConceptImpl("http://system0", "code1")));
+        assertFalse(expansion.hasConcept(new ConceptImpl("http://system1", "code1000")));
+        assertFalse(expansion.hasConcept(new ConceptImpl("http://system4", "code1")));
+        assertThrows(UnsupportedOperationException.class,
+            () -> expansion.getExpansion().add(new ConceptImpl("http://system1", "code1000")));
+    }
+
+    @Test
+    public void testRegistrationAfterBuild() {
+        Concept member = new ConceptImpl("urn:oid:2.16.840.1.113883.6.999", "A");
+        Concept alias = new ConceptImpl("http://example.org/cs999", "A");
+        List<ValueSetExpansion> expansions = List.of(
+            new ValueSetExpansionImpl(null, Set.of(member)),
+            new IndexedValueSetExpansionImpl(new ValueSetIdentifierImpl("http://vs2", "1"), List.of(member)).freeze(),
+            new CompactValueSetExpansionImpl(new ValueSetIdentifierImpl("http://vs3", "1"), List.of(member)));
+
+        for (ValueSetExpansion expansion : expansions) {
+            assertTrue(expansion.hasConcept(member));
+            assertFalse(expansion.hasConcept(alias));
+        }
+
+        CodeSystemRegistry.registerCodeSystems(
+            CodeSystemImpl.create("http://example.org/cs999", "2.16.840.1.113883.6.999"));
+
+        for (ValueSetExpansion expansion : expansions) {
+            assertTrue(expansion.hasConcept(member));
+            assertTrue(expansion.hasConcept(new ConceptImpl("urn:oid:2.16.840.1.113883.6.999", "A")));
+            assertTrue(expansion.hasConcept(alias));
+            assertTrue(expansion.getExpansion().contains(alias));
+            assertFalse(expansion.hasConcept(new ConceptImpl("http://example.org/cs999", "B")));
+        }
+    }
+
+    @Test
+    public void testUnrelatedRegistration() {
+        Concept first = new ConceptImpl("urn:oid:2.16.840.1.113883.6.998", "A");
+        Concept second = new ConceptImpl("http://example.org/cs998", "A");
+        ValueSetExpansion expansion = new IndexedValueSetExpansionImpl(
+            new ValueSetIdentifierImpl("http://vs4", "1"),
+            List.of(first, second)).freeze();
+
+        CodeSystemRegistry.registerCodeSystems(
+            CodeSystemImpl.create("http://example.org/cs997", "2.16.840.1.113883.6.997"));
+
+        assertEquals(2, expansion.getExpansion().size());
+        assertTrue(expansion.hasConcept(first));
+        assertTrue(expansion.hasConcept(second));
+        assertFalse(expansion.hasConcept(new ConceptImpl("urn:oid:2.16.840.1.113883.6.997", "A")));
+
+        CodeSystemRegistry.registerCodeSystems(
+            CodeSystemImpl.create("http://example.org/cs998", "2.16.840.1.113883.6.998"));
+
+        assertEquals(1, expansion.getExpansion().size());
+        assertTrue(expansion.hasConcept(first));
+        assertTrue(expansion.hasConcept(second));
+    }
+
+}
@@ -0,0 +1,258 @@
+package org.clinicalontology.terminology.util;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMapping;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.cache.BoundedCache;
+import org.clinicalontology.terminology.impl.cache.CacheConfig;
+import org.clinicalontology.terminology.impl.cache.EvictionPolicy;
+import org.clinicalontology.terminology.impl.model.TerminologyMappingsImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Translates streams of concepts into a target code system using
+ * {@link TerminologyService#getMappingsForConcept(Concept, String)}.
+ * <p>
+ * Sources are read in batches.  Within a batch each distinct source is looked up once, and the results of recent
+ * lookups are remembered in a bounded cache so that sources repeated across batches are not looked up again.  Results
+ * are returned in the order of the sources, and memory use is bounded by the batch size and the cache size rather than
+ * by the length of the stream.  In parallel mode, the lookups of each batch are spread across the common fork-join
+ * pool; the terminology service must then be safe for concurrent use.
+ */
+public class BulkTranslator {
+
+    /**
+     * The default number of sources read per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * The default number of lookup results remembered across batches.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    /**
+     * The result of translating a source concept.
+     *
+     * @param source   The source concept.
+     * @param mappings The mappings from the source concept to the target code system, which may be empty.  They are
+     *                 shared by every translation of the same source and must not be modified.
+     */
+    public record Translation(
+        Concept source,
+        TerminologyMappings mappings
+    ) {
+
+        /**
+         * Returns true if the source concept has a translation.
+         *
+         * @return True if the source concept has a translation.
+         */
+        public boolean isTranslated() {
+            return mappings.hasMappings();
+        }
+
+        /**
+         * Returns the target concept of the first mapping.
+         *
+         * @return The target concept of the first mapping, or null if there is none.
+         */
+        public Concept getFirstTarget() {
+            List<TerminologyMapping> list = mappings.getMappings();
+            return list.isEmpty() ? null : list.getFirst().getTarget();
+        }
+
+    }
+
+    private final TerminologyService terminologyService;
+
+    private final int batchSize;
+
+    private final int cacheSize;
+
+    private final boolean parallel;
+
+    private final LongAdder sourceCount = new LongAdder();
+
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * Creates a translator with the default batch and cache sizes.
+     *
+     * @param terminologyService The terminology service used for lookups.
+     * @param parallel           If true, lookups are made in parallel.  The service must be safe for concurrent use.
+     */
+    public BulkTranslator(
+        TerminologyService terminologyService,
+        boolean parallel
+    ) {
+        this(terminologyService, DEFAULT_BATCH_SIZE, DEFAULT_CACHE_SIZE, parallel);
+    }
+
+    /**
+     * Creates a translator.
+     *
+     * @param terminologyService The terminology service used for lookups.
+     * @param batchSize          The number of sources read per batch.
+     * @param cacheSize          The number of lookup results remembered across batches.  May be zero.
+     * @param parallel           If true, lookups are made in parallel.  The service must be safe for concurrent use.
+     */
+    public BulkTranslator(
+        TerminologyService terminologyService,
+        int batchSize,
+        int cacheSize,
+        boolean parallel
+    ) {
+        Validate.notNull(terminologyService, "A terminology service is required.");
+        Validate.isTrue(batchSize > 0, "The batch size must be positive.");
+        Validate.isTrue(cacheSize >= 0, "The cache size must not be negative.");
+        this.terminologyService = terminologyService;
+        this.batchSize = batchSize;
+        this.cacheSize = cacheSize;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns true if lookups are made in parallel.
+     *
+     * @return True if lookups are made in parallel.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Returns the number of source concepts translated since this translator was created.
+     *
+     * @return The number of source concepts translated.
+     */
+    public long getSourceCount() {
+        return sourceCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups made since this translator was created.  The difference from the number of sources
+     * is the number of lookups saved by removing duplicates.
+     *
+     * @return The number of lookups made.
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Translates a stream of concepts.  The returned stream is sequential and lazy; closing it closes the source
+     * stream.
+     *
+     * @param sources          The source concepts.
+     * @param targetCodeSystem The target code system.
+     * @return The translations, in the order of the sources.
+     */
+    public Stream<Translation> translate(
+        Stream<? extends Concept> sources,
+        CodeSystem targetCodeSystem
+    ) {
+        Iterator<Translation> translations = translate(sources.iterator(), targetCodeSystem);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(translations,
+            Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(sources::close);
+    }
+
+    /**
+     * Translates an iterator of concepts.  Sources are read a batch at a time as translations are requested.
+     *
+     * @param sources          The source concepts.
+     * @param targetCodeSystem The target code system.
+     * @return The translations, in the order of the sources.
+     */
+    public Iterator<Translation> translate(
+        Iterator<? extends Concept> sources,
+        CodeSystem targetCodeSystem
+    ) {
+        Validate.notNull(targetCodeSystem, "A target code system is required.");
+        String target = targetCodeSystem.getUrnAsString();
+        BoundedCache<String, TerminologyMappings> cache = new BoundedCache<>(
+            new CacheConfig(cacheSize, null, null, EvictionPolicy.LRU));
+
+        return new Iterator<>() {
+
+            private Iterator<Translation> batch = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                if (!batch.hasNext() && sources.hasNext()) {
+                    batch = translateBatch(sources, target, cache).iterator();
+                }
+
+                return batch.hasNext();
+            }
+
+            @Override
+            public Translation next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return batch.next();
+            }
+
+        };
+    }
+
+    /**
+     * Reads and translates the next batch of sources.
+     */
+    private List<Translation> translateBatch(
+        Iterator<? extends Concept> sources,
+        String targetCodeSystem,
+        BoundedCache<String, TerminologyMappings> cache
+    ) {
+        List<Concept> batch = new ArrayList<>(batchSize);
+        Map<String, Concept> distinct = new HashMap<>();
+
+        while (batch.size() < batchSize && sources.hasNext()) {
+            Concept source = sources.next();
+            batch.add(source);
+            distinct.putIfAbsent(source.getSystemAndCode(), source);
+        }
+
+        Stream<Map.Entry<String, Concept>> stream = parallel ? distinct.entrySet().parallelStream()
+            : distinct.entrySet().stream();
+        Map<String, TerminologyMappings> results = stream.collect(Collectors.toMap(Map.Entry::getKey,
+            entry -> cache.get(entry.getKey(), key -> lookup(entry.getValue(), targetCodeSystem))));
+
+        List<Translation> translations = new ArrayList<>(batch.size());
+
+        for (Concept source : batch) {
+            translations.add(new Translation(source, results.get(source.getSystemAndCode())));
+        }
+
+        sourceCount.add(batch.size());
+        return translations;
+    }
+
+    private TerminologyMappings lookup(
+        Concept source,
+        String targetCodeSystem
+    ) {
+        lookupCount.increment();
+        TerminologyMappings mappings = terminologyService.getMappingsForConcept(source, targetCodeSystem);
+        return mappings == null ? TerminologyMappingsImpl.EMPTY : mappings;
+    }
+
+}
@@ -5,18 +5,25 @@ import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
 
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Associates a value set with a set of items whose semantic keys are elements of that set.
+ * <p>
+ * The index is safe to read while it is being updated.  Updates replace an immutable snapshot of the index, so
+ * readers never block and always see a consistent set of groups.  Lists passed to
+ * {@link #put(ValueSetIdentifier, List)} and {@link #reset(Map)} are copied, so later changes by the caller are not
+ * seen.  Items added one at a time are appended in place in amortized constant time, so a reader holding such a list
+ * may see it grow, but may iterate it safely during updates.  Every returned list is unmodifiable.
  *
  * @param <T> The item type.
  */
 public class ItemGroupByValueSetMembershipIndex<T extends SemanticKey> {
 
     /**
-     * The value-set-to-item-list index.
+     * The value-set-to-item-list index.  This is an unmodifiable snapshot that is replaced on every update.
      */
-    private final Map<ValueSetIdentifier, List<T>> map = new LinkedHashMap<>();
+    private volatile Map<ValueSetIdentifier, List<T>> map = Collections.emptyMap();
 
     /**
      * Returns the list of items whose key is part of this value set.
@@ -31,7 +38,7 @@ public class ItemGroupByValueSetMembershipIndex<T extends SemanticKey> {
     /**
      * Returns the set of valuesets that are part of this index.
      *
-     * @return Returns the value set identifiers associated with this indexer.
+     * @return Returns the value set identifiers associated with this indexer (an unmodifiable snapshot).
      */
     public Set<ValueSetIdentifier> keySet() {
         return map.keySet();
@@ -47,7 +54,19 @@ public class ItemGroupByValueSetMembershipIndex<T extends SemanticKey> {
         ValueSetIdentifier valueSet,
         List<T> items
     ) {
-        map.put(valueSet, items);
+        List<T> copy = Collections.unmodifiableList(new ArrayList<>(items));
+        update(next -> next.put(valueSet, copy));
+    }
+
+    /**
+     * Replaces the contents of this index in a single step.
+     *
+     * @param groups The groups of items, indexed by value set.
+     */
+    public synchronized void reset(Map<ValueSetIdentifier, List<T>> groups) {
+        Map<ValueSetIdentifier, List<T>> next = new LinkedHashMap<>();
+        groups.forEach((valueSet, items) -> next.put(valueSet, Collections.unmodifiableList(new ArrayList<>(items))));
+        map = Collections.unmodifiableMap(next);
     }
 
     /**
@@ -56,18 +75,26 @@ public class ItemGroupByValueSetMembershipIndex<T extends SemanticKey> {
      * @param valueSet The value set.
      * @param item     The item to add.
      */
-    public void put(
+    public synchronized void put(
         ValueSetIdentifier valueSet,
         T item
     ) {
-        map.computeIfAbsent(valueSet, k -> new ArrayList<>()).add(item);
+        List<T> items = map.get(valueSet);
+
+        if (items instanceof AppendOnlyList<T> list) {
+            list.append(item);
+        } else {
+            AppendOnlyList<T> list = new AppendOnlyList<>(items == null ? Collections.emptyList() : items);
+            list.append(item);
+            update(next -> next.put(valueSet, list));
+        }
     }
 
     /**
      * Method clears this index. Use with caution.
      */
-    public void clear() {
-        map.clear();
+    public synchronized void clear() {
+        map = Collections.emptyMap();
     }
 
     /**
@@ -111,4 +138,57 @@ public class ItemGroupByValueSetMembershipIndex<T extends SemanticKey> {
         return map.size();
     }
 
+    /**
+     * Applies a change to a copy of the index and publishes the copy.
+     *
+     * @param change The change.
+     */
+    private synchronized void update(Consumer<Map<ValueSetIdentifier, List<T>>> change) {
+        Map<ValueSetIdentifier, List<T>> next = new LinkedHashMap<>(map);
+        change.accept(next);
+        map = Collections.unmodifiableMap(next);
+    }
+
+    /**
+     * An unmodifiable list that the index appends to under its lock.  Elements below the published size are never
+     * changed, and the size is published after the element, so readers need no lock.
+     *
+     * @param <T> The item type.
+     */
+    private static final class AppendOnlyList<T> extends AbstractList<T> implements RandomAccess {
+
+        private volatile Object[] elements;
+
+        private volatile int size;
+
+        private AppendOnlyList(List<T> items) {
+            elements = items.toArray(new Object[Math.max(items.size() * 2, 10)]);
+            size = items.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private void append(T item) {
+            Object[] elements = this.elements;
+
+            if (size == elements.length) {
+                this.elements = elements = Arrays.copyOf(elements, elements.length * 2);
+            }
+
+            elements[size] = item;
+            size++;
+        }
+
+    }
+
 }
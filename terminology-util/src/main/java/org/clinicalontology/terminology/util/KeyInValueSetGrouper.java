@@ -4,14 +4,23 @@ import org.clinicalontology.terminology.api.model.Concept;
 import org.clinicalontology.terminology.api.model.ConceptSet;
 import org.clinicalontology.terminology.api.model.SemanticKey;
 import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.api.service.MembershipListener;
 import org.clinicalontology.terminology.api.service.TerminologyService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Class supporting terminological operations on items that contain semantic keys.
@@ -24,6 +33,11 @@ import java.util.stream.Collectors;
  */
 public class KeyInValueSetGrouper<T extends SemanticKey> {
 
+    /**
+     * The smallest number of items assigned to a partition in parallel mode.
+     */
+    private static final int MIN_PARTITION_SIZE = 1024;
+
     /**
      * Terminology service for item key value set membership determination.
      */
@@ -40,6 +54,27 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
      */
     private final List<ValueSetIdentifier> defaultValueSets = new ArrayList<>();
 
+    /**
+     * If true, items are grouped in parallel.
+     */
+    private final boolean parallel;
+
+    /**
+     * Determines how failed membership checks are handled.
+     */
+    private final MembershipErrorPolicy errorPolicy;
+
+    /**
+     * Receives notification of membership checks.
+     */
+    private final MembershipListener membershipListener;
+
+    /**
+     * True if a subclass overrides {@link #findInValueSet} or {@link #getResourceInValueSetPredicate}, in which case
+     * items are grouped by filtering them through the predicate rather than through the membership index.
+     */
+    private final boolean customMembership;
+
     /**
      * A list of all relevant items contained in this bundle.
      */
@@ -54,8 +89,54 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
         TerminologyService terminologyService,
         List<T> semanticKeyItemList,
         List<ValueSetIdentifier> defaultValueSets
+    ) {
+        this(terminologyService, semanticKeyItemList, defaultValueSets, false);
+    }
+
+    /**
+     * Failed membership checks are propagated to the caller.
+     *
+     * @param terminologyService  Terminology service for value set membership testing.  In parallel mode, it must be
+     *                            safe for concurrent use.
+     * @param semanticKeyItemList A list of resources to group based on focal concept membership in a value set.,
+     * @param defaultValueSets    Optional default value sets that will form the subgroups of items.
+     * @param parallel            If true, large item lists are grouped in parallel on the common fork-join pool.
+     */
+    public KeyInValueSetGrouper(
+        TerminologyService terminologyService,
+        List<T> semanticKeyItemList,
+        List<ValueSetIdentifier> defaultValueSets,
+        boolean parallel
+    ) {
+        this(terminologyService, semanticKeyItemList, defaultValueSets, parallel,
+            MembershipErrorPolicy.PROPAGATE, MembershipListener.NONE);
+    }
+
+    /**
+     * @param terminologyService  Terminology service for value set membership testing.  In parallel mode, it must be
+     *                            safe for concurrent use.
+     * @param semanticKeyItemList A list of resources to group based on focal concept membership in a value set.,
+     * @param defaultValueSets    Optional default value sets that will form the subgroups of items.
+     * @param parallel            If true, large item lists are grouped in parallel on the common fork-join pool.
+     * @param errorPolicy         Determines how failed membership checks are handled.  If null, failures are
+     *                            propagated.
+     * @param membershipListener  Receives notification of membership checks, failures and lookups in the grouper's
+     *                            index from concept to value sets.  In parallel mode, it must be safe for concurrent
+     *                            use.
+     */
+    public KeyInValueSetGrouper(
+        TerminologyService terminologyService,
+        List<T> semanticKeyItemList,
+        List<ValueSetIdentifier> defaultValueSets,
+        boolean parallel,
+        MembershipErrorPolicy errorPolicy,
+        MembershipListener membershipListener
     ) {
         this.terminologyService = terminologyService;
+        this.parallel = parallel;
+        this.errorPolicy = errorPolicy == null ? MembershipErrorPolicy.PROPAGATE : errorPolicy;
+        this.membershipListener = membershipListener == null ? MembershipListener.NONE : membershipListener;
+        this.customMembership = overridesMembership(getClass());
 
         if (defaultValueSets != null) {
             this.defaultValueSets.addAll(defaultValueSets);
@@ -84,6 +165,20 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
         return terminologyService;
     }
 
+    /**
+     * @return True if items are grouped in parallel.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @return The policy for handling failed membership checks.
+     */
+    public MembershipErrorPolicy getErrorPolicy() {
+        return errorPolicy;
+    }
+
     /**
      * @return The ItemKeyToValueSetMembershipIndex
      */
@@ -110,11 +205,357 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
         indexResources();
     }
 
+    /**
+     * Groups all items by the default value sets.  The distinct concepts among the items' semantic keys are collected
+     * and checked against all default value sets with a single batch call to the terminology service.  The results are
+     * recorded in an inverted index from concept to the set of value sets containing it, and each item is then
+     * classified by combining the entries for its concepts.
+     * <p>
+     * In parallel mode, the item list is partitioned across the common fork-join pool and the partial groups are
+     * concatenated in partition order, so the result is the same as in sequential mode.  The new groups replace the
+     * old ones in the index atomically.
+     * <p>
+     * If a subclass overrides {@link #findInValueSet} or {@link #getResourceInValueSetPredicate}, each value set's
+     * group is instead built by filtering the items through {@link #getResourceInValueSetPredicate}, so that the
+     * override determines membership as it did before the index was introduced.
+     */
     public void indexResources() {
-        itemKeyToValueSetMembershipIndex.clear();
+        List<List<T>> groups = group(defaultValueSets);
+        Map<ValueSetIdentifier, List<T>> index = new LinkedHashMap<>();
+
+        for (int i = 0; i < defaultValueSets.size(); i++) {
+            ValueSetIdentifier valueSet = defaultValueSets.get(i);
+
+            if (valueSet != null) {
+                index.put(valueSet, groups.get(i));
+            }
+        }
+
+        itemKeyToValueSetMembershipIndex.reset(index);
+    }
+
+    /**
+     * Groups all items by value set membership.
+     *
+     * @param valueSets The value sets.  Null entries have no members.
+     * @return The items in each value set, in the order of <code>valueSets</code>.
+     */
+    private List<List<T>> group(List<ValueSetIdentifier> valueSets) {
+        int itemCount = semanticKeyItemList.size();
+
+        if (valueSets.isEmpty() || itemCount == 0) {
+            return newGroups(valueSets.size());
+        }
+
+        if (customMembership) {
+            return filter(valueSets);
+        }
+
+        List<ConceptSet> semanticKeys = (parallel ? semanticKeyItemList.parallelStream() : semanticKeyItemList.stream())
+            .map(item -> getSemanticKey(item, valueSets))
+            .toList();
+        Map<Concept, BitSet> membershipIndex = buildMembershipIndex(valueSets, semanticKeys);
+
+        if (!parallel || itemCount < 2 * MIN_PARTITION_SIZE) {
+            return classify(0, itemCount, semanticKeys, valueSets.size(), membershipIndex);
+        }
 
-        for (ValueSetIdentifier valueSet : defaultValueSets) {
-            this.getResourcesInValueSet(valueSet);
+        int partitions = Math.min(itemCount / MIN_PARTITION_SIZE, 4 * ForkJoinPool.getCommonPoolParallelism());
+        List<List<List<T>>> partialGroups = IntStream.range(0, partitions)
+            .parallel()
+            .mapToObj(partition -> classify((int) ((long) partition * itemCount / partitions),
+                (int) ((long) (partition + 1) * itemCount / partitions), semanticKeys, valueSets.size(),
+                membershipIndex))
+            .toList();
+        List<List<T>> groups = new ArrayList<>(valueSets.size());
+
+        for (int i = 0; i < valueSets.size(); i++) {
+            int index = i;
+            int size = partialGroups.stream().mapToInt(partial -> partial.get(index).size()).sum();
+            List<T> group = new ArrayList<>(size);
+            partialGroups.forEach(partial -> group.addAll(partial.get(index)));
+            groups.add(group);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Groups all items by filtering them through the membership predicate of each value set.
+     *
+     * @param valueSets The value sets.  Null entries have no members.
+     * @return The items in each value set, in the order of <code>valueSets</code>.
+     */
+    private List<List<T>> filter(List<ValueSetIdentifier> valueSets) {
+        List<List<T>> groups = new ArrayList<>(valueSets.size());
+
+        for (ValueSetIdentifier valueSet : valueSets) {
+            groups.add(valueSet == null ? new ArrayList<>()
+                : (parallel ? semanticKeyItemList.parallelStream() : semanticKeyItemList.stream())
+                .filter(getResourceInValueSetPredicate(valueSet))
+                .collect(Collectors.toList()));
+        }
+
+        return groups;
+    }
+
+    /**
+     * Returns true if a class overrides either of the membership hooks.
+     *
+     * @param type The class of this grouper.
+     * @return True if the class, or a superclass below this one, declares either hook.
+     */
+    private static boolean overridesMembership(Class<?> type) {
+        for (Class<?> c = type; c != KeyInValueSetGrouper.class; c = c.getSuperclass()) {
+            if (declares(c, "findInValueSet", SemanticKey.class, ValueSetIdentifier.class)
+                || declares(c, "getResourceInValueSetPredicate", ValueSetIdentifier.class)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean declares(
+        Class<?> type,
+        String name,
+        Class<?>... parameterTypes
+    ) {
+        try {
+            type.getDeclaredMethod(name, parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds an inverted index from each distinct concept among the items' semantic keys to the value sets containing
+     * it.  Concepts that belong to none of the value sets are omitted.
+     * <p>
+     * The occurrences of concepts among the items' semantic keys are reported to the membership listener as lookups in
+     * this index, with one bulk call per value set.  The first occurrence of a concept is a miss, since the concept
+     * must be checked by the terminology service, and every later occurrence is a hit.
+     *
+     * @param valueSets    The value sets.
+     * @param semanticKeys The semantic keys of the items.  Null entries have no concepts.
+     * @return The positions in <code>valueSets</code> of the value sets containing each concept.
+     */
+    private Map<Concept, BitSet> buildMembershipIndex(
+        List<ValueSetIdentifier> valueSets,
+        List<ConceptSet> semanticKeys
+    ) {
+        Map<Concept, Integer> occurrences = (parallel ? semanticKeys.parallelStream() : semanticKeys.stream())
+            .filter(Objects::nonNull)
+            .flatMap(semanticKey -> semanticKey.getConcepts().stream())
+            .filter(Objects::nonNull)
+            .collect(Collectors.toMap(Function.identity(), concept -> 1, Integer::sum));
+        List<Concept> concepts = new ArrayList<>(occurrences.keySet());
+        reportCacheLookups(valueSets, concepts.size(),
+            occurrences.values().stream().mapToLong(Integer::longValue).sum() - concepts.size());
+        List<BitSet> members = findMembersOfValueSets(valueSets, concepts);
+        Map<Concept, BitSet> membershipIndex = new HashMap<>();
+
+        for (int i = 0; i < valueSets.size(); i++) {
+            BitSet valueSetMembers = members.get(i);
+
+            for (int j = valueSetMembers.nextSetBit(0); j >= 0; j = valueSetMembers.nextSetBit(j + 1)) {
+                membershipIndex.computeIfAbsent(concepts.get(j), key -> new BitSet(valueSets.size())).set(i);
+            }
+        }
+
+        return membershipIndex;
+    }
+
+    private void reportCacheLookups(
+        List<ValueSetIdentifier> valueSets,
+        long misses,
+        long hits
+    ) {
+        if (membershipListener == MembershipListener.NONE) {
+            return;
+        }
+
+        for (ValueSetIdentifier valueSet : valueSets) {
+            if (valueSet != null) {
+                membershipListener.onCacheLookups(valueSet, hits, misses);
+            }
+        }
+    }
+
+    /**
+     * Groups a range of items using an inverted membership index.
+     *
+     * @param from            The position of the first item.
+     * @param to              The position after the last item.
+     * @param semanticKeys    The semantic keys of all items.  Null entries have no concepts.
+     * @param valueSetCount   The number of value sets.
+     * @param membershipIndex The inverted index from concept to the value sets containing it.
+     * @return The items in each value set.
+     */
+    private List<List<T>> classify(
+        int from,
+        int to,
+        List<ConceptSet> semanticKeys,
+        int valueSetCount,
+        Map<Concept, BitSet> membershipIndex
+    ) {
+        List<List<T>> groups = newGroups(valueSetCount);
+        BitSet itemValueSets = new BitSet(valueSetCount);
+
+        int position = from;
+
+        for (T item : semanticKeyItemList.subList(from, to)) {
+            ConceptSet semanticKey = semanticKeys.get(position++);
+
+            if (semanticKey == null) {
+                continue;
+            }
+
+            itemValueSets.clear();
+
+            for (Concept concept : semanticKey.getConcepts()) {
+                BitSet valueSets = concept == null ? null : membershipIndex.get(concept);
+
+                if (valueSets != null) {
+                    itemValueSets.or(valueSets);
+                }
+            }
+
+            for (int i = itemValueSets.nextSetBit(0); i >= 0; i = itemValueSets.nextSetBit(i + 1)) {
+                groups.get(i).add(item);
+            }
+        }
+
+        return groups;
+    }
+
+    private List<List<T>> newGroups(int valueSetCount) {
+        List<List<T>> groups = new ArrayList<>(valueSetCount);
+
+        for (int i = 0; i < valueSetCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+
+        return groups;
+    }
+
+    /**
+     * Tests which concepts are members of each value set, one batch call per value set.  Each batch is reported to the
+     * membership listener, and a failed batch is handled according to the error policy.  Under
+     * {@link MembershipErrorPolicy#TREAT_AS_NON_MEMBER}, the concepts of a failed batch are then checked one at a
+     * time, so that only the concepts whose own checks fail are treated as non-members.
+     *
+     * @param valueSets The value sets.  Null entries have no members.
+     * @param concepts  The concepts.
+     * @return The members of each value set, as positions in <code>concepts</code>.
+     */
+    private List<BitSet> findMembersOfValueSets(
+        List<ValueSetIdentifier> valueSets,
+        List<Concept> concepts
+    ) {
+        return (parallel ? valueSets.parallelStream() : valueSets.stream())
+            .map(valueSet -> valueSet == null || concepts.isEmpty()
+                ? new BitSet() : findMembersOfValueSet(valueSet, concepts))
+            .toList();
+    }
+
+    private BitSet findMembersOfValueSet(
+        ValueSetIdentifier valueSet,
+        List<Concept> concepts
+    ) {
+        long start = System.nanoTime();
+        BitSet members;
+
+        try {
+            members = getTerminologyService().findMembersOfValueSet(valueSet, concepts);
+        } catch (RuntimeException e) {
+            membershipListener.onMembershipError(valueSet, null, e, System.nanoTime() - start);
+
+            if (errorPolicy == MembershipErrorPolicy.PROPAGATE) {
+                throw e;
+            }
+
+            return findMembersIndividually(valueSet, concepts);
+        }
+
+        membershipListener.onBatchMembershipCheck(valueSet, concepts.size(), members.cardinality(),
+            System.nanoTime() - start);
+        return members;
+    }
+
+    private BitSet findMembersIndividually(
+        ValueSetIdentifier valueSet,
+        List<Concept> concepts
+    ) {
+        BitSet members = new BitSet(concepts.size());
+
+        for (int i = 0; i < concepts.size(); i++) {
+            if (isMemberOfValueSet(valueSet, concepts.get(i))) {
+                members.set(i);
+            }
+        }
+
+        return members;
+    }
+
+    /**
+     * Tests whether a concept is a member of a value set, reporting the outcome to the membership listener and
+     * handling any failure according to the error policy.
+     *
+     * @param valueSet The value set.
+     * @param concept  The concept.
+     * @return True if the concept is a member of the value set.
+     */
+    private boolean isMemberOfValueSet(
+        ValueSetIdentifier valueSet,
+        Concept concept
+    ) {
+        long start = System.nanoTime();
+        boolean member;
+
+        try {
+            member = getTerminologyService().isMemberOfValueSet(valueSet, concept);
+        } catch (RuntimeException e) {
+            membershipListener.onMembershipError(valueSet, concept, e, System.nanoTime() - start);
+
+            if (errorPolicy == MembershipErrorPolicy.PROPAGATE) {
+                throw e;
+            }
+
+            return false;
+        }
+
+        membershipListener.onMembershipCheck(valueSet, concept, member, System.nanoTime() - start);
+        return member;
+    }
+
+    /**
+     * Returns the semantic key of an item.  A failure is reported to the membership listener as a failed check
+     * against each value set and then handled according to the error policy.
+     *
+     * @param keyedElement The item.
+     * @param valueSets    The value sets against which the item is being checked.  Null entries are ignored.
+     * @return The semantic key, or null if it could not be obtained.
+     */
+    private ConceptSet getSemanticKey(
+        SemanticKey keyedElement,
+        List<ValueSetIdentifier> valueSets
+    ) {
+        try {
+            return keyedElement.getSemanticKey();
+        } catch (RuntimeException e) {
+            for (ValueSetIdentifier valueSet : valueSets) {
+                if (valueSet != null) {
+                    membershipListener.onMembershipError(valueSet, null, e, 0);
+                }
+            }
+
+            if (errorPolicy == MembershipErrorPolicy.PROPAGATE) {
+                throw e;
+            }
+
+            return null;
         }
     }
 
@@ -151,7 +592,8 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
      * "MedicationOrder.medication.code", ...) is a member of the specified value set. For instance, one may
      * wish to get all MedicationOrder resources for smoking cessation medications.
      * <p>
-     * Note: The specified value set is not limited to those in the defaultValueSets array.
+     * Note: The specified value set is not limited to those in the defaultValueSets array.  Failed checks are
+     * handled according to the error policy.
      *
      * @param keyedElement Resource to test.
      * @param valueSet     The value set's identifier.
@@ -161,18 +603,14 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
         SemanticKey keyedElement,
         ValueSetIdentifier valueSet
     ) {
-        try {
-            ConceptSet semanticKey = valueSet == null ? null : keyedElement.getSemanticKey();
+        ConceptSet semanticKey = valueSet == null ? null : getSemanticKey(keyedElement, List.of(valueSet));
 
-            if (semanticKey != null) {
-                for (Concept code : semanticKey.getConcepts()) {
-                    if (getTerminologyService().isMemberOfValueSet(valueSet, code)) {
-                        return true;
-                    }
+        if (semanticKey != null) {
+            for (Concept code : semanticKey.getConcepts()) {
+                if (isMemberOfValueSet(valueSet, code)) {
+                    return true;
                 }
             }
-        } catch (Exception e) {
-            //log.error("Error checking focal concept against value set", e);
         }
 
         return false;
@@ -196,14 +634,7 @@ public class KeyInValueSetGrouper<T extends SemanticKey> {
      * @return The filtered list (never null).
      */
     private List<T> getFilteredResources(ValueSetIdentifier valueSet) {
-        if (this.semanticKeyItemList != null && !this.semanticKeyItemList.isEmpty()) {
-            return this.semanticKeyItemList
-                .stream()
-                .filter(getResourceInValueSetPredicate(valueSet))
-                .collect(Collectors.toList());
-        } else {
-            return Collections.emptyList();
-        }
+        return group(List.of(valueSet)).getFirst();
     }
 
 }
@@ -0,0 +1,426 @@
+package org.clinicalontology.terminology.util;
+
+import org.apache.commons.lang3.Validate;
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMapping;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.api.service.TerminologyService;
+import org.clinicalontology.terminology.impl.cache.BoundedCache;
+import org.clinicalontology.terminology.impl.cache.CacheConfig;
+import org.clinicalontology.terminology.impl.cache.CacheStats;
+import org.clinicalontology.terminology.impl.model.FieldTokenizer;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds chains of terminology mappings that translate a concept into a target code system, such as NDC to RxNorm to
+ * ATC.  Paths are found by a breadth-first traversal of the service's mappings, bounded in depth and in the number of
+ * concepts visited, and ranked first by the {@link #combine combined} mapping type and then by length.
+ * <p>
+ * Results, including the absence of a path, are memoized.  Translations between frequently used code systems may also
+ * be {@link #precompute precomputed} into a flat {@link TranslationTable} that is consulted before any traversal.
+ * Call {@link #clear()} after the service's mappings change.  This class is safe for concurrent use.
+ */
+public class MappingPathFinder {
+
+    /**
+     * The default maximum number of mappings in a path.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    /**
+     * The default maximum number of concepts visited while searching for a path.
+     */
+    public static final int DEFAULT_MAX_VISITED = 10_000;
+
+    /**
+     * The default configuration of the result cache.
+     */
+    public static final CacheConfig DEFAULT_CACHE_CONFIG = CacheConfig.of(100_000, null);
+
+    /**
+     * A chain of mappings in which the target of each mapping is the source of the next.
+     *
+     * @param mappings The mappings, in order from the source concept.
+     * @param type     The combined type of the mappings.
+     */
+    public record MappingPath(
+        List<TerminologyMapping> mappings,
+        TerminologyMappingType type
+    ) {
+
+        public MappingPath {
+            Validate.notEmpty(mappings, "A path must contain at least one mapping.");
+            mappings = List.copyOf(mappings);
+        }
+
+        /**
+         * Returns the concept at the start of the path.
+         *
+         * @return The concept at the start of the path.
+         */
+        public Concept getSource() {
+            return mappings.getFirst().getSource();
+        }
+
+        /**
+         * Returns the concept at the end of the path.
+         *
+         * @return The concept at the end of the path.
+         */
+        public Concept getTarget() {
+            return mappings.getLast().getTarget();
+        }
+
+        /**
+         * Returns the number of mappings in the path.
+         *
+         * @return The number of mappings in the path.
+         */
+        public int length() {
+            return mappings.size();
+        }
+
+    }
+
+    /**
+     * Precomputed paths from a set of source concepts to a target code system.
+     *
+     * @param targetCodeSystem The target code system.
+     * @param paths            The paths, keyed by the system and code of their source concepts.
+     */
+    public record TranslationTable(
+        CodeSystem targetCodeSystem,
+        Map<String, MappingPath> paths
+    ) {
+
+        public TranslationTable {
+            paths = Collections.unmodifiableMap(paths);
+        }
+
+        /**
+         * Returns the path for a source concept.
+         *
+         * @param source The source concept.
+         * @return The path, or null if the source concept has none or is not in the table.
+         */
+        public MappingPath getPath(Concept source) {
+            return paths.get(source.getSystemAndCode());
+        }
+
+        /**
+         * Returns true if the table holds a result, possibly the absence of a path, for a source concept.
+         *
+         * @param source The source concept.
+         * @return True if the table holds a result for the source concept.
+         */
+        public boolean contains(Concept source) {
+            return paths.containsKey(source.getSystemAndCode());
+        }
+
+        /**
+         * Returns the number of source concepts in the table.
+         *
+         * @return The number of source concepts in the table.
+         */
+        public int size() {
+            return paths.size();
+        }
+
+    }
+
+    /**
+     * A step in the traversal.
+     *
+     * @param previous The previous step, or null if this is the first.
+     * @param mapping  The mapping followed.
+     * @param type     The combined type of the mappings followed so far.
+     * @param depth    The number of mappings followed so far.
+     */
+    private record Step(
+        Step previous,
+        TerminologyMapping mapping,
+        TerminologyMappingType type,
+        int depth
+    ) {
+
+        private MappingPath toPath() {
+            TerminologyMapping[] mappings = new TerminologyMapping[depth];
+
+            for (Step step = this; step != null; step = step.previous) {
+                mappings[step.depth - 1] = step.mapping;
+            }
+
+            return new MappingPath(List.of(mappings), type);
+        }
+
+    }
+
+    private final TerminologyService terminologyService;
+
+    private final int maxDepth;
+
+    private final int maxVisited;
+
+    private final BoundedCache<String, Optional<MappingPath>> results;
+
+    /**
+     * Translation tables, keyed by the canonical key of their target code system.
+     */
+    private final Map<String, TranslationTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a path finder with the default limits and cache configuration.
+     *
+     * @param terminologyService The terminology service whose mappings are traversed.
+     */
+    public MappingPathFinder(TerminologyService terminologyService) {
+        this(terminologyService, DEFAULT_MAX_DEPTH, DEFAULT_MAX_VISITED, DEFAULT_CACHE_CONFIG);
+    }
+
+    /**
+     * Creates a path finder.
+     *
+     * @param terminologyService The terminology service whose mappings are traversed.
+     * @param maxDepth           The maximum number of mappings in a path.
+     * @param maxVisited         The maximum number of concepts visited while searching for a path.
+     * @param cacheConfig        The configuration of the result cache.
+     */
+    public MappingPathFinder(
+        TerminologyService terminologyService,
+        int maxDepth,
+        int maxVisited,
+        CacheConfig cacheConfig
+    ) {
+        Validate.notNull(terminologyService, "A terminology service is required.");
+        Validate.isTrue(maxDepth > 0, "The maximum depth must be positive.");
+        Validate.isTrue(maxVisited > 0, "The maximum number of visited concepts must be positive.");
+        this.terminologyService = terminologyService;
+        this.maxDepth = maxDepth;
+        this.maxVisited = maxVisited;
+        this.results = new BoundedCache<>(cacheConfig);
+    }
+
+    /**
+     * Returns the combined type of two consecutive mappings.  Equivalence preserves the type of the other mapping, two
+     * broader or two narrower mappings remain broader or narrower, and any other combination only intersects.  A null
+     * type is treated as equivalent.
+     *
+     * @param first  The type of the first mapping.
+     * @param second The type of the second mapping.
+     * @return The combined type.
+     */
+    public static TerminologyMappingType combine(
+        TerminologyMappingType first,
+        TerminologyMappingType second
+    ) {
+        first = first == null ? TerminologyMappingType.TARGET_EQUIVALENT : first;
+        second = second == null ? TerminologyMappingType.TARGET_EQUIVALENT : second;
+
+        if (first == TerminologyMappingType.TARGET_EQUIVALENT) {
+            return second;
+        }
+
+        if (second == TerminologyMappingType.TARGET_EQUIVALENT || first == second) {
+            return first;
+        }
+
+        return TerminologyMappingType.TARGET_INTERSECTS;
+    }
+
+    /**
+     * Returns the best path from a source concept to a concept in the target code system.  Equivalent paths are
+     * preferred to broader ones, broader to narrower, and narrower to intersecting; among paths of the same type, the
+     * shortest is preferred.
+     *
+     * @param source           The source concept.
+     * @param targetCodeSystem The target code system.
+     * @return The best path, or null if there is none within the limits.
+     */
+    public MappingPath findPath(
+        Concept source,
+        CodeSystem targetCodeSystem
+    ) {
+        TranslationTable table = tables.get(targetCodeSystem.getCanonicalKey());
+
+        if (table != null && table.contains(source)) {
+            return table.getPath(source);
+        }
+
+        return results.get(toKey(source, targetCodeSystem),
+            key -> Optional.ofNullable(search(source, targetCodeSystem))).orElse(null);
+    }
+
+    /**
+     * Returns the target concept of the best path from a source concept to the target code system.
+     *
+     * @param source           The source concept.
+     * @param targetCodeSystem The target code system.
+     * @return The target concept, or null if there is no path.
+     */
+    public Concept translate(
+        Concept source,
+        CodeSystem targetCodeSystem
+    ) {
+        MappingPath path = findPath(source, targetCodeSystem);
+        return path == null ? null : path.getTarget();
+    }
+
+    /**
+     * Computes the paths from a set of source concepts to a target code system and registers them as a translation
+     * table, merged with any table already registered for that code system.
+     *
+     * @param sources          The source concepts.
+     * @param targetCodeSystem The target code system.
+     * @return The registered translation table.
+     */
+    public TranslationTable precompute(
+        Collection<? extends Concept> sources,
+        CodeSystem targetCodeSystem
+    ) {
+        Map<String, MappingPath> paths = new HashMap<>();
+
+        for (Concept source : sources) {
+            paths.put(source.getSystemAndCode(), search(source, targetCodeSystem));
+        }
+
+        return tables.merge(targetCodeSystem.getCanonicalKey(), new TranslationTable(targetCodeSystem, paths),
+            (current, added) -> {
+                Map<String, MappingPath> merged = new HashMap<>(current.paths());
+                merged.putAll(added.paths());
+                return new TranslationTable(targetCodeSystem, merged);
+            });
+    }
+
+    /**
+     * Returns the translation table registered for a target code system.
+     *
+     * @param targetCodeSystem The target code system.
+     * @return The translation table, or null if there is none.
+     */
+    public TranslationTable getTranslationTable(CodeSystem targetCodeSystem) {
+        return tables.get(targetCodeSystem.getCanonicalKey());
+    }
+
+    /**
+     * Returns statistics for the result cache.
+     *
+     * @return Statistics for the result cache.
+     */
+    public CacheStats getCacheStats() {
+        return results.getStats();
+    }
+
+    /**
+     * Discards all memoized results and translation tables.
+     */
+    public void clear() {
+        results.invalidateAll();
+        tables.clear();
+    }
+
+    /**
+     * Searches breadth first for the best path.  A concept is not expanded again if it was reached before by a path
+     * of the same type or by an equivalent path, since such a path is at least as short and no worse.  The search
+     * stops after the depth at which an equivalent path is found.
+     */
+    private MappingPath search(
+        Concept source,
+        CodeSystem targetCodeSystem
+    ) {
+        Map<String, Set<TerminologyMappingType>> reached = new HashMap<>();
+        reached.put(source.getSystemAndCode(), EnumSet.of(TerminologyMappingType.TARGET_EQUIVALENT));
+        Queue<Step> queue = new ArrayDeque<>();
+        Step best = null;
+        expand(source, null, targetCodeSystem, queue);
+
+        while (!queue.isEmpty()) {
+            Step step = queue.remove();
+
+            if (best != null && best.type == TerminologyMappingType.TARGET_EQUIVALENT && step.depth > best.depth) {
+                break;
+            }
+
+            Concept target = step.mapping.getTarget();
+
+            if (isInCodeSystem(target, targetCodeSystem)) {
+                if (best == null || rank(step.type) < rank(best.type)) {
+                    best = step;
+                }
+
+                continue;
+            }
+
+            Set<TerminologyMappingType> types = reached.computeIfAbsent(target.getSystemAndCode(),
+                key -> EnumSet.noneOf(TerminologyMappingType.class));
+
+            if (types.contains(step.type) || types.contains(TerminologyMappingType.TARGET_EQUIVALENT)
+                || step.depth >= maxDepth || reached.size() > maxVisited) {
+                continue;
+            }
+
+            types.add(step.type);
+            expand(target, step, targetCodeSystem, queue);
+        }
+
+        return best == null ? null : best.toPath();
+    }
+
+    private void expand(
+        Concept concept,
+        Step previous,
+        CodeSystem targetCodeSystem,
+        Queue<Step> queue
+    ) {
+        TerminologyMappings mappings = terminologyService.getMappingsForConcept(concept);
+
+        if (mappings == null || !mappings.hasMappings()) {
+            return;
+        }
+
+        int depth = previous == null ? 1 : previous.depth + 1;
+        TerminologyMappingType type = previous == null ? TerminologyMappingType.TARGET_EQUIVALENT : previous.type;
+
+        for (TerminologyMapping mapping : mappings.getMappings()) {
+            if (mapping.getTarget() != null) {
+                queue.add(new Step(previous, mapping, combine(type, mapping.getType()), depth));
+            }
+        }
+    }
+
+    private static int rank(TerminologyMappingType type) {
+        return switch (type) {
+            case TARGET_EQUIVALENT -> 0;
+            case TARGET_BROADER -> 1;
+            case TARGET_NARROWER -> 2;
+            case TARGET_INTERSECTS -> 3;
+        };
+    }
+
+    private static boolean isInCodeSystem(
+        Concept concept,
+        CodeSystem codeSystem
+    ) {
+        return concept.hasCodeSystem() && codeSystem.isEqual(concept.getCodeSystem());
+    }
+
+    private static String toKey(
+        Concept source,
+        CodeSystem targetCodeSystem
+    ) {
+        return source.getSystemAndCode() + FieldTokenizer.FIELD_DELIMITER + targetCodeSystem.getCanonicalKey();
+    }
+
+}
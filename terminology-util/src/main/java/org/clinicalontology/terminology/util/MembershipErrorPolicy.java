@@ -0,0 +1,19 @@
+package org.clinicalontology.terminology.util;
+
+/**
+ * Determines how a failed value set membership check is handled.  In either case, the failure is first reported to
+ * the {@link org.clinicalontology.terminology.api.service.MembershipListener membership listener}.
+ */
+public enum MembershipErrorPolicy {
+
+    /**
+     * The concept is treated as not being a member of the value set.
+     */
+    TREAT_AS_NON_MEMBER,
+
+    /**
+     * The exception is rethrown to the caller.  This is the default.
+     */
+    PROPAGATE
+
+}
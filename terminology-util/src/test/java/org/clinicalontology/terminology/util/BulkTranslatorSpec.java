@@ -0,0 +1,88 @@
+package org.clinicalontology.terminology.util;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.clinicalontology.terminology.util.BulkTranslator.Translation;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class BulkTranslatorSpec {
+
+    private static final String ICD9 = "http://translator.spec/icd9";
+
+    private static final String ICD10 = "http://translator.spec/icd10";
+
+    private static final int CODES = 100;
+
+    private static final int SOURCES = 10_000;
+
+    private static final CodeSystem TARGET = new ConceptImpl(ICD10, "any").getCodeSystem();
+
+    @Test
+    public void testTranslate() {
+        AtomicInteger lookups = new AtomicInteger();
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl() {
+
+            @Override
+            public TerminologyMappings getMappingsForConcept(
+                Concept source,
+                String targetCodeSystem
+            ) {
+                lookups.incrementAndGet();
+                return super.getMappingsForConcept(source, targetCodeSystem);
+            }
+
+        };
+
+        for (int i = 0; i < CODES; i += 2) {
+            service.addTerminologyMapping(new ConceptImpl(ICD9, "code" + i), new ConceptImpl(ICD10, "CODE" + i), null);
+        }
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            lookups.set(0);
+            BulkTranslator translator = new BulkTranslator(service, 256, 1000, parallel);
+            AtomicBoolean closed = new AtomicBoolean();
+            Stream<Concept> sources = IntStream.range(0, SOURCES)
+                .mapToObj(i -> (Concept) new ConceptImpl(ICD9, "code" + i % CODES))
+                .onClose(() -> closed.set(true));
+            List<Translation> translations;
+
+            try (Stream<Translation> stream = translator.translate(sources, TARGET)) {
+                translations = stream.toList();
+            }
+
+            assertTrue(closed.get());
+            assertEquals(SOURCES, translations.size());
+
+            for (int i = 0; i < SOURCES; i++) {
+                Translation translation = translations.get(i);
+                assertEquals("code" + i % CODES, translation.source().getCode());
+                assertEquals(i % 2 == 0, translation.isTranslated());
+                assertEquals(i % 2 == 0 ? "CODE" + i % CODES : null,
+                    translation.isTranslated() ? translation.getFirstTarget().getCode() : null);
+            }
+
+            assertEquals(CODES, lookups.get());
+            assertEquals(CODES, translator.getLookupCount());
+            assertEquals(SOURCES, translator.getSourceCount());
+        }
+
+        BulkTranslator uncached = new BulkTranslator(service, 256, 0, false);
+        lookups.set(0);
+        assertEquals(SOURCES, uncached.translate(IntStream.range(0, SOURCES)
+            .mapToObj(i -> (Concept) new ConceptImpl(ICD9, "code" + i % CODES)), TARGET).count());
+        assertEquals(SOURCES / 256 * CODES + SOURCES % 256, lookups.get());
+        assertFalse(uncached.translate(List.<Concept>of().iterator(), TARGET).hasNext());
+    }
+
+}
@@ -0,0 +1,246 @@
+package org.clinicalontology.terminology.util;
+
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.ConceptSet;
+import org.clinicalontology.terminology.api.model.SemanticKey;
+import org.clinicalontology.terminology.api.model.ValueSetIdentifier;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.model.ConceptSetImpl;
+import org.clinicalontology.terminology.impl.model.ValueSetIdentifierImpl;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.clinicalontology.terminology.impl.service.MembershipMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class KeyInValueSetGrouperSpec {
+
+    private static final String SYSTEM = "http://grouper.spec/system";
+
+    private static final ValueSetIdentifier EVEN = new ValueSetIdentifierImpl("http://grouper.spec/even", "1");
+
+    private static final ValueSetIdentifier ODD = new ValueSetIdentifierImpl("http://grouper.spec/odd", "1");
+
+    private static final ValueSetIdentifier SMALL = new ValueSetIdentifierImpl("http://grouper.spec/small", "1");
+
+    private static final ValueSetIdentifier EMPTY = new ValueSetIdentifierImpl("http://grouper.spec/empty", "1");
+
+    private record Item(ConceptSet semanticKey) implements SemanticKey {
+
+        @Override
+        public ConceptSet getSemanticKey() {
+            return semanticKey;
+        }
+
+    }
+
+    @Test
+    public void testIndexResources() {
+        AtomicInteger calls = new AtomicInteger();
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl() {
+
+            @Override
+            public BitSet findMembersOfValueSet(
+                ValueSetIdentifier valueSetIdentifier,
+                List<? extends Concept> concepts
+            ) {
+                assertEquals(11, concepts.size());
+                calls.incrementAndGet();
+                return super.findMembersOfValueSet(valueSetIdentifier, concepts);
+            }
+
+        };
+
+        List<Concept> even = new ArrayList<>();
+        List<Concept> odd = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            (i % 2 == 0 ? even : odd).add(concept(i));
+        }
+
+        service.registerValueSet(EVEN, even);
+        service.registerValueSet(ODD, odd);
+        service.registerValueSet(SMALL, List.of(concept(0), concept(1)));
+        List<Item> items = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            items.add(new Item(new ConceptSetImpl(concept(i % 10), concept(10))));
+        }
+
+        items.add(new Item(null));
+        KeyInValueSetGrouper<Item> grouper = new KeyInValueSetGrouper<>(service, items, EVEN, ODD, SMALL, EMPTY);
+        assertEquals(4, calls.get());
+        ItemGroupByValueSetMembershipIndex<Item> index = grouper.getItemGroupByValueSetMembershipIndex();
+        assertEquals(List.of(EVEN, ODD, SMALL, EMPTY), new ArrayList<>(index.keySet()));
+        assertEquals(50, index.get(EVEN).size());
+        assertEquals(50, index.get(ODD).size());
+        assertEquals(20, index.get(SMALL).size());
+        assertFalse(index.hasMembers(EMPTY));
+        assertSame(items.get(1), index.get(ODD).getFirst());
+
+        for (ValueSetIdentifier valueSet : index.keySet()) {
+            assertEquals(items.stream().filter(grouper.getResourceInValueSetPredicate(valueSet)).toList(),
+                index.get(valueSet));
+        }
+    }
+
+    @Test
+    public void testIndexUpdates() {
+        ItemGroupByValueSetMembershipIndex<Item> index = new ItemGroupByValueSetMembershipIndex<>();
+        List<Item> items = new ArrayList<>(List.of(new Item(null)));
+        index.put(EVEN, items);
+        items.add(new Item(null));
+        assertEquals(1, index.get(EVEN).size());
+        assertThrows(UnsupportedOperationException.class, () -> index.get(EVEN).add(new Item(null)));
+
+        List<Item> odd = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            odd.add(new Item(new ConceptSetImpl(concept(i))));
+            index.put(ODD, odd.getLast());
+            index.put(EVEN, odd.getLast());
+        }
+
+        List<Item> snapshot = index.get(ODD);
+        assertEquals(odd, snapshot);
+        assertEquals(1001, index.get(EVEN).size());
+        assertSame(items.getFirst(), index.get(EVEN).getFirst());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(new Item(null)));
+
+        index.reset(Map.of(SMALL, items));
+        items.clear();
+        assertEquals(List.of(SMALL), new ArrayList<>(index.keySet()));
+        assertEquals(2, index.get(SMALL).size());
+    }
+
+    @Test
+    public void testParallelMode() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        List<ValueSetIdentifier> valueSets = new ArrayList<>();
+
+        for (int vs = 0; vs < 20; vs++) {
+            List<Concept> members = new ArrayList<>();
+
+            for (int i = vs; i < 1000; i += vs + 1) {
+                members.add(concept(i));
+            }
+
+            valueSets.add(new ValueSetIdentifierImpl("http://grouper.spec/vs" + vs, "1"));
+            service.registerValueSet(valueSets.getLast(), members);
+        }
+
+        List<Item> items = new ArrayList<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            items.add(new Item(new ConceptSetImpl(concept(i * 7 % 1000), concept(i % 1013))));
+        }
+
+        ItemGroupByValueSetMembershipIndex<Item> expected =
+            new KeyInValueSetGrouper<>(service, items, valueSets).getItemGroupByValueSetMembershipIndex();
+        KeyInValueSetGrouper<Item> grouper = new KeyInValueSetGrouper<>(service, items, valueSets, true);
+        ItemGroupByValueSetMembershipIndex<Item> actual = grouper.getItemGroupByValueSetMembershipIndex();
+        assertTrue(grouper.isParallel());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        expected.forEach((valueSet, group) -> assertEquals(group, actual.get(valueSet)));
+        assertEquals(expected.get(valueSets.get(3)), grouper.getResourcesInValueSet(valueSets.get(3)));
+        Set<ValueSetIdentifier> keys = actual.keySet();
+        actual.put(EMPTY, items.getFirst());
+        actual.put(EMPTY, items.getLast());
+        assertEquals(20, keys.size());
+        assertEquals(List.of(items.getFirst(), items.getLast()), actual.get(EMPTY));
+    }
+
+    @Test
+    public void testErrorPolicy() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl() {
+
+            @Override
+            public BitSet findMembersOfValueSet(
+                ValueSetIdentifier valueSetIdentifier,
+                List<? extends Concept> concepts
+            ) {
+                if (valueSetIdentifier == ODD) {
+                    throw new IllegalStateException("Timed out");
+                }
+
+                return super.findMembersOfValueSet(valueSetIdentifier, concepts);
+            }
+
+        };
+
+        service.registerValueSet(EVEN, List.of(concept(0)));
+        service.registerValueSet(ODD, List.of(concept(1)));
+        List<Item> items = List.of(new Item(new ConceptSetImpl(concept(0))), new Item(new ConceptSetImpl(concept(0))),
+            new Item(new ConceptSetImpl(concept(1))));
+        MembershipMetrics metrics = new MembershipMetrics();
+        KeyInValueSetGrouper<Item> grouper = new KeyInValueSetGrouper<>(service, items, List.of(EVEN, ODD), false,
+            MembershipErrorPolicy.TREAT_AS_NON_MEMBER, metrics);
+        assertEquals(2, grouper.getResourcesInValueSet(EVEN).size());
+        assertEquals(List.of(items.get(2)), grouper.getResourcesInValueSet(ODD));
+        assertEquals(2, metrics.getMetrics(EVEN).calls());
+        assertEquals(1, metrics.getMetrics(ODD).errors());
+        assertEquals(2, metrics.getMetrics(ODD).calls());
+        assertEquals(1, metrics.getMetrics(ODD).members());
+        assertEquals(1, metrics.getMetrics(EVEN).members());
+        assertEquals(1, metrics.getMetrics(EVEN).cacheHits());
+        assertEquals(2, metrics.getMetrics(ODD).cacheMisses());
+        assertEquals(1.0 / 3, metrics.getMetrics(ODD).getCacheHitRatio(), 1e-9);
+        assertThrows(IllegalStateException.class, () -> new KeyInValueSetGrouper<>(service, items, List.of(EVEN, ODD),
+            false, MembershipErrorPolicy.PROPAGATE, null));
+        assertThrows(IllegalStateException.class, () -> new KeyInValueSetGrouper<>(service, items, EVEN, ODD));
+        assertEquals(MembershipErrorPolicy.PROPAGATE,
+            new KeyInValueSetGrouper<>(service, items, List.of(EVEN), false, null, null).getErrorPolicy());
+    }
+
+    @Test
+    public void testSemanticKeyErrors() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        service.registerValueSet(EVEN, List.of(concept(0)));
+        SemanticKey failing = () -> {
+            throw new IllegalStateException("No key");
+        };
+        List<SemanticKey> items = List.of(new Item(new ConceptSetImpl(concept(0))), failing);
+        MembershipMetrics metrics = new MembershipMetrics();
+        KeyInValueSetGrouper<SemanticKey> grouper = new KeyInValueSetGrouper<>(service, items, List.of(EVEN), false,
+            MembershipErrorPolicy.TREAT_AS_NON_MEMBER, metrics);
+        assertEquals(List.of(items.getFirst()), grouper.getResourcesInValueSet(EVEN));
+        assertEquals(1, metrics.getMetrics(EVEN).errors());
+        assertFalse(grouper.getResourceInValueSetPredicate(EVEN).test(failing));
+        assertEquals(2, metrics.getMetrics(EVEN).errors());
+        assertThrows(IllegalStateException.class, () -> new KeyInValueSetGrouper<>(service, items, EVEN));
+    }
+
+    @Test
+    public void testOverriddenMembership() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        service.registerValueSet(EVEN, List.of(concept(0)));
+        List<Item> items = List.of(new Item(new ConceptSetImpl(concept(0))), new Item(new ConceptSetImpl(concept(1))));
+        KeyInValueSetGrouper<Item> grouper = new KeyInValueSetGrouper<>(service, items, EVEN, ODD) {
+
+            @Override
+            protected boolean findInValueSet(
+                SemanticKey keyedElement,
+                ValueSetIdentifier valueSet
+            ) {
+                return valueSet == ODD ? keyedElement == items.get(1) : super.findInValueSet(keyedElement, valueSet);
+            }
+
+        };
+
+        assertEquals(List.of(items.getFirst()), grouper.getResourcesInValueSet(EVEN));
+        assertEquals(List.of(items.get(1)), grouper.getResourcesInValueSet(ODD));
+        assertTrue(grouper.getResourcesInValueSet(SMALL).isEmpty());
+    }
+
+    private static Concept concept(int i) {
+        return new ConceptImpl(SYSTEM, "code" + i);
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.clinicalontology.terminology.util;
+
+import org.clinicalontology.terminology.api.model.CodeSystem;
+import org.clinicalontology.terminology.api.model.Concept;
+import org.clinicalontology.terminology.api.model.TerminologyMappingType;
+import org.clinicalontology.terminology.api.model.TerminologyMappings;
+import org.clinicalontology.terminology.impl.model.ConceptImpl;
+import org.clinicalontology.terminology.impl.service.InMemoryTerminologyServiceImpl;
+import org.clinicalontology.terminology.util.MappingPathFinder.MappingPath;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.clinicalontology.terminology.api.model.TerminologyMappingType.*;
+import static org.junit.Assert.*;
+
+public class MappingPathFinderSpec {
+
+    private static final String NDC = "http://path.spec/ndc";
+
+    private static final String RXNORM = "http://path.spec/rxnorm";
+
+    private static final String ATC = "http://path.spec/atc";
+
+    private static final Concept NDC1 = new ConceptImpl(NDC, "ndc1");
+
+    private static final Concept NDC2 = new ConceptImpl(NDC, "ndc2");
+
+    private static final Concept RX1 = new ConceptImpl(RXNORM, "rx1");
+
+    private static final Concept RX2 = new ConceptImpl(RXNORM, "rx2");
+
+    private static final Concept ATC1 = new ConceptImpl(ATC, "atc1");
+
+    private static final Concept ATC2 = new ConceptImpl(ATC, "atc2");
+
+    private static final CodeSystem ATC_SYSTEM = ATC1.getCodeSystem();
+
+    @Test
+    public void testCombine() {
+        assertEquals(TARGET_BROADER, MappingPathFinder.combine(TARGET_EQUIVALENT, TARGET_BROADER));
+        assertEquals(TARGET_NARROWER, MappingPathFinder.combine(TARGET_NARROWER, null));
+        assertEquals(TARGET_BROADER, MappingPathFinder.combine(TARGET_BROADER, TARGET_BROADER));
+        assertEquals(TARGET_INTERSECTS, MappingPathFinder.combine(TARGET_BROADER, TARGET_NARROWER));
+        assertEquals(TARGET_INTERSECTS, MappingPathFinder.combine(TARGET_INTERSECTS, TARGET_EQUIVALENT));
+    }
+
+    @Test
+    public void testFindPath() {
+        AtomicInteger lookups = new AtomicInteger();
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl() {
+
+            @Override
+            public TerminologyMappings getMappingsForConcept(Concept source) {
+                lookups.incrementAndGet();
+                return super.getMappingsForConcept(source);
+            }
+
+        };
+
+        service.addTerminologyMapping(NDC1, ATC2, TARGET_INTERSECTS);
+        service.addTerminologyMapping(NDC1, RX1, TARGET_EQUIVALENT);
+        service.addTerminologyMapping(RX1, NDC1, TARGET_EQUIVALENT);
+        service.addTerminologyMapping(RX1, ATC1, TARGET_BROADER);
+        service.addTerminologyMapping(NDC2, RX2, TARGET_NARROWER);
+        service.addTerminologyMapping(RX2, RX1, TARGET_BROADER);
+        MappingPathFinder finder = new MappingPathFinder(service);
+
+        MappingPath path = finder.findPath(NDC1, ATC_SYSTEM);
+        assertEquals(List.of(NDC1, RX1), path.mappings().stream().map(m -> m.getSource()).toList());
+        assertEquals(ATC1, path.getTarget());
+        assertEquals(TARGET_BROADER, path.type());
+        int count = lookups.get();
+        assertSame(path, finder.findPath(NDC1, ATC_SYSTEM));
+        assertEquals(count, lookups.get());
+        assertEquals(1, finder.getCacheStats().hits());
+
+        path = finder.findPath(NDC2, ATC_SYSTEM);
+        assertEquals(3, path.length());
+        assertEquals(TARGET_INTERSECTS, path.type());
+        assertNull(new MappingPathFinder(service, 2, 100, MappingPathFinder.DEFAULT_CACHE_CONFIG)
+            .findPath(NDC2, ATC_SYSTEM));
+        assertNull(finder.translate(ATC1, RX1.getCodeSystem()));
+        assertNull(finder.translate(ATC1, RX1.getCodeSystem()));
+        assertEquals(RX1, finder.translate(NDC1, RX1.getCodeSystem()));
+    }
+
+    @Test
+    public void testPrecompute() {
+        InMemoryTerminologyServiceImpl service = new InMemoryTerminologyServiceImpl();
+        service.addTerminologyMapping(NDC1, RX1, null);
+        service.addTerminologyMapping(RX1, ATC1, null);
+        MappingPathFinder finder = new MappingPathFinder(service);
+        MappingPathFinder.TranslationTable table = finder.precompute(List.of(NDC1, NDC2), ATC_SYSTEM);
+        assertEquals(2, table.size());
+        assertEquals(ATC1, table.getPath(NDC1).getTarget());
+        assertTrue(table.contains(NDC2));
+        assertNull(table.getPath(NDC2));
+        assertSame(table.getPath(NDC1), finder.findPath(NDC1, ATC_SYSTEM));
+        assertEquals(0, finder.getCacheStats().misses());
+        assertEquals(3, finder.precompute(List.of(RX1), ATC_SYSTEM).size());
+        finder.clear();
+        assertNull(finder.getTranslationTable(ATC_SYSTEM));
+        assertEquals(TerminologyMappingType.TARGET_EQUIVALENT, finder.findPath(NDC1, ATC_SYSTEM).type());
+    }
+
+}